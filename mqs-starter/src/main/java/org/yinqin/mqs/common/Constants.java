@@ -16,6 +16,7 @@ public final class Constants {
     public static final String BATCH = "BATCH";
     public static final String BROADCAST = "BROADCAST";
     public static final String TRUE = "true";
+    public static final String FALSE = "false";
     public static final String EMPTY = "";
     public static final String HYPHEN = "-";
     public static final String UNDER_SCORE = "_";
@@ -23,6 +24,10 @@ public final class Constants {
     public static final String BROADCAST_SUFFIX = "_BROADCAST";
     public static final String BATCH_SUFFIX = "_BATCH";
     public static final String WILDCARD ="*";
+    public static final String PUSH = "push";
+    public static final String LITE_PULL = "litePull";
+    public static final String TAG_SEPARATOR = "\\|\\|";
+    public static final String KAFKA_TAG_HEADER = "mqs-tag";
 
     private Constants() {
         throw new AssertionError("Cannot instantiate utility class");
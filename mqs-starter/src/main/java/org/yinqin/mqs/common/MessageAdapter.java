@@ -11,7 +11,7 @@ import static java.lang.annotation.RetentionPolicy.RUNTIME;
  * 消息适配器消费者注解
  *
  * @author YinQin
- * @version 1.0.4
+ * @version 1.0.8
  * @createDate 2023年10月13日
  * @since 1.0.0
  */
@@ -40,4 +40,46 @@ public @interface MessageAdapter {
      */
     boolean isBroadcast() default false;
 
+    /**
+     * 仅kafka集群消费模式生效，广播消费模式下固定为1
+     *
+     * @return 同一消费组下的消费者数量，小于等于0时取实例配置
+     */
+    int concurrency() default 0;
+
+    /**
+     * 仅批量消费生效，大于1且lingerMs大于0时跨拉取累积消息，凑满最小批量或等待超过lingerMs后再交给消息处理器
+     *
+     * @return 最小批量
+     */
+    int minBatchSize() default 0;
+
+    /**
+     * 仅跨拉取累积消息时生效
+     *
+     * @return 最大批量，小于等于0时不限制
+     */
+    int maxBatchSize() default 0;
+
+    /**
+     * 仅批量消费生效
+     *
+     * @return 累积消息的最长等待时间，单位：毫秒
+     */
+    long lingerMs() default 0;
+
+    /**
+     * rocketmq在broker端按tag过滤，kafka按生产者写入的tag消息头在转换消息前过滤，多个tag用||分隔
+     *
+     * @return tag过滤表达式，默认不过滤
+     */
+    String tagExpression() default Constants.WILDCARD;
+
+    /**
+     * 仅rocketmq生效，需要broker开启enablePropertyFilter，配置后忽略tagExpression
+     *
+     * @return SQL92过滤表达式
+     */
+    String sqlExpression() default "";
+
 }
@@ -4,8 +4,14 @@ import lombok.*;
 import org.apache.rocketmq.acl.common.SessionCredentials;
 import org.apache.rocketmq.client.ClientConfig;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.yinqin.mqs.common.Constants;
+import org.yinqin.mqs.common.flow.FlowController;
+import org.yinqin.mqs.common.partitioner.BizKeyPartitioner;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
@@ -66,6 +72,29 @@ public class MqsProperties {
          */
         private boolean producerEnabled = false;
 
+        /**
+         * 生产者池大小，大于1时创建多个源生生产者，有bizKey的消息按bizKey散列选择生产者，其余消息轮询选择
+         */
+        private int producerPoolSize = 1;
+
+        /**
+         * 生产者按bizKey选择分区或队列的策略，可选legacy、murmur3、jump或实现了BizKeyPartitioner接口的类的全限定名
+         * 默认legacy兼容旧版本：rocketmq只对数字bizKey选择队列，kafka使用客户端默认分区器
+         *
+         * @see org.yinqin.mqs.common.partitioner.BizKeyPartitioner
+         */
+        private String partitioner = BizKeyPartitioner.LEGACY;
+
+        /**
+         * 生产者流控配置，未配置任何上限时不开启流控
+         */
+        private FlowControlProperties flowControl = new FlowControlProperties();
+
+        /**
+         * 生产者本地暂存配置
+         */
+        private SpoolProperties spool = new SpoolProperties();
+
         /**
          * 消费组配置类
          */
@@ -128,6 +157,103 @@ public class MqsProperties {
             private boolean isHyphenToUnderScore = false;
         }
 
+        /**
+         * 生产者流控配置类，各上限为0时表示不限制
+         *
+         * @author YinQin
+         * @version 1.0.8
+         * @createDate 2026年10月17日
+         * @see org.yinqin.mqs.common.flow.FlowController
+         * @since 1.0.8
+         */
+        @Data
+        public static class FlowControlProperties {
+
+            /**
+             * 实例在途消息数上限，在途消息指已交给生产者、尚未收到发送结果的消息
+             */
+            private int maxInFlightMessages = 0;
+
+            /**
+             * 实例在途消息体字节数上限
+             */
+            private long maxInFlightBytes = 0;
+
+            /**
+             * 单个topic在途消息数上限
+             */
+            private int topicMaxInFlightMessages = 0;
+
+            /**
+             * 实例每秒发送消息数上限，按令牌桶限速，允许一秒内的突发
+             */
+            private int rate = 0;
+
+            /**
+             * 单个topic每秒发送消息数上限
+             */
+            private int topicRate = 0;
+
+            /**
+             * 达到上限时的默认溢出策略，可选block、fail、shed，调用方可通过MessageProducer#withOverflowPolicy按次指定
+             */
+            private String overflowPolicy = FlowController.BLOCK;
+
+            /**
+             * block策略的最长等待时间，超时后按失败处理，单位：毫秒
+             */
+            private long maxBlockMs = 5000;
+        }
+
+        /**
+         * 生产者本地暂存配置类
+         *
+         * @author YinQin
+         * @version 1.0.8
+         * @createDate 2026年10月17日
+         * @see org.yinqin.mqs.common.service.SpoolingMessageProducer
+         * @since 1.0.8
+         */
+        @Data
+        public static class SpoolProperties {
+
+            /**
+             * 是否开启本地暂存，开启后发送失败的消息写入本地暂存日志，消息中间件恢复后按顺序重放
+             */
+            private boolean enabled = false;
+
+            /**
+             * 暂存目录，每个实例使用以实例ID命名的子目录
+             */
+            private String dir = System.getProperty("java.io.tmpdir") + "/mqs-spool";
+
+            /**
+             * 单个分段文件大小，单位：字节
+             */
+            private int segmentBytes = 64 * 1024 * 1024;
+
+            /**
+             * 分段数量上限，暂存日志总大小不超过segmentBytes * maxSegments，写满后消息按发送失败返回
+             */
+            private int maxSegments = 16;
+
+            /**
+             * 每秒重放消息数上限
+             */
+            private int replayRate = 1000;
+
+            /**
+             * 重放失败后的重试间隔，单位：毫秒，连续失败时指数退避，最长为该值的32倍
+             */
+            private long probeInterval = 1000;
+
+            /**
+             * 单条消息的最大重放次数，达到后移入实例暂存目录下的dead-letter目录，继续重放下一条；
+             * 不可重发的失败（topic不存在、消息过大、无权限等）不重试，直接移入死信目录
+             */
+            private int replayMaxAttempts = 30;
+        }
+
         /**
          * rocketmq配置类
          *
@@ -172,6 +298,73 @@ public class MqsProperties {
              */
             private int consumeConcurrentlyMaxSpan = 500;
 
+            /**
+             * 单条消费时同一队列内按bizKey分片并行处理的通道数，大于1时开启，
+             * 每次回调最多取consumeMessageBatchMaxSize条消息，同一bizKey的消息保持顺序，全部处理完成后才提交位移
+             */
+            private int orderlyLanes = 0;
+
+            /**
+             * 顺序消费分片通道线程池大小上限，默认0表示与consumeThreadMax相同
+             * 实际线程数不超过consumeThreadMax * (orderlyLanes - 1)，线程不足时分片排队等待
+             */
+            private int orderlyLaneThreads = 0;
+
+            /**
+             * 消费引擎，push：DefaultMQPushConsumer，litePull：DefaultLitePullConsumer
+             * 广播消费始终使用push引擎
+             */
+            private String consumerEngine = Constants.PUSH;
+
+            /**
+             * litePull引擎单次拉取请求的消息数量上限，实际数量还受broker端maxTransferCountOnMessageInMemory限制
+             */
+            private int pullBatchSize = 32;
+
+            /**
+             * litePull引擎每次交给消息处理器的消息数量上限，拉取线程会合并多次拉取的结果
+             */
+            private int pollBatchSize = 256;
+
+            /**
+             * litePull引擎拉取超时时间，单位：毫秒
+             */
+            private long pollTimeout = 1000;
+
+            /**
+             * litePull引擎消费失败后暂停拉取该队列的时间，单位：毫秒
+             */
+            private long suspendTime = 1000;
+
+            /**
+             * 生产者异步发送和单向发送的累积等待时间，单位：毫秒，大于0时开启发送累积
+             * 开启后消息按topic和队列累积，等待超过该时间或达到sendBatchMaxBytes后合并为批量消息发送，同步发送不受影响
+             */
+            private long sendLingerMs = 0;
+
+            /**
+             * 开启发送累积时单个批量消息的大小上限，单位：字节，不超过生产者的maxMessageSize
+             */
+            private int sendBatchMaxBytes = 1024 * 1024;
+
+            /**
+             * 开启发送累积时累积和发送中的消息大小之和上限，单位：字节
+             * 达到上限后异步发送和单向发送的调用线程等待，超过生产者sendMsgTimeout后回调失败
+             */
+            private long sendBufferMaxBytes = 32 * 1024 * 1024;
+
+            /**
+             * 开启发送累积时的批量发送线程数，同一队列的批次由同一线程按顺序发送，一般不超过topic的队列总数
+             */
+            private int sendBatchThreads = 4;
+
+            /**
+             * 是否共用客户端实例，开启后同一实例的生产者和所有消费者使用相同的instanceName，
+             * 共用一个MQClientInstance的网络连接、心跳、再均衡和拉取线程；需要所有消费组使用相同的client-config和acl配置；
+             * 所有消费组启动后输出每个共享客户端实例上的生产者数和消费者数
+             */
+            private boolean shareClientInstance = false;
+
             /**
              * rocketmq其他源生配置项，可自行参考官网配置
              *
@@ -221,6 +414,137 @@ public class MqsProperties {
              * 拉取消息间隔时间，单位：毫秒
              */
             private int interval = 100;
+
+            /**
+             * 消息处理线程数，大于0时开启分区并行消费模式
+             * 拉取线程只负责拉取消息，同一分区的消息在工作线程池中按顺序处理，不同分区并行处理
+             */
+            private int workerThreads = 0;
+
+            /**
+             * 分区并行消费模式下，单个分区待处理消息数上限
+             * 超过上限后暂停拉取该分区，待处理消息降到上限的一半以下时恢复拉取
+             */
+            private int partitionMaxPending = 1000;
+
+            /**
+             * 分区并行消费模式下，单个分区按bizKey划分的顺序处理通道数，大于1时开启按key顺序消费
+             * 同一bizKey的消息按顺序处理，同一分区内不同通道并行处理，位移只提交到连续处理完成的最后一条消息；
+             * 此时partitionMaxPending限制的是分区内已拉取但尚不能提交的位移跨度，累积批量消息处理器仍按分区顺序处理
+             */
+            private int keyOrderedLanes = 0;
+
+            /**
+             * 是否开启手动提交位移，开启后只提交已处理完成的消息位移
+             * 分区并行消费模式下强制开启
+             */
+            private boolean manualCommit = false;
+
+            /**
+             * 手动提交位移时，累计处理多少条消息后异步提交一次
+             */
+            private int commitBatchSize = 500;
+
+            /**
+             * 手动提交位移时，距离上次提交超过该时间后异步提交一次，单位：毫秒
+             */
+            private long commitInterval = 5000;
+
+            /**
+             * 是否开启自适应拉取
+             * 开启后以fetch.max.wait.ms作为拉取超时时间，依赖broker端长轮询等待消息，空拉取后不再休眠interval，
+             * 连续空拉取时超时时间指数增长到maxPollTimeout，拉取到消息后立即恢复
+             */
+            private boolean adaptivePoll = false;
+
+            /**
+             * 自适应拉取时的最大拉取超时时间，单位：毫秒
+             */
+            private long maxPollTimeout = 5000;
+
+            /**
+             * 集群消费模式下，同一消费组内创建的消费者数量，每个消费者独占一个拉取线程
+             * 可通过{@link org.yinqin.mqs.common.MessageAdapter#concurrency()}按消息处理器覆盖
+             */
+            private int concurrency = 1;
+
+            /**
+             * 停止消费者或分区被回收时等待处理中消息完成的最长时间，单位：毫秒
+             * 超时后放弃未完成的消息，只提交已处理完成的位移，未提交的消息由其他消费者重新消费
+             */
+            private long shutdownTimeout = 10000;
+
+            /**
+             * 未开启重试且手动提交位移时，消费失败后回退位移并暂停拉取该分区的时间，按key顺序消费时为失败的消息在原通道重新处理前的等待时间，单位：毫秒
+             * 连续失败时等待时间按2的幂增长，最长为64倍；自动提交位移时消费失败的消息记录日志后跳过，不回退
+             */
+            private long suspendTime = 1000;
+
+            /**
+             * 是否开启协作式再均衡，开启后使用CooperativeStickyAssignor分配分区，再均衡时只回收需要迁移的分区
+             * 同一消费组内的所有消费者需要使用相同的分配策略
+             */
+            private boolean cooperativeRebalance = false;
+
+            /**
+             * 是否开启静态成员，开启后集群消费模式的消费者使用固定的group.instance.id，重启时在session.timeout.ms内不会触发再均衡
+             */
+            private boolean staticMembership = false;
+
+            /**
+             * 静态成员group.instance.id前缀，为空时取本机主机名，同一主机部署多个应用时需要分别配置
+             * 实际group.instance.id为前缀-实例ID-消费者序号
+             */
+            private String groupInstancePrefix;
+
+            /**
+             * 广播消费本地位移文件目录，文件名为实例ID-broadcast.offsets，同一主机部署多个应用时需要分别配置
+             */
+            private String broadcastOffsetDir = System.getProperty("user.home") + "/.mqs/offsets";
+
+            /**
+             * 广播消费刷新topic分区的间隔，单位：毫秒
+             */
+            private long partitionRefreshInterval = 60000;
+
+            /**
+             * 消费失败重试配置
+             */
+            private RetryProperties retry = new RetryProperties();
+
+            /**
+             * kafka消费失败重试配置
+             * 开启后消费失败的消息通过实例的生产者发送到分级重试topic，到期后重新消费，超过重试次数后发送到死信topic，
+             * 需要同时开启实例的生产者，广播消费模式不生效
+             *
+             * @author YinQin
+             * @version 1.0.8
+             * @createDate 2026年10月17日
+             * @since 1.0.8
+             */
+            @Data
+            public static class RetryProperties {
+
+                /**
+                 * 是否开启重试
+                 */
+                private boolean enabled = false;
+
+                /**
+                 * 每级重试topic的延迟时间，单位：毫秒，列表长度即最大重试次数
+                 */
+                private List<Long> delays = new ArrayList<>(Arrays.asList(1000L, 10000L, 60000L));
+
+                /**
+                 * 重试topic后缀，实际topic名称为原始topic + 后缀 + 重试次数
+                 */
+                private String retrySuffix = "_RETRY_";
+
+                /**
+                 * 死信topic后缀
+                 */
+                private String dlqSuffix = "_DLQ";
+            }
         }
     }
 
@@ -2,11 +2,14 @@ package org.yinqin.mqs.common.entity;
 
 import lombok.*;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * 消息适配器抽象出来的消息实体
  *
  * @author YinQin
- * @version 1.0.3
+ * @version 1.0.8
  * @createDate 2023年10月13日
  * @see org.apache.kafka.clients.consumer.ConsumerRecord
  * @see org.apache.rocketmq.common.message.MessageExt
@@ -55,8 +58,24 @@ public class AdapterMessage {
      */
     private int consumeTimes;
 
+    /**
+     * 消息头，kafka对应Headers，rocketmq对应用户自定义属性
+     */
+    private Map<String, String> headers;
+
     /**
      * 原始消息
      */
     private Object originMessage;
+
+    /**
+     * 复制为可修改的独立消息，消费消息视图需要整体修改或跨线程传递修改时使用
+     *
+     * @return 属性与当前消息相同的消息，消息头为可修改的副本
+     */
+    public AdapterMessage toMutable() {
+        Map<String, String> headers = getHeaders();
+        return new AdapterMessage(getTopic(), getTag(), getBizKey(), getBody(), getProcessTime(), getMsgId(), getConsumeTimes(),
+                headers == null ? null : new HashMap<>(headers), getOriginMessage());
+    }
 }
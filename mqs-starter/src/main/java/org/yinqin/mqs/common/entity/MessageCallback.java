@@ -5,7 +5,7 @@ package org.yinqin.mqs.common.entity;
  * 消息适配器定义的异步消息回调
  *
  * @author YinQin
- * @version 1.0.3
+ * @version 1.0.8
  * @createDate 2023年10月13日
  * @since 1.0.0
  */
@@ -16,6 +16,17 @@ public interface MessageCallback {
      */
     void onSuccess();
 
+    /**
+     * 消息发送成功回调，可获取消息ID、分区或队列、位移等发送结果
+     * 默认调用{@link #onSuccess()}
+     *
+     * @param result 消息发送结果
+     * @since 1.0.8
+     */
+    default void onSuccess(MessageSendResult result) {
+        onSuccess();
+    }
+
     /**
      * 消息发送失败回调
      *
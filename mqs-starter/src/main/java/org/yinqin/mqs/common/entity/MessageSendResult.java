@@ -6,7 +6,7 @@ import lombok.Data;
  * 消息发送结果实体
  *
  * @author YinQin
- * @version 1.0.3
+ * @version 1.0.8
  * @createDate 2023年10月13日
  * @since 1.0.0
  */
@@ -22,4 +22,29 @@ public class MessageSendResult {
      * 消息发送失败异常
      */
     private Throwable throwable;
+
+    /**
+     * 消息ID，kafka没有消息ID，为空
+     */
+    private String msgId;
+
+    /**
+     * 消息实际写入的topic
+     */
+    private String topic;
+
+    /**
+     * 消息写入的kafka分区或rocketmq队列ID，发送失败时为-1
+     */
+    private int partition = -1;
+
+    /**
+     * 消息在分区或队列中的位移，发送失败或未知时为-1
+     */
+    private long offset = -1;
+
+    /**
+     * 消息是否因发送失败写入了本地暂存日志，为true时消息将在消息中间件恢复后重放，消息ID、分区和位移未知
+     */
+    private boolean spooled;
 }
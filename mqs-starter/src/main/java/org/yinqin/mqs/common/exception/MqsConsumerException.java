@@ -9,6 +9,10 @@ package org.yinqin.mqs.common.exception;
  * @since 1.0.8
  */
 public class MqsConsumerException extends RuntimeException {
+    public MqsConsumerException(String message) {
+        super(message);
+    }
+
     public MqsConsumerException(String message, Throwable cause) {
         super(message, cause);
     }
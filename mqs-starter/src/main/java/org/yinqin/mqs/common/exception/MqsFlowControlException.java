@@ -0,0 +1,30 @@
+package org.yinqin.mqs.common.exception;
+
+/**
+ * 流控异常类，发送消息超过实例或topic的在途上限或发送速率时抛出
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see org.yinqin.mqs.common.flow.FlowController
+ * @since 1.0.8
+ */
+public class MqsFlowControlException extends RuntimeException {
+
+    /**
+     * 是否按丢弃策略丢弃了消息
+     */
+    private final boolean shed;
+
+    public MqsFlowControlException(String message, boolean shed) {
+        super(message);
+        this.shed = shed;
+    }
+
+    /**
+     * @return 是否按丢弃策略丢弃了消息
+     */
+    public boolean isShed() {
+        return shed;
+    }
+}
@@ -1,7 +1,7 @@
 package org.yinqin.mqs.common.factory;
 
 import org.yinqin.mqs.common.config.MqsProperties;
-import org.yinqin.mqs.common.handler.MessageHandler;
+import org.yinqin.mqs.common.handler.HandlerDefinition;
 import org.yinqin.mqs.common.service.MessageConsumer;
 
 import java.util.Map;
@@ -10,7 +10,7 @@ import java.util.Map;
  * 消费者工厂抽象接口
  *
  * @author YinQin
- * @version 1.0.6
+ * @version 1.0.8
  * @createDate 2023年11月27日
  * @since 1.0.6
  */
@@ -20,10 +20,10 @@ public abstract class ConsumerFactory {
      * 启动消费者方法，消费者具体是什么类型由子类控制
      * @param instanceId 实例ID
      * @param properties 配置类
-     * @param messageHandlers 消费者集合
+     * @param messageHandlers 消息处理器分发表
      * @return  消费者实例
      */
-    public MessageConsumer startConsumer(String instanceId, MqsProperties.AdapterProperties properties, Map<String, MessageHandler> messageHandlers) {
+    public MessageConsumer startConsumer(String instanceId, MqsProperties.AdapterProperties properties, Map<String, HandlerDefinition> messageHandlers) {
         MessageConsumer consumer = createConsumer(instanceId, properties, messageHandlers);
         consumer.start();
         return consumer;
@@ -34,9 +34,9 @@ public abstract class ConsumerFactory {
      *
      * @param instanceId 实例ID
      * @param properties 配置
-     * @param messageHandlers 消息处理器
+     * @param messageHandlers 消息处理器分发表
      * @return 单条消费者
      */
-    public abstract MessageConsumer createConsumer(String instanceId, MqsProperties.AdapterProperties properties, Map<String, MessageHandler> messageHandlers);
+    public abstract MessageConsumer createConsumer(String instanceId, MqsProperties.AdapterProperties properties, Map<String, HandlerDefinition> messageHandlers);
 
 }
@@ -1,7 +1,14 @@
 package org.yinqin.mqs.common.factory;
 
 import org.yinqin.mqs.common.config.MqsProperties;
+import org.yinqin.mqs.common.flow.FlowController;
+import org.yinqin.mqs.common.service.FlowControlledMessageProducer;
 import org.yinqin.mqs.common.service.MessageProducer;
+import org.yinqin.mqs.common.service.PooledMessageProducer;
+import org.yinqin.mqs.common.service.SpoolingMessageProducer;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * 生产者工厂抽象接口
@@ -9,7 +16,7 @@ import org.yinqin.mqs.common.service.MessageProducer;
  * @author YinQin
  * @createDate 2023年11月27日
  * @since 1.0.6
- * @version 1.0.6
+ * @version 1.0.8
  */
 public abstract class ProducerFactory {
 
@@ -22,13 +29,39 @@ public abstract class ProducerFactory {
     public abstract MessageProducer createProducer(String instanceId, MqsProperties.AdapterProperties properties);
 
     /**
-     * 启动生产者
+     * 创建生产者池中的一个生产者，默认与单个生产者相同，厂商需要区分池中生产者时重写
+     *
+     * @param instanceId 实例ID
+     * @param properties 配置
+     * @param poolIndex  生产者在池中的序号
+     * @return 生产者
+     */
+    protected MessageProducer createProducer(String instanceId, MqsProperties.AdapterProperties properties, int poolIndex) {
+        return createProducer(instanceId, properties);
+    }
+
+    /**
+     * 启动生产者，生产者池大小大于1时启动生产者池，开启本地暂存时暂存发送失败的消息，配置了流控上限时对生产者整体流控
      * @param instanceId 实例ID
      * @param properties 配置类
      * @return 生产者实例
      */
     public MessageProducer startProducer(String instanceId, MqsProperties.AdapterProperties properties){
-        MessageProducer producer = createProducer(instanceId, properties);
+        MessageProducer producer;
+        int poolSize = properties.getProducerPoolSize();
+        if (poolSize > 1) {
+            List<MessageProducer> producers = new ArrayList<>(poolSize);
+            for (int i = 0; i < poolSize; i++) producers.add(createProducer(instanceId, properties, i));
+            producer = new PooledMessageProducer(producers);
+        } else {
+            producer = createProducer(instanceId, properties);
+        }
+        if (properties.getSpool().isEnabled()) {
+            producer = new SpoolingMessageProducer(producer, instanceId, properties.getSpool());
+        }
+        if (FlowController.isEnabled(properties.getFlowControl())) {
+            producer = new FlowControlledMessageProducer(producer, new FlowController(properties.getFlowControl()));
+        }
         producer.start();
         return producer;
     }
@@ -0,0 +1,63 @@
+package org.yinqin.mqs.common.flow;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * 流控指标快照
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see FlowController#metrics()
+ * @since 1.0.8
+ */
+@Data
+public class FlowControlMetrics {
+
+    /**
+     * 在途消息数
+     */
+    private long inFlightMessages;
+
+    /**
+     * 在途消息字节数
+     */
+    private long inFlightBytes;
+
+    /**
+     * 各topic的在途消息数，只包含配置了topic在途上限时的topic
+     */
+    private Map<String, Long> topicInFlightMessages;
+
+    /**
+     * 获得许可的发送次数
+     */
+    private long acquired;
+
+    /**
+     * 因达到上限而等待过的发送次数
+     */
+    private long waited;
+
+    /**
+     * 因流控返回失败的发送次数
+     */
+    private long rejected;
+
+    /**
+     * 因流控被丢弃的发送次数
+     */
+    private long shed;
+
+    /**
+     * 累计等待时间，单位：毫秒
+     */
+    private long totalWaitMs;
+
+    /**
+     * 单次最长等待时间，单位：毫秒
+     */
+    private long maxWaitMs;
+}
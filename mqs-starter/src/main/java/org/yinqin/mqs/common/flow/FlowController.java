@@ -0,0 +1,291 @@
+package org.yinqin.mqs.common.flow;
+
+import org.yinqin.mqs.common.config.MqsProperties.AdapterProperties.FlowControlProperties;
+import org.yinqin.mqs.common.exception.MqsFlowControlException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 生产者流控器
+ * 发送前先获取实例和topic的发送速率令牌并等待，再按顺序获取topic在途许可、实例在途消息数许可和实例在途字节数许可，发送完成后归还在途许可；
+ * 等待速率令牌时不占用在途许可，获取失败时归还已获取的令牌和许可；
+ * 达到上限时按溢出策略处理：block等待到获得许可或超过最长等待时间，fail立即失败，shed立即丢弃
+ * 单次请求的消息数或字节数超过上限时按上限获取许可，避免永远无法发送
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see org.yinqin.mqs.common.service.FlowControlledMessageProducer
+ * @see TokenBucket
+ * @since 1.0.8
+ */
+public class FlowController {
+
+    /**
+     * 溢出策略：等待
+     */
+    public static final String BLOCK = "block";
+
+    /**
+     * 溢出策略：立即失败，通过回调、发送结果或异常通知调用方
+     */
+    public static final String FAIL = "fail";
+
+    /**
+     * 溢出策略：立即丢弃，异步回调不再通知调用方
+     */
+    public static final String SHED = "shed";
+
+    /**
+     * 实例在途消息数上限，0表示不限制
+     */
+    private final int maxInFlightMessages;
+
+    /**
+     * 实例在途字节数上限，0表示不限制
+     */
+    private final int maxInFlightBytes;
+
+    /**
+     * 单个topic在途消息数上限，0表示不限制
+     */
+    private final int topicMaxInFlightMessages;
+
+    /**
+     * 单个topic每秒发送消息数上限，0表示不限制
+     */
+    private final int topicRate;
+
+    /**
+     * 默认溢出策略
+     */
+    private final String overflowPolicy;
+
+    /**
+     * block策略的最长等待时间，单位：纳秒
+     */
+    private final long maxBlockNanos;
+
+    private final Semaphore inFlightMessagePermits;
+
+    private final Semaphore inFlightBytePermits;
+
+    /**
+     * 实例发送速率令牌桶，不限制时为空
+     */
+    private final TokenBucket rateLimiter;
+
+    private final Map<String, Semaphore> topicPermits = new ConcurrentHashMap<>();
+
+    private final Map<String, TokenBucket> topicRateLimiters = new ConcurrentHashMap<>();
+
+    private final AtomicLong inFlightMessages = new AtomicLong();
+
+    private final AtomicLong inFlightBytes = new AtomicLong();
+
+    private final LongAdder acquired = new LongAdder();
+
+    private final LongAdder waited = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder shed = new LongAdder();
+
+    private final LongAdder totalWaitNanos = new LongAdder();
+
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public FlowController(FlowControlProperties properties) {
+        this.maxInFlightMessages = properties.getMaxInFlightMessages();
+        this.maxInFlightBytes = (int) Math.min(properties.getMaxInFlightBytes(), Integer.MAX_VALUE);
+        this.topicMaxInFlightMessages = properties.getTopicMaxInFlightMessages();
+        this.topicRate = properties.getTopicRate();
+        this.overflowPolicy = properties.getOverflowPolicy();
+        this.maxBlockNanos = TimeUnit.MILLISECONDS.toNanos(properties.getMaxBlockMs());
+        this.inFlightMessagePermits = maxInFlightMessages > 0 ? new Semaphore(maxInFlightMessages, true) : null;
+        this.inFlightBytePermits = maxInFlightBytes > 0 ? new Semaphore(maxInFlightBytes, true) : null;
+        this.rateLimiter = properties.getRate() > 0 ? new TokenBucket(properties.getRate()) : null;
+    }
+
+    /**
+     * @param properties 流控配置
+     * @return 是否配置了任一流控上限
+     */
+    public static boolean isEnabled(FlowControlProperties properties) {
+        return properties.getMaxInFlightMessages() > 0 || properties.getMaxInFlightBytes() > 0 || properties.getTopicMaxInFlightMessages() > 0
+                || properties.getRate() > 0 || properties.getTopicRate() > 0;
+    }
+
+    /**
+     * 获取发送许可，获得的许可必须在发送完成后通过{@link #release(Permit)}归还
+     *
+     * @param topic  topic
+     * @param count  消息数
+     * @param bytes  消息字节数
+     * @param policy 溢出策略，为空时使用配置的默认策略
+     * @return 发送许可
+     * @throws MqsFlowControlException 达到上限且不能等待或等待超时
+     * @throws InterruptedException    等待时被中断
+     */
+    public Permit acquire(String topic, int count, long bytes, String policy) throws InterruptedException {
+        String mode = policy == null ? overflowPolicy : policy;
+        long start = System.nanoTime();
+        long deadline = BLOCK.equals(mode) ? start + maxBlockNanos : start;
+        Permit permit = new Permit(topic, count, bytes);
+        TokenBucket topicRateLimiter = topicRate > 0 ? topicRateLimiters.computeIfAbsent(topic, k -> new TokenBucket(topicRate)) : null;
+        boolean rateReserved = false;
+        boolean topicRateReserved = false;
+        boolean success = false;
+        try {
+            long waitNanos = 0;
+            if (rateLimiter != null) {
+                waitNanos = rateLimiter.reserve(count, Math.max(0, deadline - System.nanoTime()));
+                if (waitNanos < 0) throw reject(mode, "实例发送速率达到上限");
+                rateReserved = true;
+            }
+            if (topicRateLimiter != null) {
+                // 两个令牌桶的等待同时进行，取较长的等待时间
+                long topicWaitNanos = topicRateLimiter.reserve(count, Math.max(0, deadline - System.nanoTime()));
+                if (topicWaitNanos < 0) throw reject(mode, "topic发送速率达到上限：" + topic);
+                topicRateReserved = true;
+                waitNanos = Math.max(waitNanos, topicWaitNanos);
+            }
+            if (waitNanos > 0) TimeUnit.NANOSECONDS.sleep(waitNanos);
+            Semaphore topicSemaphore = topicMaxInFlightMessages > 0 ? topicPermits.computeIfAbsent(topic, k -> new Semaphore(topicMaxInFlightMessages, true)) : null;
+            if (topicSemaphore != null) {
+                permit.topicPermits = Math.min(count, topicMaxInFlightMessages);
+                if (!tryAcquire(topicSemaphore, permit.topicPermits, deadline)) {
+                    permit.topicPermits = 0;
+                    throw reject(mode, "topic在途消息数达到上限：" + topic);
+                }
+            }
+            if (inFlightMessagePermits != null) {
+                permit.messagePermits = Math.min(count, maxInFlightMessages);
+                if (!tryAcquire(inFlightMessagePermits, permit.messagePermits, deadline)) {
+                    permit.messagePermits = 0;
+                    throw reject(mode, "实例在途消息数达到上限");
+                }
+            }
+            if (inFlightBytePermits != null) {
+                permit.bytePermits = (int) Math.min(bytes, maxInFlightBytes);
+                if (!tryAcquire(inFlightBytePermits, permit.bytePermits, deadline)) {
+                    permit.bytePermits = 0;
+                    throw reject(mode, "实例在途字节数达到上限");
+                }
+            }
+            success = true;
+        } finally {
+            recordWait(System.nanoTime() - start);
+            if (!success) {
+                // 消息没有发送，归还已获取的令牌，避免被拒绝的请求占用速率
+                if (rateReserved) rateLimiter.refund(count);
+                if (topicRateReserved) topicRateLimiter.refund(count);
+                release(permit);
+            }
+        }
+        acquired.increment();
+        inFlightMessages.addAndGet(count);
+        inFlightBytes.addAndGet(bytes);
+        permit.held = true;
+        return permit;
+    }
+
+    /**
+     * 归还发送许可
+     *
+     * @param permit 发送许可
+     */
+    public void release(Permit permit) {
+        if (permit.topicPermits > 0) topicPermits.get(permit.topic).release(permit.topicPermits);
+        if (permit.messagePermits > 0) inFlightMessagePermits.release(permit.messagePermits);
+        if (permit.bytePermits > 0) inFlightBytePermits.release(permit.bytePermits);
+        permit.topicPermits = 0;
+        permit.messagePermits = 0;
+        permit.bytePermits = 0;
+        if (permit.held) {
+            permit.held = false;
+            inFlightMessages.addAndGet(-permit.count);
+            inFlightBytes.addAndGet(-permit.bytes);
+        }
+    }
+
+    /**
+     * @return 流控指标快照
+     */
+    public FlowControlMetrics metrics() {
+        FlowControlMetrics metrics = new FlowControlMetrics();
+        metrics.setInFlightMessages(inFlightMessages.get());
+        metrics.setInFlightBytes(inFlightBytes.get());
+        Map<String, Long> topicInFlightMessages = new LinkedHashMap<>();
+        for (Map.Entry<String, Semaphore> entry : topicPermits.entrySet()) {
+            topicInFlightMessages.put(entry.getKey(), (long) (topicMaxInFlightMessages - entry.getValue().availablePermits()));
+        }
+        metrics.setTopicInFlightMessages(topicInFlightMessages);
+        metrics.setAcquired(acquired.sum());
+        metrics.setWaited(waited.sum());
+        metrics.setRejected(rejected.sum());
+        metrics.setShed(shed.sum());
+        metrics.setTotalWaitMs(TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.sum()));
+        metrics.setMaxWaitMs(TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()));
+        return metrics;
+    }
+
+    /**
+     * 先尝试立即获取，不能立即获取且未到截止时间时等待到截止时间
+     */
+    private boolean tryAcquire(Semaphore semaphore, int permits, long deadline) throws InterruptedException {
+        if (semaphore.tryAcquire(permits)) return true;
+        long remaining = deadline - System.nanoTime();
+        return remaining > 0 && semaphore.tryAcquire(permits, remaining, TimeUnit.NANOSECONDS);
+    }
+
+    private MqsFlowControlException reject(String policy, String reason) {
+        boolean isShed = SHED.equals(policy);
+        if (isShed) shed.increment();
+        else rejected.increment();
+        return new MqsFlowControlException(reason, isShed);
+    }
+
+    private void recordWait(long nanos) {
+        // 立即获得或立即拒绝时不计入等待
+        if (nanos < TimeUnit.MILLISECONDS.toNanos(1)) return;
+        waited.increment();
+        totalWaitNanos.add(nanos);
+        maxWaitNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * 发送许可，记录实际获取的各类许可数量
+     */
+    public static class Permit {
+
+        private final String topic;
+
+        private final int count;
+
+        private final long bytes;
+
+        private int topicPermits;
+
+        private int messagePermits;
+
+        private int bytePermits;
+
+        /**
+         * 是否已计入在途指标
+         */
+        private boolean held;
+
+        private Permit(String topic, int count, long bytes) {
+            this.topic = topic;
+            this.count = count;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package org.yinqin.mqs.common.flow;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌桶
+ * 令牌按固定速率生成，桶容量为一秒的令牌数，允许短时突发；
+ * 令牌不足时预支令牌并返回需要等待的时间，后续请求排在已预支的令牌之后
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see FlowController
+ * @since 1.0.8
+ */
+public class TokenBucket {
+
+    /**
+     * 每纳秒生成的令牌数
+     */
+    private final double tokensPerNanos;
+
+    /**
+     * 桶容量
+     */
+    private final double capacity;
+
+    /**
+     * 当前令牌数，为负数时表示已预支的令牌
+     */
+    private double tokens;
+
+    /**
+     * 上次补充令牌的时间，单位：纳秒
+     */
+    private long lastRefill = System.nanoTime();
+
+    /**
+     * @param rate 每秒生成的令牌数，大于0
+     */
+    public TokenBucket(int rate) {
+        this.tokensPerNanos = rate / (double) TimeUnit.SECONDS.toNanos(1);
+        this.capacity = rate;
+        this.tokens = rate;
+    }
+
+    /**
+     * 获取令牌，需要等待的时间超过最长等待时间时不获取
+     *
+     * @param permits      令牌数
+     * @param timeoutNanos 最长等待时间，单位：纳秒
+     * @return 获取令牌后需要等待的时间，单位：纳秒，未获取时返回-1
+     */
+    public synchronized long reserve(int permits, long timeoutNanos) {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNanos);
+        lastRefill = now;
+        // 单次请求超过桶容量时按桶容量计算，避免永远无法获取
+        double requested = Math.min(permits, capacity);
+        long waitNanos = tokens >= requested ? 0 : (long) Math.ceil((requested - tokens) / tokensPerNanos);
+        if (waitNanos > timeoutNanos) return -1;
+        tokens -= requested;
+        return waitNanos;
+    }
+
+    /**
+     * 归还已获取但未使用的令牌，如同一次发送的其他令牌桶拒绝或获取在途许可失败时
+     *
+     * @param permits 获取时的令牌数
+     */
+    public synchronized void refund(int permits) {
+        tokens = Math.min(capacity, tokens + Math.min(permits, capacity));
+    }
+}
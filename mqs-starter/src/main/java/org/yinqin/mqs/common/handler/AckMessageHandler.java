@@ -0,0 +1,40 @@
+package org.yinqin.mqs.common.handler;
+
+import org.yinqin.mqs.common.entity.AdapterMessage;
+import org.yinqin.mqs.common.exception.MqsConsumerException;
+
+import java.util.List;
+
+/**
+ * 支持部分确认的消息处理器
+ * 批量消费时返回每条消息的处理结果，消费者只重新投递处理失败的部分，避免一条失败导致整批重新消费
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see BatchResult
+ * @since 1.0.8
+ */
+public interface AckMessageHandler extends MessageHandler {
+
+    /**
+     * 批量消息处理方法，返回每条消息的处理结果
+     *
+     * @param messages 消息
+     * @return 处理结果，抛出异常时视为整批处理失败
+     * @throws MqsConsumerException 异常
+     */
+    BatchResult processBatch(List<AdapterMessage> messages) throws MqsConsumerException;
+
+    /**
+     * 不需要部分确认的场景，例如跨拉取累积的批次，任一消息处理失败时整批视为失败
+     *
+     * @param messages 消息
+     * @throws MqsConsumerException 部分消息处理失败
+     */
+    @Override
+    default void process(List<AdapterMessage> messages) throws MqsConsumerException {
+        BatchResult result = processBatch(messages);
+        if (!result.isSuccess()) throw new MqsConsumerException("批量消息部分处理失败，失败数量：" + result.failedCount(), null);
+    }
+}
@@ -0,0 +1,115 @@
+package org.yinqin.mqs.common.handler;
+
+import org.yinqin.mqs.common.entity.AdapterMessage;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 批量消息处理结果
+ * 记录一批消息中处理失败的消息下标，消费者据此只确认处理成功的部分：
+ * rocketmq确认到第一条失败消息之前，kafka提交到各分区第一条失败消息之前或只转发失败的消息到重试topic
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see AckMessageHandler
+ * @since 1.0.8
+ */
+public final class BatchResult {
+
+    private static final BatchResult SUCCESS = new BatchResult(new BitSet());
+
+    /**
+     * 处理失败的消息下标
+     */
+    private final BitSet failed;
+
+    private BatchResult(BitSet failed) {
+        this.failed = failed;
+    }
+
+    /**
+     * @return 全部处理成功
+     */
+    public static BatchResult success() {
+        return SUCCESS;
+    }
+
+    /**
+     * @param indexes 处理失败的消息下标
+     * @return 部分处理失败
+     */
+    public static BatchResult failed(int... indexes) {
+        BitSet failed = new BitSet();
+        for (int index : indexes) failed.set(index);
+        return new BatchResult(failed);
+    }
+
+    /**
+     * @param indexes 处理失败的消息下标
+     * @return 部分处理失败
+     */
+    public static BatchResult failed(Collection<Integer> indexes) {
+        BitSet failed = new BitSet();
+        for (int index : indexes) failed.set(index);
+        return new BatchResult(failed);
+    }
+
+    /**
+     * @param from 第一条处理失败的消息下标
+     * @param to   最后一条处理失败的消息下标加一
+     * @return 下标在[from, to)范围内的消息全部处理失败
+     */
+    public static BatchResult failedRange(int from, int to) {
+        BitSet failed = new BitSet();
+        failed.set(from, to);
+        return new BatchResult(failed);
+    }
+
+    /**
+     * @return 是否全部处理成功
+     */
+    public boolean isSuccess() {
+        return failed.isEmpty();
+    }
+
+    /**
+     * @param index 消息下标
+     * @return 该消息是否处理失败
+     */
+    public boolean isFailed(int index) {
+        return failed.get(index);
+    }
+
+    /**
+     * 查找指定范围内第一条处理失败的消息
+     *
+     * @param from 起始下标，包含
+     * @param to   结束下标，不包含
+     * @return 第一条失败消息的下标，范围内没有失败消息时返回to
+     */
+    public int firstFailure(int from, int to) {
+        int index = failed.nextSetBit(from);
+        return index < 0 || index >= to ? to : index;
+    }
+
+    /**
+     * @return 处理失败的消息数量
+     */
+    public int failedCount() {
+        return failed.cardinality();
+    }
+
+    /**
+     * @param messages 本批次的消息集合
+     * @return 处理失败的消息
+     */
+    public List<AdapterMessage> failedMessages(List<AdapterMessage> messages) {
+        List<AdapterMessage> failedMessages = new ArrayList<>(failed.cardinality());
+        for (int i = failed.nextSetBit(0); i >= 0 && i < messages.size(); i = failed.nextSetBit(i + 1)) failedMessages.add(messages.get(i));
+        return failedMessages;
+    }
+}
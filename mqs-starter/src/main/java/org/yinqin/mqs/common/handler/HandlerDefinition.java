@@ -0,0 +1,181 @@
+package org.yinqin.mqs.common.handler;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.ToString;
+import org.yinqin.mqs.common.Constants;
+import org.yinqin.mqs.common.MessageAdapter;
+import org.yinqin.mqs.common.entity.AdapterMessage;
+import org.yinqin.mqs.common.exception.MqsConsumerException;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 消息处理器定义
+ * 启动时从{@link MessageAdapter}注解中解析出的不可变分发信息，消费时直接按定义分发，不再读取注解
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see HandlerRegistry
+ * @since 1.0.8
+ */
+@Getter
+@ToString
+public final class HandlerDefinition {
+
+    /**
+     * 转换后的topic名称
+     */
+    private final String topic;
+
+    /**
+     * 组件实例ID
+     */
+    private final String instanceId;
+
+    /**
+     * 消费类型
+     */
+    private final String consumerType;
+
+    /**
+     * 是否批量消费
+     */
+    private final boolean batch;
+
+    /**
+     * 是否广播消费
+     */
+    private final boolean broadcast;
+
+    /**
+     * 同一消费组下的消费者数量，小于等于0时取实例配置
+     */
+    private final int concurrency;
+
+    /**
+     * 跨拉取累积消息时的最小批量
+     */
+    private final int minBatchSize;
+
+    /**
+     * 跨拉取累积消息时的最大批量，小于等于0时不限制
+     */
+    private final int maxBatchSize;
+
+    /**
+     * 累积消息的最长等待时间，单位：毫秒
+     */
+    private final long lingerMs;
+
+    /**
+     * tag过滤表达式
+     */
+    private final String tagExpression;
+
+    /**
+     * SQL92过滤表达式，为空时不使用
+     */
+    private final String sqlExpression;
+
+    /**
+     * 解析后的tag集合，为空时不按tag过滤
+     */
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    private final Set<String> tags;
+
+    /**
+     * 消息处理器
+     */
+    @ToString.Exclude
+    private final MessageHandler handler;
+
+    public HandlerDefinition(String topic, MessageHandler handler, MessageAdapter messageAdapter) {
+        this.topic = topic;
+        this.handler = handler;
+        this.instanceId = messageAdapter.instanceId();
+        this.batch = messageAdapter.isBatch();
+        this.broadcast = messageAdapter.isBroadcast();
+        this.concurrency = messageAdapter.concurrency();
+        this.minBatchSize = messageAdapter.minBatchSize();
+        this.maxBatchSize = messageAdapter.maxBatchSize();
+        this.lingerMs = messageAdapter.lingerMs();
+        this.tagExpression = messageAdapter.tagExpression();
+        this.sqlExpression = messageAdapter.sqlExpression();
+        this.tags = parseTags(tagExpression);
+        if (broadcast) consumerType = Constants.BROADCAST;
+        else if (batch) consumerType = Constants.BATCH;
+        else consumerType = Constants.TRAN;
+    }
+
+    /**
+     * @return 是否跨拉取累积消息后再批量处理
+     */
+    public boolean isMicroBatch() {
+        return batch && minBatchSize > 1 && lingerMs > 0;
+    }
+
+    /**
+     * @return 是否按tag过滤
+     */
+    public boolean isTagFiltered() {
+        return tags != null;
+    }
+
+    /**
+     * @param tag 消息tag
+     * @return 消息是否满足tag过滤表达式
+     */
+    public boolean acceptTag(String tag) {
+        return tags == null || (tag != null && tags.contains(tag));
+    }
+
+    /**
+     * 解析tag过滤表达式
+     *
+     * @param tagExpression tag过滤表达式
+     * @return tag集合，表达式为空或包含通配符时返回空
+     */
+    private static Set<String> parseTags(String tagExpression) {
+        if (tagExpression == null || tagExpression.trim().isEmpty()) return null;
+        Set<String> parsed = new HashSet<>();
+        for (String tag : tagExpression.split(Constants.TAG_SEPARATOR)) {
+            String trimmed = tag.trim();
+            if (Constants.WILDCARD.equals(trimmed)) return null;
+            if (!trimmed.isEmpty()) parsed.add(trimmed);
+        }
+        return parsed.isEmpty() ? null : Collections.unmodifiableSet(parsed);
+    }
+
+    /**
+     * 分发消息，批量消费时整批交给消息处理器，否则逐条处理
+     *
+     * @param messages 同一topic的消息集合
+     * @throws MqsConsumerException 消费异常
+     */
+    public void dispatch(List<AdapterMessage> messages) throws MqsConsumerException {
+        if (batch) {
+            handler.process(messages);
+            return;
+        }
+        for (AdapterMessage message : messages) handler.process(message);
+    }
+
+    /**
+     * 分发消息并返回每条消息的处理结果，只有批量消费且消息处理器支持部分确认时才可能返回部分失败
+     *
+     * @param messages 同一topic的消息集合
+     * @return 处理结果
+     * @throws MqsConsumerException 消费异常，视为整批处理失败
+     */
+    public BatchResult dispatchWithResult(List<AdapterMessage> messages) throws MqsConsumerException {
+        if (batch && handler instanceof AckMessageHandler) return ((AckMessageHandler) handler).processBatch(messages);
+        dispatch(messages);
+        return BatchResult.success();
+    }
+}
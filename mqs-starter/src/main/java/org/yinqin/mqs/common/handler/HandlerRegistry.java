@@ -0,0 +1,78 @@
+package org.yinqin.mqs.common.handler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.yinqin.mqs.common.MessageAdapter;
+import org.yinqin.mqs.common.config.MqsProperties.AdapterProperties;
+import org.yinqin.mqs.common.util.ConvertUtil;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 消息处理器注册表
+ * 启动时一次性解析所有消息处理器，按实例ID、消费类型、topic建立不可变分发表，供kafka和rocketmq消费者共用
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see HandlerDefinition
+ * @since 1.0.8
+ */
+public class HandlerRegistry {
+
+    private final Logger logger = LoggerFactory.getLogger(HandlerRegistry.class);
+
+    /**
+     * 分发表，实例ID -> 消费类型 -> topic -> 消息处理器定义
+     */
+    private final Map<String, Map<String, Map<String, HandlerDefinition>>> definitions;
+
+    public HandlerRegistry(Map<String, AdapterProperties> adapterProperties, Map<String, MessageHandler> messageHandlerBeans) {
+        Map<String, Map<String, Map<String, HandlerDefinition>>> table = new HashMap<>();
+        messageHandlerBeans.forEach((beanName, bean) -> {
+            // 通过目标类读取注解，兼容被代理的消息处理器
+            MessageAdapter messageAdapter = AnnotationUtils.findAnnotation(AopUtils.getTargetClass(bean), MessageAdapter.class);
+            if (messageAdapter == null) {
+                logger.warn("消息处理器：{}，未使用注解MessageAdapter，将不会被加载", beanName);
+                return;
+            }
+            if (messageAdapter.isBroadcast() && messageAdapter.isBatch()) {
+                logger.warn("实例：{}，消息处理器：{}，同时声明了广播和批量消息，将不会被加载", messageAdapter.instanceId(), beanName);
+                return;
+            }
+            AdapterProperties properties = adapterProperties.get(messageAdapter.instanceId());
+            if (properties == null) {
+                logger.warn("实例：{}，消息处理器：{}，实例未配置，将不会被加载", messageAdapter.instanceId(), beanName);
+                return;
+            }
+            String topicName = ConvertUtil.convertName(messageAdapter.topicName(), properties.getTopic());
+            HandlerDefinition definition = new HandlerDefinition(topicName, bean, messageAdapter);
+            table.computeIfAbsent(definition.getInstanceId(), key -> new HashMap<>())
+                    .computeIfAbsent(definition.getConsumerType(), key -> new HashMap<>())
+                    .put(topicName, definition);
+        });
+        // 冻结分发表
+        Map<String, Map<String, Map<String, HandlerDefinition>>> frozen = new HashMap<>();
+        table.forEach((instanceId, typeDefinitions) -> {
+            Map<String, Map<String, HandlerDefinition>> frozenTypes = new HashMap<>();
+            typeDefinitions.forEach((consumerType, topicDefinitions) -> frozenTypes.put(consumerType, Collections.unmodifiableMap(topicDefinitions)));
+            frozen.put(instanceId, Collections.unmodifiableMap(frozenTypes));
+        });
+        this.definitions = Collections.unmodifiableMap(frozen);
+    }
+
+    /**
+     * 获取实例下指定消费类型的分发表
+     *
+     * @param instanceId   实例ID
+     * @param consumerType 消费类型
+     * @return topic -> 消息处理器定义，不可修改
+     */
+    public Map<String, HandlerDefinition> getDefinitions(String instanceId, String consumerType) {
+        return definitions.getOrDefault(instanceId, Collections.emptyMap()).getOrDefault(consumerType, Collections.emptyMap());
+    }
+}
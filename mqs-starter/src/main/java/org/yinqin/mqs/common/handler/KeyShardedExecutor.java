@@ -0,0 +1,95 @@
+package org.yinqin.mqs.common.handler;
+
+import org.yinqin.mqs.common.entity.AdapterMessage;
+import org.yinqin.mqs.common.exception.MqsConsumerException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * 按业务键分片的并行执行器
+ * 将同一批顺序消息按bizKey分到固定数量的通道中，同一bizKey的消息在同一通道内按原顺序串行处理，不同通道并行处理；
+ * 通道内某条消息处理失败后该通道后续消息不再处理，所有通道结束后才返回，保证调用方返回成功时整批消息都已处理完成
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see HandlerDefinition
+ * @since 1.0.8
+ */
+public class KeyShardedExecutor {
+
+    /**
+     * 执行通道的线程池
+     */
+    private final Executor executor;
+
+    /**
+     * 通道数量
+     */
+    private final int lanes;
+
+    public KeyShardedExecutor(Executor executor, int lanes) {
+        this.executor = executor;
+        this.lanes = lanes;
+    }
+
+    /**
+     * 按bizKey分片并行处理消息，最后一个通道在调用线程中处理
+     *
+     * @param definition 消息处理器定义
+     * @param messages   同一队列的顺序消息
+     * @throws MqsConsumerException 任一通道处理失败
+     */
+    public void execute(HandlerDefinition definition, List<AdapterMessage> messages) throws MqsConsumerException {
+        List<List<AdapterMessage>> shards = shard(messages);
+        if (shards.size() == 1) {
+            definition.dispatch(shards.get(0));
+            return;
+        }
+        List<CompletableFuture<Void>> futures = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size() - 1; i++) {
+            List<AdapterMessage> shard = shards.get(i);
+            futures.add(CompletableFuture.runAsync(() -> definition.dispatch(shard), executor));
+        }
+        MqsConsumerException failure = null;
+        try {
+            definition.dispatch(shards.get(shards.size() - 1));
+        } catch (RuntimeException e) {
+            failure = new MqsConsumerException("分片通道处理失败", e);
+        }
+        // 等待所有通道结束，失败的通道不影响其他通道
+        for (CompletableFuture<Void> future : futures) {
+            try {
+                future.join();
+            } catch (CompletionException e) {
+                if (failure == null) failure = new MqsConsumerException("分片通道处理失败", e.getCause());
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * 按bizKey分片，没有bizKey的消息分到同一通道，保持原有顺序
+     *
+     * @param messages 消息集合
+     * @return 非空的分片
+     */
+    private List<List<AdapterMessage>> shard(List<AdapterMessage> messages) {
+        List<List<AdapterMessage>> shards = new ArrayList<>(lanes);
+        for (int i = 0; i < lanes; i++) shards.add(new ArrayList<>());
+        for (AdapterMessage message : messages) {
+            String bizKey = message.getBizKey();
+            int lane = bizKey == null ? 0 : (bizKey.hashCode() & Integer.MAX_VALUE) % lanes;
+            shards.get(lane).add(message);
+        }
+        List<List<AdapterMessage>> nonEmpty = new ArrayList<>(lanes);
+        for (List<AdapterMessage> shard : shards) {
+            if (!shard.isEmpty()) nonEmpty.add(shard);
+        }
+        return nonEmpty;
+    }
+}
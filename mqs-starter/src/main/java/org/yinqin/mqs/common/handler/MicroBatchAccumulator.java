@@ -0,0 +1,235 @@
+package org.yinqin.mqs.common.handler;
+
+import lombok.Getter;
+import org.yinqin.mqs.common.entity.AdapterMessage;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * 跨拉取批次的消息累积器
+ * 将多次拉取或多次回调得到的消息累积起来，达到最小批量或等待超过linger时间后，按不超过最大批量的大小交给批量消息处理器，
+ * 每次追加的消息全部取出、且所在的批次全部处理完成后才完成对应的future，消费者据此延迟提交位移或返回消费状态；
+ * 多个线程可以同时处理同一累积器的批次，后处理完成的批次不会提前完成仍有批次在处理中的追加记录
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see HandlerDefinition#isMicroBatch()
+ * @since 1.0.8
+ */
+public class MicroBatchAccumulator {
+
+    /**
+     * 消息处理器定义
+     */
+    @Getter
+    private final HandlerDefinition definition;
+
+    /**
+     * 待处理消息
+     */
+    private final Deque<AdapterMessage> buffer = new ArrayDeque<>();
+
+    /**
+     * 尚未全部取出的追加记录，按追加顺序排列
+     */
+    private final Deque<Contribution> contributions = new ArrayDeque<>();
+
+    /**
+     * 缓冲区中最早一条消息的追加时间
+     */
+    private long firstAppendTime;
+
+    public MicroBatchAccumulator(HandlerDefinition definition) {
+        this.definition = definition;
+    }
+
+    /**
+     * 追加消息
+     *
+     * @param messages 消息集合
+     * @return 追加的消息全部处理完成后完成，任一所在批次处理失败时异常完成
+     */
+    public synchronized CompletableFuture<Void> append(List<AdapterMessage> messages) {
+        Contribution contribution = new Contribution(messages.size());
+        if (messages.isEmpty()) {
+            contribution.future.complete(null);
+            return contribution.future;
+        }
+        if (buffer.isEmpty()) firstAppendTime = System.currentTimeMillis();
+        buffer.addAll(messages);
+        contributions.add(contribution);
+        return contribution.future;
+    }
+
+    /**
+     * 取出可以处理的批次
+     *
+     * @param force 是否忽略最小批量和linger时间，取出全部消息
+     * @return 批次集合，没有可处理的批次时返回空集合
+     */
+    public synchronized List<Batch> drain(boolean force) {
+        if (buffer.isEmpty()) return Collections.emptyList();
+        boolean expired = force || System.currentTimeMillis() - firstAppendTime >= definition.getLingerMs();
+        if (!expired && buffer.size() < definition.getMinBatchSize()) return Collections.emptyList();
+        List<Batch> batches = new ArrayList<>();
+        int maxBatchSize = definition.getMaxBatchSize() > 0 ? definition.getMaxBatchSize() : Integer.MAX_VALUE;
+        while (!buffer.isEmpty() && (expired || buffer.size() >= definition.getMinBatchSize())) {
+            batches.add(takeBatch(Math.min(buffer.size(), maxBatchSize)));
+        }
+        if (!buffer.isEmpty()) firstAppendTime = System.currentTimeMillis();
+        return batches;
+    }
+
+    /**
+     * @return 距离linger时间到期的剩余毫秒数，缓冲区为空时返回{@link Long#MAX_VALUE}
+     */
+    public synchronized long remainingLinger() {
+        if (buffer.isEmpty()) return Long.MAX_VALUE;
+        return Math.max(0, firstAppendTime + definition.getLingerMs() - System.currentTimeMillis());
+    }
+
+    /**
+     * 从缓冲区头部取出指定数量的消息组成批次
+     *
+     * @param size 批量大小
+     * @return 批次
+     */
+    private Batch takeBatch(int size) {
+        List<AdapterMessage> messages = new ArrayList<>(size);
+        List<Contribution> touched = new ArrayList<>();
+        for (int i = 0; i < size; i++) messages.add(buffer.poll());
+        int remaining = size;
+        while (remaining > 0) {
+            Contribution contribution = contributions.peek();
+            int taken = Math.min(remaining, contribution.remaining);
+            contribution.remaining -= taken;
+            remaining -= taken;
+            boolean allTaken = contribution.remaining == 0;
+            contribution.batchTaken(allTaken);
+            touched.add(contribution);
+            if (allTaken) contributions.poll();
+        }
+        return new Batch(definition, messages, touched);
+    }
+
+    /**
+     * 一次追加的消息
+     */
+    private static class Contribution {
+
+        /**
+         * 尚未取出的消息数量，只在持有累积器锁时访问
+         */
+        private int remaining;
+
+        /**
+         * 已取出、尚未处理完成的批次数
+         */
+        private int pendingBatches;
+
+        /**
+         * 消息是否已全部取出
+         */
+        private boolean allTaken;
+
+        /**
+         * 所在批次中第一个处理异常
+         */
+        private Throwable failure;
+
+        /**
+         * 全部处理完成后完成
+         */
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private Contribution(int remaining) {
+            this.remaining = remaining;
+        }
+
+        /**
+         * 取出包含本记录消息的批次
+         *
+         * @param last 本记录的消息是否已全部取出
+         */
+        private synchronized void batchTaken(boolean last) {
+            pendingBatches++;
+            if (last) allTaken = true;
+        }
+
+        /**
+         * 包含本记录消息的批次处理完成，消息已全部取出且批次全部处理完成时完成future
+         *
+         * @param batchFailure 批次处理异常，处理成功或已交给恢复处理器时为空
+         */
+        private synchronized void batchDone(Throwable batchFailure) {
+            if (failure == null) failure = batchFailure;
+            if (--pendingBatches > 0 || !allTaken) return;
+            if (failure == null) future.complete(null);
+            else future.completeExceptionally(failure);
+        }
+    }
+
+    /**
+     * 待处理批次
+     */
+    public static class Batch {
+
+        private final HandlerDefinition definition;
+
+        private final List<AdapterMessage> messages;
+
+        /**
+         * 有消息落在本批次中的追加记录，本批次处理完成后通知
+         */
+        private final List<Contribution> touched;
+
+        private Batch(HandlerDefinition definition, List<AdapterMessage> messages, List<Contribution> touched) {
+            this.definition = definition;
+            this.messages = messages;
+            this.touched = touched;
+        }
+
+        /**
+         * @return 批次消息数量
+         */
+        public int size() {
+            return messages.size();
+        }
+
+        /**
+         * 将批次交给批量消息处理器处理，处理失败时异常向上抛出
+         */
+        public void process() {
+            process(null);
+        }
+
+        /**
+         * 将批次交给批量消息处理器处理，处理失败时先交给恢复处理器，再通知对应的追加记录并将异常向上抛出；
+         * 交给恢复处理器的消息视为处理完成，没有恢复处理器时对应的future在其全部批次处理完成后异常完成
+         *
+         * @param recoverer 处理失败时的恢复处理器，可以为空
+         */
+        public void process(Consumer<List<AdapterMessage>> recoverer) {
+            Throwable failure = null;
+            try {
+                definition.getHandler().process(messages);
+            } catch (RuntimeException e) {
+                failure = e;
+                if (recoverer != null) {
+                    recoverer.accept(messages);
+                    failure = null;
+                }
+                throw e;
+            } finally {
+                for (Contribution contribution : touched) contribution.batchDone(failure);
+            }
+        }
+    }
+}
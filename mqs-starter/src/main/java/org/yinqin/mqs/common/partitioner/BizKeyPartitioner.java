@@ -0,0 +1,60 @@
+package org.yinqin.mqs.common.partitioner;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * 业务键分区策略
+ * 根据bizKey为消息选择kafka分区或rocketmq队列，kafka和rocketmq共用同一套策略，相同bizKey在分区数不变时总是得到相同的分区
+ * 可通过实例的partitioner配置选择内置策略，或填写实现了本接口、带无参构造方法的类的全限定名
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see Murmur3Partitioner
+ * @see JumpHashPartitioner
+ * @since 1.0.8
+ */
+public interface BizKeyPartitioner {
+
+    /**
+     * 兼容旧版本的分区方式：rocketmq只对数字bizKey选择队列，kafka使用客户端默认分区器
+     */
+    String LEGACY = "legacy";
+
+    /**
+     * murmur3散列后取模
+     */
+    String MURMUR3 = "murmur3";
+
+    /**
+     * murmur3散列后使用jump一致性散列，分区数变化时只有最少的bizKey改变分区
+     */
+    String JUMP = "jump";
+
+    /**
+     * 选择分区
+     *
+     * @param bizKey        业务键，不为空
+     * @param numPartitions 分区或队列数量，大于0
+     * @return 分区或队列下标，范围[0, numPartitions)
+     */
+    int partition(String bizKey, int numPartitions);
+
+    /**
+     * 根据配置创建分区策略
+     *
+     * @param name 策略名称或实现类的全限定名
+     * @return 分区策略，兼容旧版本的分区方式返回空
+     * @throws IllegalArgumentException 实现类无法创建
+     */
+    static BizKeyPartitioner of(String name) {
+        if (StringUtils.isBlank(name) || LEGACY.equals(name)) return null;
+        if (MURMUR3.equals(name)) return new Murmur3Partitioner();
+        if (JUMP.equals(name)) return new JumpHashPartitioner();
+        try {
+            return (BizKeyPartitioner) Class.forName(name).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalArgumentException("无法创建业务键分区策略：" + name, e);
+        }
+    }
+}
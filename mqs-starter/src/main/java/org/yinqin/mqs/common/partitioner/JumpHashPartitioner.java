@@ -0,0 +1,30 @@
+package org.yinqin.mqs.common.partitioner;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+
+/**
+ * jump一致性散列分区策略
+ * 对bizKey的UTF-8字节计算murmur3 64位散列，再按jump consistent hash算法选择分区，
+ * 分区数从n增加到n+1时只有约1/(n+1)的bizKey改变分区
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see BizKeyPartitioner
+ * @since 1.0.8
+ */
+public class JumpHashPartitioner implements BizKeyPartitioner {
+
+    @Override
+    public int partition(String bizKey, int numPartitions) {
+        long key = MurmurHash.hash64(bizKey);
+        long bucket = -1;
+        long next = 0;
+        while (next < numPartitions) {
+            bucket = next;
+            key = key * 2862933555777941757L + 1;
+            next = (long) ((bucket + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) bucket;
+    }
+}
@@ -0,0 +1,21 @@
+package org.yinqin.mqs.common.partitioner;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+
+/**
+ * murmur3分区策略
+ * 对bizKey的UTF-8字节计算murmur3 32位散列后对分区数取模
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see BizKeyPartitioner
+ * @since 1.0.8
+ */
+public class Murmur3Partitioner implements BizKeyPartitioner {
+
+    @Override
+    public int partition(String bizKey, int numPartitions) {
+        return (MurmurHash.hash32(bizKey) & Integer.MAX_VALUE) % numPartitions;
+    }
+}
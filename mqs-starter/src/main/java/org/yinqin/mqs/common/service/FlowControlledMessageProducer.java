@@ -0,0 +1,258 @@
+package org.yinqin.mqs.common.service;
+
+import org.yinqin.mqs.common.Constants;
+import org.yinqin.mqs.common.entity.AdapterMessage;
+import org.yinqin.mqs.common.entity.MessageCallback;
+import org.yinqin.mqs.common.entity.MessageSendResult;
+import org.yinqin.mqs.common.exception.MqsFlowControlException;
+import org.yinqin.mqs.common.flow.FlowControlMetrics;
+import org.yinqin.mqs.common.flow.FlowController;
+import org.yinqin.mqs.common.flow.FlowController.Permit;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 流控生产者
+ * 每次发送前向流控器获取许可，同步发送在返回后归还许可，异步发送在回调时归还许可，
+ * 使异步发送积压的消息数和字节数不超过配置的上限；
+ * 被流控拒绝的消息不会交给源生生产者，按溢出策略通过发送结果、回调或异常通知调用方
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see FlowController
+ * @see org.yinqin.mqs.common.factory.ProducerFactory
+ * @since 1.0.8
+ */
+public class FlowControlledMessageProducer implements MessageProducer {
+
+    /**
+     * 被流控的生产者或生产者池
+     */
+    private final MessageProducer producer;
+
+    private final FlowController flowController;
+
+    /**
+     * 溢出策略，为空时使用配置的默认策略
+     */
+    private final String overflowPolicy;
+
+    /**
+     * 是否为指定了溢出策略的视图，视图不负责启动和停止生产者
+     */
+    private final boolean view;
+
+    public FlowControlledMessageProducer(MessageProducer producer, FlowController flowController) {
+        this(producer, flowController, null, false);
+    }
+
+    private FlowControlledMessageProducer(MessageProducer producer, FlowController flowController, String overflowPolicy, boolean view) {
+        this.producer = producer;
+        this.flowController = flowController;
+        this.overflowPolicy = overflowPolicy;
+        this.view = view;
+    }
+
+    @Override
+    public void start() {
+        if (!view) producer.start();
+    }
+
+    @Override
+    public MessageSendResult sendMessage(AdapterMessage message) {
+        Permit permit;
+        try {
+            permit = acquire(message);
+        } catch (Exception e) {
+            return errorResult(e);
+        }
+        try {
+            return producer.sendMessage(message);
+        } finally {
+            flowController.release(permit);
+        }
+    }
+
+    @Override
+    public MessageSendResult sendMessage(AdapterMessage message, long timeout, TimeUnit unit) {
+        Permit permit;
+        try {
+            permit = acquire(message);
+        } catch (Exception e) {
+            return errorResult(e);
+        }
+        try {
+            return producer.sendMessage(message, timeout, unit);
+        } finally {
+            flowController.release(permit);
+        }
+    }
+
+    /**
+     * 异步发送消息方法，获得许可后交给源生生产者，回调时归还许可
+     * 被流控拒绝时，fail策略回调失败，shed策略直接丢弃消息、不回调
+     *
+     * @param message  消息
+     * @param callback 消息发送结果回调
+     */
+    @Override
+    public void sendMessage(AdapterMessage message, MessageCallback callback) {
+        Permit permit;
+        try {
+            permit = acquire(message);
+        } catch (MqsFlowControlException e) {
+            if (!e.isShed() && callback != null) callback.onError(e);
+            return;
+        } catch (Exception e) {
+            if (callback != null) callback.onError(e);
+            return;
+        }
+        producer.sendMessage(message, new ReleasingCallback(permit, callback));
+    }
+
+    @Override
+    public CompletableFuture<MessageSendResult> sendAsync(AdapterMessage message) {
+        Permit permit;
+        try {
+            permit = acquire(message);
+        } catch (Exception e) {
+            CompletableFuture<MessageSendResult> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+        CompletableFuture<MessageSendResult> future;
+        try {
+            future = producer.sendAsync(message);
+        } catch (RuntimeException e) {
+            flowController.release(permit);
+            throw e;
+        }
+        return future.whenComplete((result, throwable) -> flowController.release(permit));
+    }
+
+    /**
+     * 批量发送消息方法，按topic一次获取全部消息的许可，任一topic被流控拒绝时整批失败
+     *
+     * @param messages 消息集合
+     * @return 与消息顺序一致的发送结果
+     */
+    @Override
+    public List<MessageSendResult> sendBatch(List<AdapterMessage> messages) {
+        Map<String, List<AdapterMessage>> topicMessages = new LinkedHashMap<>();
+        for (AdapterMessage message : messages) topicMessages.computeIfAbsent(message.getTopic(), k -> new ArrayList<>()).add(message);
+        List<Permit> permits = new ArrayList<>(topicMessages.size());
+        try {
+            for (Map.Entry<String, List<AdapterMessage>> entry : topicMessages.entrySet()) {
+                long bytes = 0;
+                for (AdapterMessage message : entry.getValue()) bytes += size(message);
+                permits.add(acquire(entry.getKey(), entry.getValue().size(), bytes));
+            }
+        } catch (Exception e) {
+            for (Permit permit : permits) flowController.release(permit);
+            List<MessageSendResult> results = new ArrayList<>(messages.size());
+            for (int i = 0; i < messages.size(); i++) results.add(errorResult(e));
+            return results;
+        }
+        try {
+            return producer.sendBatch(messages);
+        } finally {
+            for (Permit permit : permits) flowController.release(permit);
+        }
+    }
+
+    /**
+     * 返回使用指定溢出策略的生产者视图，视图与当前生产者共用流控器和源生生产者
+     *
+     * @param policy 溢出策略，block、fail或shed
+     * @return 生产者视图
+     */
+    @Override
+    public MessageProducer withOverflowPolicy(String policy) {
+        return new FlowControlledMessageProducer(producer, flowController, policy, true);
+    }
+
+    /**
+     * @return 流控指标快照
+     */
+    public FlowControlMetrics getMetrics() {
+        return flowController.metrics();
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (!view) producer.destroy();
+    }
+
+    private Permit acquire(AdapterMessage message) throws InterruptedException {
+        return acquire(message.getTopic(), 1, size(message));
+    }
+
+    private Permit acquire(String topic, int count, long bytes) throws InterruptedException {
+        try {
+            return flowController.acquire(topic, count, bytes, overflowPolicy);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // 恢复中断状态
+            throw e;
+        }
+    }
+
+    private static long size(AdapterMessage message) {
+        return message.getBody() == null ? 0 : message.getBody().length;
+    }
+
+    private static MessageSendResult errorResult(Throwable throwable) {
+        MessageSendResult result = new MessageSendResult();
+        result.setStatus(Constants.ERROR);
+        result.setThrowable(throwable);
+        return result;
+    }
+
+    /**
+     * 回调时归还许可的回调包装，保证同一条消息只归还一次许可
+     */
+    private class ReleasingCallback implements MessageCallback {
+
+        private final Permit permit;
+
+        /**
+         * 调用方的回调，单向发送时为空
+         */
+        private final MessageCallback callback;
+
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private ReleasingCallback(Permit permit, MessageCallback callback) {
+            this.permit = permit;
+            this.callback = callback;
+        }
+
+        @Override
+        public void onSuccess() {
+            release();
+            if (callback != null) callback.onSuccess();
+        }
+
+        @Override
+        public void onSuccess(MessageSendResult result) {
+            release();
+            if (callback != null) callback.onSuccess(result);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            release();
+            if (callback != null) callback.onError(throwable);
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) flowController.release(permit);
+        }
+    }
+}
@@ -1,17 +1,22 @@
 package org.yinqin.mqs.common.service;
 
 import org.springframework.beans.factory.DisposableBean;
+import org.yinqin.mqs.common.Constants;
 import org.yinqin.mqs.common.entity.AdapterMessage;
 import org.yinqin.mqs.common.entity.MessageCallback;
 import org.yinqin.mqs.common.entity.MessageSendResult;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
 
 /**
  * 消息适配器定义的顶级生产者接口
  *
  * @author YinQin
- * @version 1.0.3
+ * @version 1.0.8
  * @createDate 2023年10月13日
  * @see DisposableBean
  * @since 1.0.0
@@ -49,6 +54,63 @@ public interface MessageProducer extends DisposableBean {
      */
     void sendMessage(AdapterMessage message, MessageCallback callback);
 
+    /**
+     * 异步发送消息方法，不阻塞调用线程
+     * 发送成功时以包含消息ID、分区或队列、位移的发送结果完成，发送失败时以失败原因异常完成，
+     * 结果在客户端回调线程中完成，后续耗时操作应使用带线程池的异步方法
+     *
+     * @param message 消息
+     * @return 消息发送结果
+     * @since 1.0.8
+     */
+    default CompletableFuture<MessageSendResult> sendAsync(AdapterMessage message) {
+        CompletableFuture<MessageSendResult> future = new CompletableFuture<>();
+        sendMessage(message, new MessageCallback() {
+            @Override
+            public void onSuccess() {
+                MessageSendResult result = new MessageSendResult();
+                result.setStatus(Constants.SUCCESS);
+                future.complete(result);
+            }
+
+            @Override
+            public void onSuccess(MessageSendResult result) {
+                future.complete(result);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                future.completeExceptionally(throwable);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 批量发送消息方法，阻塞到所有消息发送完成
+     * 默认逐条异步发送后统一等待结果，各实现可以合并为批量请求
+     *
+     * @param messages 消息集合
+     * @return 与消息顺序一致的发送结果，部分消息发送失败时不影响其他消息的结果
+     * @since 1.0.8
+     */
+    default List<MessageSendResult> sendBatch(List<AdapterMessage> messages) {
+        List<CompletableFuture<MessageSendResult>> futures = new ArrayList<>(messages.size());
+        for (AdapterMessage message : messages) futures.add(sendAsync(message));
+        List<MessageSendResult> results = new ArrayList<>(messages.size());
+        for (CompletableFuture<MessageSendResult> future : futures) {
+            try {
+                results.add(future.join());
+            } catch (CompletionException e) {
+                MessageSendResult result = new MessageSendResult();
+                result.setStatus(Constants.ERROR);
+                result.setThrowable(e.getCause());
+                results.add(result);
+            }
+        }
+        return results;
+    }
+
     /**
      * 单向发送消息方法
      *
@@ -58,4 +120,16 @@ public interface MessageProducer extends DisposableBean {
         sendMessage(message, null);
     }
 
+    /**
+     * 返回按次指定流控溢出策略的生产者，未开启流控时返回当前生产者
+     *
+     * @param policy 溢出策略，block、fail或shed
+     * @return 使用指定溢出策略发送消息的生产者
+     * @see org.yinqin.mqs.common.flow.FlowController
+     * @since 1.0.8
+     */
+    default MessageProducer withOverflowPolicy(String policy) {
+        return this;
+    }
+
 }
@@ -0,0 +1,132 @@
+package org.yinqin.mqs.common.service;
+
+import org.apache.commons.lang3.StringUtils;
+import org.yinqin.mqs.common.entity.AdapterMessage;
+import org.yinqin.mqs.common.entity.MessageCallback;
+import org.yinqin.mqs.common.entity.MessageSendResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 生产者池
+ * 持有同一实例的多个源生生产者，有bizKey的消息按bizKey散列选择生产者，保证同一bizKey的消息由同一个生产者按顺序发送，
+ * 没有bizKey的消息轮询选择生产者，以分散单个源生生产者内部的锁竞争和发送线程
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see MessageProducer
+ * @see org.yinqin.mqs.common.factory.ProducerFactory
+ * @since 1.0.8
+ */
+public class PooledMessageProducer implements MessageProducer {
+
+    /**
+     * 源生生产者
+     */
+    private final List<MessageProducer> producers;
+
+    /**
+     * 轮询计数
+     */
+    private final AtomicInteger counter = new AtomicInteger();
+
+    public PooledMessageProducer(List<MessageProducer> producers) {
+        this.producers = producers;
+    }
+
+    @Override
+    public void start() {
+        for (MessageProducer producer : producers) producer.start();
+    }
+
+    @Override
+    public MessageSendResult sendMessage(AdapterMessage message) {
+        return select(message).sendMessage(message);
+    }
+
+    @Override
+    public MessageSendResult sendMessage(AdapterMessage message, long timeout, TimeUnit unit) {
+        return select(message).sendMessage(message, timeout, unit);
+    }
+
+    @Override
+    public void sendMessage(AdapterMessage message, MessageCallback callback) {
+        select(message).sendMessage(message, callback);
+    }
+
+    @Override
+    public CompletableFuture<MessageSendResult> sendAsync(AdapterMessage message) {
+        return select(message).sendAsync(message);
+    }
+
+    /**
+     * 批量发送消息，有bizKey的消息按bizKey分组，没有bizKey的消息整体交给同一个生产者，各生产者依次批量发送
+     *
+     * @param messages 消息集合
+     * @return 与消息顺序一致的发送结果
+     */
+    @Override
+    public List<MessageSendResult> sendBatch(List<AdapterMessage> messages) {
+        int unkeyed = roundRobin();
+        Map<Integer, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < messages.size(); i++) {
+            String bizKey = messages.get(i).getBizKey();
+            int index = StringUtils.isEmpty(bizKey) ? unkeyed : byKey(bizKey);
+            groups.computeIfAbsent(index, k -> new ArrayList<>()).add(i);
+        }
+        MessageSendResult[] results = new MessageSendResult[messages.size()];
+        for (Map.Entry<Integer, List<Integer>> entry : groups.entrySet()) {
+            List<AdapterMessage> group = new ArrayList<>(entry.getValue().size());
+            for (Integer i : entry.getValue()) group.add(messages.get(i));
+            List<MessageSendResult> groupResults = producers.get(entry.getKey()).sendBatch(group);
+            for (int i = 0; i < groupResults.size(); i++) results[entry.getValue().get(i)] = groupResults.get(i);
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * 依次停止所有源生生产者，某个生产者停止失败不影响其他生产者
+     *
+     * @throws Exception 第一个停止失败的异常
+     */
+    @Override
+    public void destroy() throws Exception {
+        Exception failure = null;
+        for (MessageProducer producer : producers) {
+            try {
+                producer.destroy();
+            } catch (Exception e) {
+                if (failure == null) failure = e;
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * @return 生产者数量
+     */
+    public int size() {
+        return producers.size();
+    }
+
+    private MessageProducer select(AdapterMessage message) {
+        String bizKey = message.getBizKey();
+        return producers.get(StringUtils.isEmpty(bizKey) ? roundRobin() : byKey(bizKey));
+    }
+
+    private int byKey(String bizKey) {
+        return (bizKey.hashCode() & Integer.MAX_VALUE) % producers.size();
+    }
+
+    private int roundRobin() {
+        return (counter.getAndIncrement() & Integer.MAX_VALUE) % producers.size();
+    }
+}
@@ -0,0 +1,348 @@
+package org.yinqin.mqs.common.service;
+
+import cn.hutool.core.thread.ThreadUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yinqin.mqs.common.Constants;
+import org.yinqin.mqs.common.config.MqsProperties.AdapterProperties.SpoolProperties;
+import org.yinqin.mqs.common.entity.AdapterMessage;
+import org.yinqin.mqs.common.entity.MessageCallback;
+import org.yinqin.mqs.common.entity.MessageSendResult;
+import org.yinqin.mqs.common.flow.TokenBucket;
+import org.yinqin.mqs.common.spool.SpoolLog;
+import org.yinqin.mqs.common.util.SendFailureUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地暂存生产者
+ * 因连接中断、超时等可以重发的原因发送失败的消息写入本地暂存日志并按发送成功返回，发送结果的spooled为true；
+ * topic不存在、消息过大、无权限、被流控拒绝等重发也不会成功的失败不暂存，直接返回失败结果；
+ * 暂存日志中有待重放的消息时，后续消息不再尝试发送而是直接追加到暂存日志，避免每次发送都等待超时；
+ * 同步发送和批量发送时已暂存的消息不会被之后的消息越过；异步发送的失败在回调线程中暂存，此时之后的消息可能已经直接发送，异步发送不保证顺序；
+ * 重放线程按配置的速率依次重放暂存的消息，重放失败时按探测间隔指数退避后重试，退避期间不影响追加；
+ * 重放遇到不可重发的失败或达到最大重放次数时，消息移入死信目录后继续重放下一条，全部重放完成后恢复直接发送
+ * 暂存日志打开失败时不暂存，与未开启暂存相同
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see SpoolLog
+ * @see org.yinqin.mqs.common.factory.ProducerFactory
+ * @since 1.0.8
+ */
+public class SpoolingMessageProducer implements MessageProducer {
+
+    private final Logger logger = LoggerFactory.getLogger(SpoolingMessageProducer.class);
+
+    /**
+     * 死信目录，位于实例暂存目录下
+     */
+    private static final String DEAD_LETTER_DIR = "dead-letter";
+
+    /**
+     * 重放退避时间最多为探测间隔的2^5倍
+     */
+    private static final int MAX_BACKOFF_SHIFT = 5;
+
+    /**
+     * 被暂存的生产者或生产者池
+     */
+    private final MessageProducer producer;
+
+    private final String instanceId;
+
+    private final SpoolProperties properties;
+
+    /**
+     * 重放速率令牌桶
+     */
+    private final TokenBucket replayRateLimiter;
+
+    /**
+     * 暂存状态锁，追加和切换暂存状态时持有，重放线程在此等待
+     */
+    private final Object lock = new Object();
+
+    /**
+     * 暂存日志，打开失败时为空
+     */
+    private SpoolLog spoolLog;
+
+    /**
+     * 死信日志，第一次有消息移入死信目录时打开
+     */
+    private SpoolLog deadLetterLog;
+
+    /**
+     * 实例暂存目录
+     */
+    private File dir;
+
+    /**
+     * 是否处于暂存状态，只在持有锁时修改
+     */
+    private volatile boolean spooling;
+
+    private volatile boolean closed;
+
+    private Thread replayThread;
+
+    public SpoolingMessageProducer(MessageProducer producer, String instanceId, SpoolProperties properties) {
+        this.producer = producer;
+        this.instanceId = instanceId;
+        this.properties = properties;
+        this.replayRateLimiter = new TokenBucket(Math.max(1, properties.getReplayRate()));
+    }
+
+    /**
+     * 启动生产者，打开暂存日志，日志中有上次未重放完的消息时进入暂存状态，并启动重放线程
+     */
+    @Override
+    public void start() {
+        producer.start();
+        dir = new File(properties.getDir(), instanceId);
+        try {
+            spoolLog = new SpoolLog(dir, properties.getSegmentBytes(), properties.getMaxSegments());
+        } catch (IOException e) {
+            logger.error("实例：{} 打开暂存目录{}失败，不暂存发送失败的消息", instanceId, dir, e);
+            return;
+        }
+        spooling = !spoolLog.isEmpty();
+        replayThread = ThreadUtil.newThread(this::replay, instanceId + "-spool-replay");
+        replayThread.start();
+        logger.info("实例：{} 暂存目录：{}", instanceId, dir);
+    }
+
+    @Override
+    public MessageSendResult sendMessage(AdapterMessage message) {
+        if (spooling) return spool(message, null);
+        MessageSendResult result = producer.sendMessage(message);
+        return isRetriableFailure(result) ? spool(message, result) : result;
+    }
+
+    @Override
+    public MessageSendResult sendMessage(AdapterMessage message, long timeout, TimeUnit unit) {
+        if (spooling) return spool(message, null);
+        MessageSendResult result = producer.sendMessage(message, timeout, unit);
+        return isRetriableFailure(result) ? spool(message, result) : result;
+    }
+
+    /**
+     * 异步发送消息方法，可以重发的失败在回调线程中写入暂存日志，写入成功后回调成功；
+     * 失败的消息在回调时才暂存，之后已直接发送的消息可能先于该消息到达，不保证顺序
+     *
+     * @param message  消息
+     * @param callback 消息发送结果回调
+     */
+    @Override
+    public void sendMessage(AdapterMessage message, MessageCallback callback) {
+        if (spooling) {
+            complete(spool(message, null), callback);
+            return;
+        }
+        producer.sendMessage(message, new MessageCallback() {
+            @Override
+            public void onSuccess() {
+                if (callback != null) callback.onSuccess();
+            }
+
+            @Override
+            public void onSuccess(MessageSendResult result) {
+                if (callback != null) callback.onSuccess(result);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                if (!SendFailureUtil.isRetriable(throwable)) {
+                    if (callback != null) callback.onError(throwable);
+                    return;
+                }
+                MessageSendResult result = new MessageSendResult();
+                result.setStatus(Constants.ERROR);
+                result.setThrowable(throwable);
+                complete(spool(message, result), callback);
+            }
+        });
+    }
+
+    /**
+     * 批量发送消息方法，处于暂存状态时全部写入暂存日志，否则批量发送后按顺序暂存可以重发的失败消息
+     *
+     * @param messages 消息集合
+     * @return 与消息顺序一致的发送结果
+     */
+    @Override
+    public List<MessageSendResult> sendBatch(List<AdapterMessage> messages) {
+        if (spooling) {
+            List<MessageSendResult> results = new ArrayList<>(messages.size());
+            for (AdapterMessage message : messages) results.add(spool(message, null));
+            return results;
+        }
+        List<MessageSendResult> results = new ArrayList<>(producer.sendBatch(messages));
+        for (int i = 0; i < results.size(); i++) {
+            if (isRetriableFailure(results.get(i))) results.set(i, spool(messages.get(i), results.get(i)));
+        }
+        return results;
+    }
+
+    /**
+     * @return 暂存日志中待重放的消息数
+     */
+    public long getSpooledCount() {
+        return spoolLog == null ? 0 : spoolLog.pending();
+    }
+
+    /**
+     * @return 死信目录中的消息数，未移入过死信消息时为0
+     */
+    public long getDeadLetterCount() {
+        synchronized (lock) {
+            return deadLetterLog == null ? 0 : deadLetterLog.pending();
+        }
+    }
+
+    /**
+     * 停止重放线程并关闭暂存日志，未重放的消息保留在暂存目录中，下次启动后继续重放
+     *
+     * @throws Exception 停止源生生产者失败
+     */
+    @Override
+    public void destroy() throws Exception {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        if (replayThread != null) {
+            replayThread.interrupt();
+            replayThread.join(properties.getProbeInterval());
+        }
+        if (spoolLog != null) {
+            synchronized (lock) {
+                spoolLog.close();
+                if (deadLetterLog != null) deadLetterLog.close();
+            }
+        }
+        producer.destroy();
+    }
+
+    /**
+     * 写入暂存日志并进入暂存状态
+     *
+     * @param message 消息
+     * @param failure 发送失败的结果，处于暂存状态直接追加时为空
+     * @return 写入成功时返回spooled为true的成功结果，写入失败时返回发送失败的结果
+     */
+    private MessageSendResult spool(AdapterMessage message, MessageSendResult failure) {
+        // 未打开暂存日志时不会进入暂存状态，失败结果不为空
+        if (spoolLog == null) return failure;
+        synchronized (lock) {
+            try {
+                if (!closed && spoolLog.append(message)) {
+                    if (!spooling) logger.warn("实例：{} 消息发送失败，开始暂存消息", instanceId);
+                    spooling = true;
+                    lock.notifyAll();
+                    MessageSendResult result = new MessageSendResult();
+                    result.setStatus(Constants.SUCCESS);
+                    result.setTopic(message.getTopic());
+                    result.setSpooled(true);
+                    return result;
+                }
+                logger.error("实例：{} 暂存日志已满或生产者已停止，消息无法暂存，topic：{}", instanceId, message.getTopic());
+            } catch (IOException e) {
+                logger.error("实例：{} 消息写入暂存日志失败，topic：{}", instanceId, message.getTopic(), e);
+            }
+        }
+        if (failure != null) return failure;
+        MessageSendResult result = new MessageSendResult();
+        result.setStatus(Constants.ERROR);
+        result.setThrowable(new IllegalStateException("消息无法暂存"));
+        return result;
+    }
+
+    private static boolean isRetriableFailure(MessageSendResult result) {
+        return result.getStatus() != Constants.SUCCESS && SendFailureUtil.isRetriable(result.getThrowable());
+    }
+
+    private void complete(MessageSendResult result, MessageCallback callback) {
+        if (callback == null) return;
+        if (result.getStatus() == Constants.SUCCESS) callback.onSuccess(result);
+        else callback.onError(result.getThrowable());
+    }
+
+    /**
+     * 重放线程，按速率逐条重放暂存的消息，重放成功后推进读取位置；
+     * 可以重发的失败按探测间隔指数退避后重试同一条消息，不可重发的失败或达到最大重放次数时移入死信目录，
+     * 全部重放完成后退出暂存状态
+     */
+    private void replay() {
+        int attempts = 0;
+        try {
+            while (!closed) {
+                AdapterMessage message;
+                synchronized (lock) {
+                    message = spoolLog.peek();
+                    if (message == null) {
+                        if (spooling) logger.info("实例：{} 暂存消息已全部重放，恢复直接发送", instanceId);
+                        spooling = false;
+                        lock.wait();
+                        continue;
+                    }
+                }
+                long waitNanos = replayRateLimiter.reserve(1, Long.MAX_VALUE);
+                if (waitNanos > 0) TimeUnit.NANOSECONDS.sleep(waitNanos);
+                MessageSendResult result = producer.sendMessage(message);
+                if (result.getStatus() == Constants.SUCCESS) {
+                    synchronized (lock) {
+                        spoolLog.advance();
+                    }
+                    attempts = 0;
+                    continue;
+                }
+                attempts++;
+                if (!SendFailureUtil.isRetriable(result.getThrowable()) || attempts >= properties.getReplayMaxAttempts()) {
+                    deadLetter(message, attempts, result.getThrowable());
+                    attempts = 0;
+                    continue;
+                }
+                long backoff = properties.getProbeInterval() << Math.min(attempts - 1, MAX_BACKOFF_SHIFT);
+                logger.warn("实例：{} 暂存消息第{}次重放失败，{}毫秒后重试，待重放消息数：{}", instanceId, attempts, backoff, spoolLog.pending(), result.getThrowable());
+                // 不在锁上等待，退避期间可以继续追加，暂存新消息时也不会提前唤醒重试
+                TimeUnit.MILLISECONDS.sleep(backoff);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // 恢复中断状态
+        } catch (Exception e) {
+            logger.error("实例：{} 暂存消息重放线程异常退出，未重放的消息保留在暂存目录中", instanceId, e);
+        }
+    }
+
+    /**
+     * 将重放失败的消息移入死信目录并推进读取位置，死信目录已满或无法写入时丢弃消息
+     *
+     * @param message  消息
+     * @param attempts 已重放次数
+     * @param failure  最后一次重放失败的异常
+     */
+    private void deadLetter(AdapterMessage message, int attempts, Throwable failure) {
+        boolean moved = false;
+        synchronized (lock) {
+            try {
+                if (deadLetterLog == null) deadLetterLog = new SpoolLog(new File(dir, DEAD_LETTER_DIR), properties.getSegmentBytes(), properties.getMaxSegments());
+                moved = deadLetterLog.append(message);
+            } catch (IOException e) {
+                logger.error("实例：{} 消息写入死信目录失败，topic：{}", instanceId, message.getTopic(), e);
+            }
+            spoolLog.advance();
+        }
+        if (moved) {
+            logger.error("实例：{} 暂存消息重放{}次失败，已移入死信目录：{}，topic：{}", instanceId, attempts, new File(dir, DEAD_LETTER_DIR), message.getTopic(), failure);
+        } else {
+            logger.error("实例：{} 暂存消息重放{}次失败，死信目录已满或无法写入，已丢弃消息，topic：{}，bizKey：{}", instanceId, attempts, message.getTopic(), message.getBizKey(), failure);
+        }
+    }
+}
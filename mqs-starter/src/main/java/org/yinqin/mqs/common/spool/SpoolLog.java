@@ -0,0 +1,424 @@
+package org.yinqin.mqs.common.spool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yinqin.mqs.common.entity.AdapterMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 本地暂存日志
+ * 只追加的内存映射分段日志，每个分段是固定大小的文件，写满后创建下一个分段，读取完的分段直接删除；
+ * 每条记录为：消息长度(4字节) + CRC32(4字节) + 消息内容，长度最后写入，长度为0或校验失败的位置视为日志末尾；
+ * 读取位置记录在checkpoint文件中，消息重放成功后才推进，进程重启后从上次的读取位置继续，重启前最后一条已重放的消息可能重复发送
+ * 内存映射文件的内容在进程崩溃后仍会由操作系统写入磁盘，操作系统崩溃时可能丢失最近写入的消息；
+ * 打开时对目录中的lock文件加文件锁，同一目录同时只能被一个日志实例打开
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see org.yinqin.mqs.common.service.SpoolingMessageProducer
+ * @since 1.0.8
+ */
+public class SpoolLog implements Closeable {
+
+    private final Logger logger = LoggerFactory.getLogger(SpoolLog.class);
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    private static final String LOCK_FILE = "lock";
+
+    /**
+     * 记录头长度：消息长度 + CRC32
+     */
+    private static final int RECORD_HEADER = 8;
+
+    /**
+     * checkpoint文件长度：分段序号(8字节) + 读取位置(4字节)
+     */
+    private static final int CHECKPOINT_SIZE = 12;
+
+    /**
+     * 日志目录
+     */
+    private final File dir;
+
+    /**
+     * 单个分段文件大小，单位：字节
+     */
+    private final int segmentBytes;
+
+    /**
+     * 分段数量上限，达到上限且最后一个分段已写满时拒绝追加
+     */
+    private final int maxSegments;
+
+    /**
+     * 按序号升序排列的分段，第一个为读取分段，最后一个为写入分段
+     */
+    private final Deque<Segment> segments = new ArrayDeque<>();
+
+    /**
+     * 目录锁文件通道
+     */
+    private final FileChannel lockChannel;
+
+    /**
+     * 目录锁，关闭日志时释放
+     */
+    private final FileLock lock;
+
+    private final FileChannel checkpointChannel;
+
+    private final MappedByteBuffer checkpoint;
+
+    /**
+     * 读取分段中下一条待重放消息的位置
+     */
+    private int readPosition;
+
+    /**
+     * 已追加、尚未重放成功的消息数
+     */
+    private long pending;
+
+    /**
+     * 打开日志目录，恢复各分段的写入位置和上次的读取位置
+     *
+     * @param dir          日志目录，不存在时创建
+     * @param segmentBytes 单个分段文件大小，单位：字节
+     * @param maxSegments  分段数量上限
+     * @throws IOException 创建目录或映射文件失败，或目录已被其他进程占用
+     */
+    public SpoolLog(File dir, int segmentBytes, int maxSegments) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("无法创建暂存目录：" + dir);
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = Math.max(1, maxSegments);
+        this.lockChannel = FileChannel.open(new File(dir, LOCK_FILE).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            this.lock = tryLock(lockChannel);
+            if (lock == null) throw new IOException("暂存目录已被其他进程占用：" + dir);
+            this.checkpointChannel = FileChannel.open(new File(dir, CHECKPOINT_FILE).toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.checkpoint = checkpointChannel.map(FileChannel.MapMode.READ_WRITE, 0, CHECKPOINT_SIZE);
+            recover();
+        } catch (IOException | RuntimeException e) {
+            // 关闭通道时同时释放已获取的锁
+            lockChannel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 追加消息
+     *
+     * @param message 消息
+     * @return 是否追加成功，消息大于分段大小或分段数量达到上限时返回false
+     * @throws IOException 创建分段文件失败
+     */
+    public synchronized boolean append(AdapterMessage message) throws IOException {
+        byte[] payload = encode(message);
+        int size = RECORD_HEADER + payload.length;
+        if (size > segmentBytes) return false;
+        Segment tail = segments.peekLast();
+        if (tail.writePosition + size > segmentBytes) {
+            if (segments.size() >= maxSegments) return false;
+            tail.buffer.force();
+            tail = openSegment(tail.id + 1);
+            segments.addLast(tail);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer buffer = tail.buffer.duplicate();
+        buffer.position(tail.writePosition + RECORD_HEADER);
+        buffer.put(payload);
+        tail.buffer.putInt(tail.writePosition + 4, (int) crc.getValue());
+        // 长度最后写入，作为记录写入完成的标记
+        tail.buffer.putInt(tail.writePosition, payload.length);
+        tail.writePosition += size;
+        pending++;
+        return true;
+    }
+
+    /**
+     * 读取下一条待重放的消息，不推进读取位置
+     *
+     * @return 消息，没有待重放的消息时返回空
+     */
+    public synchronized AdapterMessage peek() {
+        if (!hasNext()) return null;
+        Segment head = segments.peekFirst();
+        int length = head.buffer.getInt(readPosition);
+        byte[] payload = new byte[length];
+        ByteBuffer buffer = head.buffer.duplicate();
+        buffer.position(readPosition + RECORD_HEADER);
+        buffer.get(payload);
+        return decode(payload);
+    }
+
+    /**
+     * 将读取位置推进到下一条消息，在消息重放成功后调用
+     */
+    public synchronized void advance() {
+        if (!hasNext()) return;
+        readPosition += RECORD_HEADER + segments.peekFirst().buffer.getInt(readPosition);
+        pending--;
+        writeCheckpoint();
+    }
+
+    /**
+     * @return 已追加、尚未重放成功的消息数
+     */
+    public synchronized long pending() {
+        return pending;
+    }
+
+    /**
+     * @return 是否没有待重放的消息
+     */
+    public synchronized boolean isEmpty() {
+        return pending == 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        checkpoint.force();
+        checkpointChannel.close();
+        for (Segment segment : segments) {
+            segment.buffer.force();
+            segment.channel.close();
+        }
+        segments.clear();
+        lock.release();
+        lockChannel.close();
+    }
+
+    /**
+     * 对锁文件加锁，同一进程内重复加锁与其他进程持有锁一样视为加锁失败
+     *
+     * @param channel 锁文件通道
+     * @return 文件锁，已被占用时返回空
+     */
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 读取分段已读完时删除该分段并切换到下一个分段
+     *
+     * @return 是否还有待重放的消息
+     */
+    private boolean hasNext() {
+        Segment head = segments.peekFirst();
+        while (readPosition >= head.writePosition) {
+            if (segments.size() == 1) return false;
+            segments.pollFirst();
+            delete(head);
+            head = segments.peekFirst();
+            readPosition = 0;
+            writeCheckpoint();
+        }
+        return true;
+    }
+
+    /**
+     * 按序号打开已有分段，恢复写入位置，删除已读完的分段
+     */
+    private void recover() throws IOException {
+        long readSegment = checkpoint.getLong(0);
+        readPosition = checkpoint.getInt(8);
+        List<Long> ids = new ArrayList<>();
+        File[] files = dir.listFiles((d, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                try {
+                    ids.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    logger.warn("忽略无法识别的暂存文件：{}", file);
+                }
+            }
+        }
+        Collections.sort(ids);
+        for (Long id : ids) {
+            if (id < readSegment) {
+                if (!segmentFile(id).delete()) logger.warn("删除已重放的暂存分段失败：{}", segmentFile(id));
+                continue;
+            }
+            segments.addLast(openSegment(id));
+        }
+        if (segments.isEmpty()) segments.addLast(openSegment(readSegment));
+        if (segments.peekFirst().id != readSegment) readPosition = 0;
+        Segment head = segments.peekFirst();
+        readPosition = Math.min(readPosition, head.writePosition);
+        writeCheckpoint();
+        for (Segment segment : segments) {
+            int position = segment == head ? readPosition : 0;
+            while (position < segment.writePosition) {
+                position += RECORD_HEADER + segment.buffer.getInt(position);
+                pending++;
+            }
+        }
+        if (pending > 0) logger.info("从暂存目录{}恢复{}条待重放的消息", dir, pending);
+    }
+
+    /**
+     * 打开或创建分段，从头扫描到第一条长度为0或校验失败的记录确定写入位置
+     */
+    private Segment openSegment(long id) throws IOException {
+        FileChannel channel = FileChannel.open(segmentFile(id).toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        int position = 0;
+        while (position + RECORD_HEADER <= segmentBytes) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + RECORD_HEADER + length > segmentBytes) break;
+            byte[] payload = new byte[length];
+            ByteBuffer duplicate = buffer.duplicate();
+            duplicate.position(position + RECORD_HEADER);
+            duplicate.get(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                logger.warn("暂存分段{}在位置{}的记录校验失败，丢弃之后的内容", id, position);
+                break;
+            }
+            position += RECORD_HEADER + length;
+        }
+        // 清除未写完的记录，避免之后追加的记录与残留内容拼接
+        if (position + RECORD_HEADER <= segmentBytes) buffer.putInt(position, 0);
+        return new Segment(id, channel, buffer, position);
+    }
+
+    private void delete(Segment segment) {
+        try {
+            segment.channel.close();
+        } catch (IOException e) {
+            logger.warn("关闭暂存分段失败：{}", segmentFile(segment.id), e);
+        }
+        if (!segmentFile(segment.id).delete()) logger.warn("删除已重放的暂存分段失败：{}", segmentFile(segment.id));
+    }
+
+    private void writeCheckpoint() {
+        checkpoint.putLong(0, segments.peekFirst().id);
+        checkpoint.putInt(8, readPosition);
+    }
+
+    private File segmentFile(long id) {
+        return new File(dir, String.format("%020d%s", id, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * 序列化消息的topic、tag、bizKey、headers和消息体
+     */
+    private static byte[] encode(AdapterMessage message) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeString(out, message.getTopic());
+        writeString(out, message.getTag());
+        writeString(out, message.getBizKey());
+        Map<String, String> headers = message.getHeaders();
+        out.writeInt(headers == null ? -1 : headers.size());
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                writeString(out, header.getKey());
+                writeString(out, header.getValue());
+            }
+        }
+        byte[] body = message.getBody();
+        out.writeInt(body == null ? -1 : body.length);
+        if (body != null) out.write(body);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static AdapterMessage decode(byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        AdapterMessage.AdapterMessageBuilder builder = AdapterMessage.builder()
+                .topic(readString(buffer))
+                .tag(readString(buffer))
+                .bizKey(readString(buffer));
+        int headerCount = buffer.getInt();
+        if (headerCount >= 0) {
+            Map<String, String> headers = new LinkedHashMap<>();
+            for (int i = 0; i < headerCount; i++) headers.put(readString(buffer), readString(buffer));
+            builder.headers(headers);
+        }
+        int bodyLength = buffer.getInt();
+        if (bodyLength >= 0) {
+            byte[] body = new byte[bodyLength];
+            buffer.get(body);
+            builder.body(body);
+        }
+        return builder.build();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 日志分段
+     */
+    private static class Segment {
+
+        /**
+         * 分段序号，即文件名
+         */
+        private final long id;
+
+        private final FileChannel channel;
+
+        private final MappedByteBuffer buffer;
+
+        /**
+         * 下一条记录的写入位置
+         */
+        private int writePosition;
+
+        private Segment(long id, FileChannel channel, MappedByteBuffer buffer, int writePosition) {
+            this.id = id;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.writePosition = writePosition;
+        }
+    }
+}
@@ -2,21 +2,32 @@ package org.yinqin.mqs.common.util;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.rocketmq.common.UtilAll;
 import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageConst;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.yinqin.mqs.common.Constants;
 import org.yinqin.mqs.common.config.MqsProperties.AdapterProperties;
 import org.yinqin.mqs.common.entity.AdapterMessage;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+
 /**
  * 转换工具类
  *
  * @author YinQin
- * @version 1.0.4
+ * @version 1.0.8
  * @createDate 2023年11月20日
  * @since 1.0.4
  */
 public class ConvertUtil {
 
+    private static final Logger logger = LoggerFactory.getLogger(ConvertUtil.class);
+
     private ConvertUtil() {
         throw new UnsupportedOperationException("This is a utility class and cannot be instantiated.");
     }
@@ -42,20 +53,62 @@ public class ConvertUtil {
     }
 
     /**
-     * 适配器消息转rocketmq原生消息
+     * 生成rocketmq客户端实例名称
+     * 共用客户端实例时取实例ID和进程ID，同一进程内同一实例的生产者和消费者得到相同的名称，不同进程之间不会冲突；
+     * 否则取随机名称，每个生产者和消费者各自创建客户端实例
+     *
+     * @param instanceId 实例ID
+     * @param properties 实例配置
+     * @return 客户端实例名称
+     */
+    public static String rocketmqInstanceName(String instanceId, AdapterProperties properties) {
+        if (properties.getRocketmq().isShareClientInstance()) return instanceId + Constants.HYPHEN + UtilAll.getPid();
+        return UUID.randomUUID().toString().replace(Constants.HYPHEN, Constants.EMPTY).substring(0, 8);
+    }
+
+    /**
+     * 适配器消息转rocketmq原生消息，消息头转为用户自定义属性
+     * rocketmq不接受空的属性名或属性值，也不接受与系统属性（KEYS、TAGS、DELAY等）同名的属性，这些消息头跳过并记录debug日志
      * @param message 消息
      * @return rocketmq原生消息
      */
     public static Message adapterMessageToRocketmqMessage(AdapterMessage message, AdapterProperties.ConvertProperties topicProperties) {
-        return new Message(ConvertUtil.convertName(message.getTopic(),topicProperties), message.getTag(), message.getBizKey(), message.getBody());
+        Message rocketmqMessage = new Message(ConvertUtil.convertName(message.getTopic(),topicProperties), message.getTag(), message.getBizKey(), message.getBody());
+        if (message.getHeaders() != null) message.getHeaders().forEach((key, value) -> {
+            if (StringUtils.isEmpty(key) || StringUtils.isEmpty(value)) {
+                logger.debug("rocketmq不支持空的用户自定义属性，已跳过消息头：{}，topic：{}", key, message.getTopic());
+            } else if (MessageConst.STRING_HASH_SET.contains(key)) {
+                logger.debug("消息头与rocketmq系统属性同名，已跳过消息头：{}，topic：{}", key, message.getTopic());
+            } else {
+                rocketmqMessage.putUserProperty(key, value);
+            }
+        });
+        return rocketmqMessage;
     }
 
     /**
-     * 适配器消息转kafka原生消息
+     * 适配器消息转kafka原生消息，消息头按UTF-8编码转为Headers，tag写入消息头供消费端过滤
      * @param message 消息
      * @return kafka原生消息
      */
     public static ProducerRecord<String, byte[]> adapterMessageToKafkaMessage(AdapterMessage message, AdapterProperties.ConvertProperties topicProperties) {
-        return new ProducerRecord<>(ConvertUtil.convertName(message.getTopic(),topicProperties), null, message.getBizKey(), message.getBody(), null);
+        return new ProducerRecord<>(ConvertUtil.convertName(message.getTopic(),topicProperties), null, message.getBizKey(), message.getBody(), toKafkaHeaders(message.getHeaders(), message.getTag()));
+    }
+
+    /**
+     * 消息头转kafka Headers
+     * @param headers 消息头
+     * @param tag 消息tag
+     * @return kafka Headers，消息头和tag都为空时返回空
+     */
+    private static RecordHeaders toKafkaHeaders(Map<String, String> headers, String tag) {
+        boolean hasTag = StringUtils.isNotBlank(tag);
+        if ((headers == null || headers.isEmpty()) && !hasTag) return null;
+        RecordHeaders recordHeaders = new RecordHeaders();
+        if (headers != null) headers.forEach((key, value) -> {
+            if (!hasTag || !Constants.KAFKA_TAG_HEADER.equals(key)) recordHeaders.add(key, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+        });
+        if (hasTag) recordHeaders.add(Constants.KAFKA_TAG_HEADER, tag.getBytes(StandardCharsets.UTF_8));
+        return recordHeaders;
     }
 }
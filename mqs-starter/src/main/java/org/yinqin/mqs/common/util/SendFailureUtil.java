@@ -0,0 +1,61 @@
+package org.yinqin.mqs.common.util;
+
+import org.apache.kafka.common.errors.ApiException;
+import org.apache.kafka.common.errors.RetriableException;
+import org.apache.rocketmq.acl.common.AclException;
+import org.apache.rocketmq.client.common.ClientErrorCode;
+import org.apache.rocketmq.client.exception.MQBrokerException;
+import org.apache.rocketmq.client.exception.MQClientException;
+import org.apache.rocketmq.common.protocol.ResponseCode;
+import org.apache.rocketmq.remoting.exception.RemotingException;
+import org.yinqin.mqs.common.exception.MqsFlowControlException;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * 发送失败分类工具类
+ * 区分连接中断、超时、broker繁忙等恢复后可以重发的失败，和topic不存在、消息过大、无权限、被流控拒绝等重发也不会成功的失败
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see org.yinqin.mqs.common.service.SpoolingMessageProducer
+ * @since 1.0.8
+ */
+public class SendFailureUtil {
+
+    private SendFailureUtil() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated.");
+    }
+
+    /**
+     * 判断发送失败是否可以重发
+     * 从外层异常开始沿异常链查找，第一个能够判断的异常决定结果，都无法判断时按可以重发处理
+     *
+     * @param throwable 发送失败的异常，可以为空
+     * @return 是否可以重发
+     */
+    public static boolean isRetriable(Throwable throwable) {
+        Set<Throwable> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Throwable cause = throwable; cause != null && visited.add(cause); cause = cause.getCause()) {
+            if (cause instanceof MqsFlowControlException || cause instanceof IllegalArgumentException || cause instanceof AclException) return false;
+            if (cause instanceof RetriableException || cause instanceof RemotingException) return true;
+            // kafka的broker错误中，不可重试的有消息过大、topic名称不合法、无权限等
+            if (cause instanceof ApiException) return false;
+            if (cause instanceof MQClientException && isPermanent(((MQClientException) cause).getResponseCode())) return false;
+            if (cause instanceof MQBrokerException && isPermanent(((MQBrokerException) cause).getResponseCode())) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param responseCode rocketmq响应码或客户端错误码
+     * @return 是否为消息不合法、无权限或topic不存在
+     */
+    private static boolean isPermanent(int responseCode) {
+        return responseCode == ResponseCode.MESSAGE_ILLEGAL || responseCode == ResponseCode.NO_PERMISSION
+                || responseCode == ResponseCode.TOPIC_NOT_EXIST || responseCode == ClientErrorCode.NOT_FOUND_TOPIC_EXCEPTION;
+    }
+}
@@ -1,6 +1,7 @@
 package org.yinqin.mqs.configuration;
 
 
+import cn.hutool.core.thread.ThreadUtil;
 import lombok.NonNull;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
@@ -14,29 +15,33 @@ import org.springframework.context.ApplicationContextAware;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.Ordered;
 import org.springframework.core.PriorityOrdered;
-import org.yinqin.mqs.common.MessageAdapter;
+import org.yinqin.mqs.common.Constants;
 import org.yinqin.mqs.common.config.MqsProperties;
+import org.yinqin.mqs.common.handler.HandlerDefinition;
+import org.yinqin.mqs.common.handler.HandlerRegistry;
 import org.yinqin.mqs.common.handler.MessageHandler;
 import org.yinqin.mqs.common.manager.ConsumerManager;
+import org.yinqin.mqs.common.manager.ProducerManager;
 import org.yinqin.mqs.common.service.MessageConsumer;
-import org.yinqin.mqs.common.util.ConvertUtil;
 import org.yinqin.mqs.kafka.consumer.factory.KafkaBatchConsumerFactory;
 import org.yinqin.mqs.kafka.consumer.factory.KafkaBroadcastConsumerFactory;
 import org.yinqin.mqs.kafka.consumer.factory.KafkaTranConsumerFactory;
 import org.yinqin.mqs.rocketmq.consumer.factory.RocketmqBatchConsumerFactory;
 import org.yinqin.mqs.rocketmq.consumer.factory.RocketmqBroadcastConsumerFactory;
+import org.yinqin.mqs.rocketmq.SharedClientRegistry;
 import org.yinqin.mqs.rocketmq.consumer.factory.RocketmqTranConsumerFactory;
 
 import javax.annotation.Resource;
-import java.util.HashMap;
 import java.util.Map;
-import java.util.function.Predicate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * 消息适配器消费者自动装配类
  *
  * @author YinQin
- * @version 1.0.6
+ * @version 1.0.8
  * @createDate 2023年10月13日
  * @see InitializingBean
  * @see DisposableBean
@@ -56,28 +61,48 @@ public class ConsumerAutoConfiguration implements InitializingBean, DisposableBe
     @Resource
     MqsProperties properties;
 
+    @Resource
+    ProducerManager producerManager;
+
     /**
-     * 注销consumer
+     * 并行注销所有consumer，等待全部注销完成
      */
     @Override
     public void destroy() {
-        for (MessageConsumer consumer : consumerManager) {
-            try {
-                consumer.destroy();
-            } catch (Exception e) {
-                logger.error("注销消费组失败：", e);
+        if (consumerManager.isEmpty()) return;
+        ExecutorService executor = Executors.newFixedThreadPool(consumerManager.size(), ThreadUtil.newNamedThreadFactory("mqs-consumer-shutdown-", false));
+        try {
+            CompletableFuture<?>[] futures = new CompletableFuture<?>[consumerManager.size()];
+            for (int i = 0; i < consumerManager.size(); i++) {
+                MessageConsumer consumer = consumerManager.get(i);
+                futures[i] = CompletableFuture.runAsync(() -> {
+                    try {
+                        consumer.destroy();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        logger.error("注销消费组被中断：", e);
+                    } catch (Exception e) {
+                        logger.error("注销消费组失败：", e);
+                    }
+                }, executor);
             }
+            CompletableFuture.allOf(futures).join();
+        } finally {
+            executor.shutdown();
         }
     }
 
     /**
      * 实现InitializingBean接口
-     * 启动所有的消费组
+     * 解析所有消息处理器并建立分发表，启动所有的消费组，并输出共享客户端实例上的生产者数和消费者数
      */
     @Override
     public void afterPropertiesSet() {
         Map<String, MessageHandler> messageHandlerBeans = applicationContext.getBeansOfType(MessageHandler.class);
-        properties.getAdapter().forEach((instanceId, config) -> startConsumersForInstance(instanceId, config, messageHandlerBeans));
+        HandlerRegistry handlerRegistry = new HandlerRegistry(properties.getAdapter(), messageHandlerBeans);
+        properties.getAdapter().forEach((instanceId, config) -> startConsumersForInstance(instanceId, config, handlerRegistry));
+        // 生产者在消费者之前启动，此时共享客户端实例上的生产者和消费者均已登记
+        SharedClientRegistry.logRegistrations();
     }
 
     @Override
@@ -94,19 +119,19 @@ public class ConsumerAutoConfiguration implements InitializingBean, DisposableBe
      * 启动所有消费者实例
      * @param instanceId 实例ID
      * @param config 实例配置
-     * @param messageHandlerBeans 消息处理器实现类集合
+     * @param handlerRegistry 消息处理器注册表
      */
-    private void startConsumersForInstance(String instanceId, MqsProperties.AdapterProperties config,Map<String, MessageHandler> messageHandlerBeans) {
+    private void startConsumersForInstance(String instanceId, MqsProperties.AdapterProperties config, HandlerRegistry handlerRegistry) {
         // 未开启消费者，直接终止
         if (!config.isConsumerEnabled()) return;
         // 校验消费者实例配置
         validateConfig(instanceId, config);
-        // 过滤出事务消息处理器
-        Map<String, MessageHandler> messageHandlers = filterMessageHandlers(instanceId, config.getTopic(), messageHandlerBeans, messageAdapter -> !messageAdapter.isBatch() && !messageAdapter.isBroadcast());
-        // 过滤出批量消息处理器
-        Map<String, MessageHandler> batchMessageHandlers = filterMessageHandlers(instanceId, config.getTopic(), messageHandlerBeans, MessageAdapter::isBatch);
-        // 过滤出广播消息处理器
-        Map<String, MessageHandler> broadcastHandlers = filterMessageHandlers(instanceId, config.getTopic(), messageHandlerBeans,MessageAdapter::isBroadcast);
+        // 事务消息处理器
+        Map<String, HandlerDefinition> messageHandlers = handlerRegistry.getDefinitions(instanceId, Constants.TRAN);
+        // 批量消息处理器
+        Map<String, HandlerDefinition> batchMessageHandlers = handlerRegistry.getDefinitions(instanceId, Constants.BATCH);
+        // 广播消息处理器
+        Map<String, HandlerDefinition> broadcastHandlers = handlerRegistry.getDefinitions(instanceId, Constants.BROADCAST);
         // 启动所有消费者实例
         startConsumers(instanceId, config, messageHandlers, batchMessageHandlers, broadcastHandlers);
     }
@@ -122,39 +147,7 @@ public class ConsumerAutoConfiguration implements InitializingBean, DisposableBe
         }
     }
 
-    /**
-     * 过滤所需的消息处理器
-     * @param instanceId 实例ID
-     * @param config 实例配置
-     * @param messageHandlerBeans 消息处理器实现类集合
-     * @param predicate 断言
-     * @return 消息处理器集合
-     */
-    private Map<String, MessageHandler> filterMessageHandlers(String instanceId,
-                                                                   MqsProperties.AdapterProperties.ConvertProperties config,
-                                                                   Map<String, MessageHandler> messageHandlerBeans,
-                                                                   Predicate<MessageAdapter> predicate) {
-        Map<String, MessageHandler> messageHandlers = new HashMap<>();
-        messageHandlerBeans.forEach((beanName, bean) -> {
-            MessageAdapter messageAdapter = bean.getClass().getAnnotation(MessageAdapter.class);
-            if (messageAdapter == null) {
-                logger.warn("实例：{}，消息处理器：{}，未使用注解MessageAdapter，将不会被加载", instanceId, beanName);
-                return;
-            }
-            if (messageAdapter.isBroadcast() && messageAdapter.isBatch()) {
-                logger.warn("实例：{}，消息处理器：{}，同时声明了广播和批量消息，将不会被加载", instanceId, beanName);
-                return;
-            }
-
-            if (messageAdapter.instanceId().equals(instanceId) && predicate.test(messageAdapter)) {
-                String topicName = ConvertUtil.convertName(messageAdapter.topicName(), config);
-                messageHandlers.put(topicName, bean);
-            }
-        });
-        return messageHandlers;
-    }
-
-    private void startConsumers(String instanceId, MqsProperties.AdapterProperties config, Map<String, MessageHandler> messageHandlers, Map<String, MessageHandler> batchMessageHandlers, Map<String, MessageHandler> broadcastHandlers) {
+    private void startConsumers(String instanceId, MqsProperties.AdapterProperties config, Map<String, HandlerDefinition> messageHandlers, Map<String, HandlerDefinition> batchMessageHandlers, Map<String, HandlerDefinition> broadcastHandlers) {
         if (config.getVendorName().equals("rocketmq")) {
             validateRocketmqConfig(instanceId, config);
             if (!messageHandlers.isEmpty())
@@ -166,9 +159,9 @@ public class ConsumerAutoConfiguration implements InitializingBean, DisposableBe
         } else if (config.getVendorName().equals("kafka")) {
             validateKafkaConfig(instanceId, config);
             if (!messageHandlers.isEmpty())
-                consumerManager.add(new KafkaTranConsumerFactory().startConsumer(instanceId, config, messageHandlers));
+                consumerManager.add(new KafkaTranConsumerFactory(producerManager.get(instanceId)).startConsumer(instanceId, config, messageHandlers));
             if (!batchMessageHandlers.isEmpty())
-                consumerManager.add(new KafkaBatchConsumerFactory().startConsumer(instanceId, config, batchMessageHandlers));
+                consumerManager.add(new KafkaBatchConsumerFactory(producerManager.get(instanceId)).startConsumer(instanceId, config, batchMessageHandlers));
             if (!broadcastHandlers.isEmpty())
                 consumerManager.add(new KafkaBroadcastConsumerFactory().startConsumer(instanceId, config, broadcastHandlers));
         } else {
@@ -0,0 +1,59 @@
+package org.yinqin.mqs.kafka;
+
+import java.time.Duration;
+
+/**
+ * 自适应拉取超时时间
+ * 以fetch.max.wait.ms作为最小超时时间，依赖broker端长轮询等待消息；连续空拉取时超时时间指数增长直到上限，
+ * 减少空闲时的线程唤醒次数；拉取到消息后立即恢复为最小超时时间
+ * 只能在拉取线程中使用
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see PollWorker
+ * @since 1.0.8
+ */
+public class AdaptivePollTimeout {
+
+    /**
+     * 最小超时时间，单位：毫秒
+     */
+    private final long minTimeout;
+
+    /**
+     * 最大超时时间，单位：毫秒
+     */
+    private final long maxTimeout;
+
+    /**
+     * 当前超时时间，单位：毫秒
+     */
+    private long currentTimeout;
+
+    public AdaptivePollTimeout(long minTimeout, long maxTimeout) {
+        this.minTimeout = Math.max(1, minTimeout);
+        this.maxTimeout = Math.max(this.minTimeout, maxTimeout);
+        this.currentTimeout = this.minTimeout;
+    }
+
+    /**
+     * 计算下次拉取的超时时间
+     *
+     * @param deadline 拉取线程下次需要处理其他事务的剩余时间，单位：毫秒
+     * @return 超时时间
+     */
+    public Duration next(long deadline) {
+        return Duration.ofMillis(Math.max(0, Math.min(currentTimeout, deadline)));
+    }
+
+    /**
+     * 记录拉取结果并调整超时时间
+     *
+     * @param count 拉取到的消息数量
+     */
+    public void onPoll(int count) {
+        if (count > 0) currentTimeout = minTimeout;
+        else currentTimeout = Math.min(currentTimeout << 1, maxTimeout);
+    }
+}
@@ -0,0 +1,139 @@
+package org.yinqin.mqs.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yinqin.mqs.common.config.MqsProperties.AdapterProperties.CustomKafkaProperties;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 广播消费分区分配器
+ * 广播消费模式下不使用消费组，直接assign订阅topic的全部分区，并从本地位移存储中恢复消费位置；
+ * 定时刷新topic的分区，新增的分区从头开始消费
+ * 只能在拉取线程中使用
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see LocalOffsetStore
+ * @see PollWorker
+ * @since 1.0.8
+ */
+public class BroadcastAssignor implements AutoCloseable {
+
+    private final Logger logger = LoggerFactory.getLogger(BroadcastAssignor.class);
+
+    private static final String EARLIEST = "earliest";
+
+    /**
+     * kafka源生消费者
+     */
+    private final KafkaConsumer<String, byte[]> kafkaConsumer;
+
+    /**
+     * 订阅的topic
+     */
+    private final Collection<String> topics;
+
+    /**
+     * 本地位移存储
+     */
+    private final LocalOffsetStore localOffsetStore;
+
+    /**
+     * 位移提交器
+     */
+    private final OffsetCommitter offsetCommitter;
+
+    /**
+     * 刷新分区间隔，单位：毫秒
+     */
+    private final long refreshInterval;
+
+    /**
+     * 首次分配时没有本地位移的分区是否从头开始消费，取auto.offset.reset配置
+     */
+    private final boolean resetToEarliest;
+
+    /**
+     * 已分配的分区
+     */
+    private final Set<TopicPartition> assignedPartitions = new HashSet<>();
+
+    /**
+     * 上次刷新时间，为0时表示尚未分配
+     */
+    private long lastRefreshTime;
+
+    public BroadcastAssignor(KafkaConsumer<String, byte[]> kafkaConsumer, Collection<String> topics, LocalOffsetStore localOffsetStore, OffsetCommitter offsetCommitter, CustomKafkaProperties kafkaProperties) {
+        this.kafkaConsumer = kafkaConsumer;
+        this.topics = topics;
+        this.localOffsetStore = localOffsetStore;
+        this.offsetCommitter = offsetCommitter;
+        this.refreshInterval = kafkaProperties.getPartitionRefreshInterval();
+        this.resetToEarliest = EARLIEST.equals(kafkaProperties.getClientConfig().getProperty(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG));
+    }
+
+    /**
+     * 首次调用或距离上次刷新超过刷新间隔时，分配新增的分区
+     *
+     * @return 是否已有分配的分区
+     */
+    public boolean maybeRefresh() {
+        long now = System.currentTimeMillis();
+        if (lastRefreshTime != 0 && now - lastRefreshTime < refreshInterval) return !assignedPartitions.isEmpty();
+        boolean initial = lastRefreshTime == 0;
+        lastRefreshTime = now;
+        List<TopicPartition> added = new ArrayList<>();
+        for (String topic : topics) {
+            List<PartitionInfo> partitionInfos = kafkaConsumer.partitionsFor(topic);
+            if (partitionInfos == null) continue;
+            for (PartitionInfo partitionInfo : partitionInfos) {
+                TopicPartition partition = new TopicPartition(partitionInfo.topic(), partitionInfo.partition());
+                if (!assignedPartitions.contains(partition)) added.add(partition);
+            }
+        }
+        if (!added.isEmpty()) assign(added, initial);
+        return !assignedPartitions.isEmpty();
+    }
+
+    /**
+     * 分配新增的分区，有本地位移的分区从本地位移处开始消费；
+     * 没有本地位移的分区，首次分配时按auto.offset.reset处理，之后新增的分区从头开始消费，避免丢失新分区中的消息
+     *
+     * @param added   新增的分区
+     * @param initial 是否首次分配
+     */
+    private void assign(List<TopicPartition> added, boolean initial) {
+        assignedPartitions.addAll(added);
+        kafkaConsumer.assign(assignedPartitions);
+        offsetCommitter.assign(added);
+        List<TopicPartition> reset = new ArrayList<>();
+        for (TopicPartition partition : added) {
+            Long offset = localOffsetStore.get(partition);
+            if (offset == null) reset.add(partition);
+            else kafkaConsumer.seek(partition, offset);
+        }
+        if (!reset.isEmpty()) {
+            if (initial && !resetToEarliest) kafkaConsumer.seekToEnd(reset);
+            else kafkaConsumer.seekToBeginning(reset);
+        }
+        logger.info("广播消费分配分区：{}，无本地位移的分区：{}", added, reset);
+    }
+
+    /**
+     * 关闭本地位移存储
+     */
+    @Override
+    public void close() {
+        localOffsetStore.close();
+    }
+}
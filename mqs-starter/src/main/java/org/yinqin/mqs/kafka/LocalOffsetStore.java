@@ -0,0 +1,199 @@
+package org.yinqin.mqs.kafka;
+
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yinqin.mqs.common.exception.MqsConsumerException;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 本地位移存储
+ * 广播消费模式下不使用消费组，各分区的消费位移保存在本地内存映射文件中，重启后从文件中恢复；
+ * 文件由固定大小的槽位组成，每个槽位保存一个分区的位移：topic长度(2字节) + topic + 分区号(4字节) + 位移(8字节)，
+ * 更新位移时只覆盖对应槽位的8个字节，槽位用完后按倍数扩容；文件加锁，同一文件只能被一个进程使用
+ * 只能在拉取线程中使用
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see PollWorker
+ * @since 1.0.8
+ */
+public class LocalOffsetStore implements AutoCloseable {
+
+    private final Logger logger = LoggerFactory.getLogger(LocalOffsetStore.class);
+
+    /**
+     * 槽位大小，单位：字节
+     */
+    private static final int SLOT_SIZE = 512;
+
+    /**
+     * 位移在槽位中的起始位置
+     */
+    private static final int OFFSET_POSITION = SLOT_SIZE - Long.BYTES;
+
+    /**
+     * topic最大字节数
+     */
+    private static final int MAX_TOPIC_BYTES = OFFSET_POSITION - Short.BYTES - Integer.BYTES;
+
+    /**
+     * 初始槽位数量
+     */
+    private static final int INITIAL_SLOTS = 256;
+
+    /**
+     * 文件路径
+     */
+    private final Path path;
+
+    /**
+     * 文件通道
+     */
+    private final FileChannel channel;
+
+    /**
+     * 文件锁
+     */
+    private final FileLock lock;
+
+    /**
+     * 内存映射
+     */
+    private MappedByteBuffer buffer;
+
+    /**
+     * 分区与槽位序号
+     */
+    private final Map<TopicPartition, Integer> slots = new HashMap<>();
+
+    /**
+     * 分区与已保存的位移
+     */
+    private final Map<TopicPartition, Long> offsets = new HashMap<>();
+
+    public LocalOffsetStore(Path path) {
+        this.path = path;
+        try {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.lock = channel.tryLock();
+            if (lock == null) {
+                channel.close();
+                throw new MqsConsumerException("本地位移文件已被其他进程占用：" + path, null);
+            }
+            long size = Math.max(channel.size(), (long) INITIAL_SLOTS * SLOT_SIZE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw new MqsConsumerException("打开本地位移文件失败：" + path, e);
+        }
+        load();
+    }
+
+    /**
+     * @param partition 分区
+     * @return 已保存的下一条消息位移，没有保存时返回空
+     */
+    public Long get(TopicPartition partition) {
+        return offsets.get(partition);
+    }
+
+    /**
+     * 保存分区的下一条消息位移
+     *
+     * @param partition 分区
+     * @param offset    下一条消息位移
+     */
+    public void put(TopicPartition partition, long offset) {
+        Integer slot = slots.get(partition);
+        if (slot == null) {
+            if (allocate(partition, offset)) offsets.put(partition, offset);
+            return;
+        }
+        buffer.putLong(slot * SLOT_SIZE + OFFSET_POSITION, offset);
+        offsets.put(partition, offset);
+    }
+
+    /**
+     * 将修改刷写到磁盘
+     */
+    public void flush() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() {
+        try {
+            flush();
+            lock.release();
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("关闭本地位移文件失败：{}", path, e);
+        }
+    }
+
+    /**
+     * 从文件中读取所有分区的位移
+     */
+    private void load() {
+        int slotCount = buffer.capacity() / SLOT_SIZE;
+        for (int slot = 0; slot < slotCount; slot++) {
+            int base = slot * SLOT_SIZE;
+            int topicLength = buffer.getShort(base);
+            if (topicLength <= 0) break;
+            byte[] topic = new byte[topicLength];
+            for (int i = 0; i < topicLength; i++) topic[i] = buffer.get(base + Short.BYTES + i);
+            TopicPartition partition = new TopicPartition(new String(topic, StandardCharsets.UTF_8), buffer.getInt(base + Short.BYTES + topicLength));
+            slots.put(partition, slot);
+            offsets.put(partition, buffer.getLong(base + OFFSET_POSITION));
+        }
+        logger.info("加载本地位移文件：{}，分区数量：{}", path, offsets.size());
+    }
+
+    /**
+     * 为新分区分配槽位，先写入topic、分区号和位移，最后写入topic长度作为槽位生效标记
+     *
+     * @param partition 分区
+     * @param offset    下一条消息位移
+     * @return 是否分配成功，topic过长时不分配
+     */
+    private boolean allocate(TopicPartition partition, long offset) {
+        byte[] topic = partition.topic().getBytes(StandardCharsets.UTF_8);
+        if (topic.length > MAX_TOPIC_BYTES) {
+            logger.warn("topic名称过长，位移不会保存到本地：{}", partition);
+            return false;
+        }
+        int slot = slots.size();
+        if ((slot + 1) * SLOT_SIZE > buffer.capacity()) grow();
+        int base = slot * SLOT_SIZE;
+        for (int i = 0; i < topic.length; i++) buffer.put(base + Short.BYTES + i, topic[i]);
+        buffer.putInt(base + Short.BYTES + topic.length, partition.partition());
+        buffer.putLong(base + OFFSET_POSITION, offset);
+        buffer.putShort(base, (short) topic.length);
+        slots.put(partition, slot);
+        return true;
+    }
+
+    /**
+     * 按倍数扩容文件并重新映射
+     */
+    private void grow() {
+        try {
+            buffer.force();
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) buffer.capacity() * 2);
+        } catch (IOException e) {
+            throw new MqsConsumerException("扩容本地位移文件失败：" + path, e);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package org.yinqin.mqs.kafka;
+
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 位移提交器
+ * 只提交已处理完成的消息位移，按分区合并后每处理N条消息或每隔T毫秒异步提交一次，分区回收或消费者停止时同步提交；
+ * 只记录当前分配给消费者的分区，分区回收后仍在处理的消息不会再被提交；
+ * 配置本地位移存储后，位移提交到本地文件而不是kafka
+ * 除标记处理完成外，其余方法只能在拉取线程中调用
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see PollWorker
+ * @see LocalOffsetStore
+ * @since 1.0.8
+ */
+public class OffsetCommitter {
+
+    /**
+     * 分区尚未处理完成任何消息
+     */
+    private static final long NONE = -1L;
+
+    private final Logger logger = LoggerFactory.getLogger(OffsetCommitter.class);
+
+    /**
+     * kafka源生消费者
+     */
+    private final KafkaConsumer<String, byte[]> kafkaConsumer;
+
+    /**
+     * 本地位移存储，为空时提交到kafka
+     */
+    private final LocalOffsetStore localOffsetStore;
+
+    /**
+     * 累计处理多少条消息后提交一次
+     */
+    private final int commitBatchSize;
+
+    /**
+     * 距离上次提交超过多少毫秒后提交一次
+     */
+    private final long commitInterval;
+
+    /**
+     * 当前分配给消费者的各分区已处理完成的下一条消息位移，尚未处理完成任何消息时为{@link #NONE}；
+     * 分区分配时创建、回收时删除，工作线程只更新已存在的条目，使标记处理完成与分区回收互斥
+     */
+    private final Map<TopicPartition, Long> processedOffsets = new ConcurrentHashMap<>();
+
+    /**
+     * 各分区已发起提交的位移，仅在拉取线程中访问
+     */
+    private final Map<TopicPartition, Long> committedOffsets = new HashMap<>();
+
+    /**
+     * 上次提交后新处理完成的消息数量
+     */
+    private final AtomicInteger uncommittedCount = new AtomicInteger();
+
+    /**
+     * 上次提交时间
+     */
+    private long lastCommitTime = System.currentTimeMillis();
+
+    public OffsetCommitter(KafkaConsumer<String, byte[]> kafkaConsumer, int commitBatchSize, long commitInterval) {
+        this(kafkaConsumer, null, commitBatchSize, commitInterval);
+    }
+
+    public OffsetCommitter(KafkaConsumer<String, byte[]> kafkaConsumer, LocalOffsetStore localOffsetStore, int commitBatchSize, long commitInterval) {
+        this.kafkaConsumer = kafkaConsumer;
+        this.localOffsetStore = localOffsetStore;
+        this.commitBatchSize = commitBatchSize;
+        this.commitInterval = commitInterval;
+    }
+
+    /**
+     * 标记消息处理完成，分区已不再分配给当前消费者时忽略
+     *
+     * @param partition 分区
+     * @param offset    最后一条已处理消息的位移
+     * @param count     处理完成的消息数量
+     */
+    public void markProcessed(TopicPartition partition, long offset, int count) {
+        // computeIfPresent在分区条目上原子执行，分区回收后不会重新写入
+        if (processedOffsets.computeIfPresent(partition, (k, processed) -> Math.max(processed, offset + 1)) != null) {
+            uncommittedCount.addAndGet(count);
+        }
+    }
+
+    /**
+     * 达到提交条数或提交间隔时异步提交位移
+     */
+    public void maybeCommit() {
+        int uncommitted = uncommittedCount.get();
+        if (uncommitted == 0) return;
+        if (uncommitted < commitBatchSize && System.currentTimeMillis() - lastCommitTime < commitInterval) return;
+        commitAsync();
+    }
+
+    /**
+     * @return 距离下次按时间提交的剩余毫秒数，没有待提交位移时返回{@link Long#MAX_VALUE}
+     */
+    public long remainingUntilCommit() {
+        if (uncommittedCount.get() == 0) return Long.MAX_VALUE;
+        return Math.max(0, lastCommitTime + commitInterval - System.currentTimeMillis());
+    }
+
+    /**
+     * 异步提交所有分区的待提交位移
+     */
+    public void commitAsync() {
+        uncommittedCount.set(0);
+        lastCommitTime = System.currentTimeMillis();
+        Map<TopicPartition, OffsetAndMetadata> offsets = collectPending(processedOffsets.keySet());
+        if (offsets.isEmpty()) return;
+        if (localOffsetStore != null) {
+            offsets.forEach((partition, offset) -> localOffsetStore.put(partition, offset.offset()));
+            return;
+        }
+        // 回调在拉取线程中执行，失败时回退已提交记录，下次提交时重新提交
+        kafkaConsumer.commitAsync(offsets, (committed, e) -> {
+            if (e == null) return;
+            logger.warn("异步提交位移失败，下次提交时重试：{}", committed, e);
+            committed.forEach((partition, offset) -> committedOffsets.remove(partition, offset.offset()));
+        });
+    }
+
+    /**
+     * 同步提交所有分区的待提交位移
+     *
+     * @param timeout 超时时间
+     */
+    public void commitSync(Duration timeout) {
+        commitSync(processedOffsets.keySet(), timeout);
+    }
+
+    /**
+     * 同步提交指定分区的待提交位移
+     *
+     * @param partitions 分区
+     * @param timeout    超时时间
+     * @throws WakeupException 提交时拉取线程被唤醒
+     */
+    public void commitSync(Collection<TopicPartition> partitions, Duration timeout) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = collectPending(partitions);
+        if (offsets.isEmpty()) return;
+        if (localOffsetStore != null) {
+            offsets.forEach((partition, offset) -> localOffsetStore.put(partition, offset.offset()));
+            localOffsetStore.flush();
+            return;
+        }
+        try {
+            kafkaConsumer.commitSync(offsets, timeout);
+        } catch (WakeupException e) {
+            // 提交被唤醒中断时回退已提交记录，由调用方决定是否重新提交
+            offsets.forEach((partition, offset) -> committedOffsets.remove(partition, offset.offset()));
+            throw e;
+        } catch (Exception e) {
+            offsets.forEach((partition, offset) -> committedOffsets.remove(partition, offset.offset()));
+            logger.error("同步提交位移失败：{}", offsets, e);
+        }
+    }
+
+    /**
+     * 记录新分配的分区，分区分配后调用
+     *
+     * @param partitions 分区
+     */
+    public void assign(Collection<TopicPartition> partitions) {
+        for (TopicPartition partition : partitions) processedOffsets.putIfAbsent(partition, NONE);
+    }
+
+    /**
+     * 清除分区的处理进度，分区被回收或丢失后调用
+     *
+     * @param partitions 分区
+     */
+    public void remove(Collection<TopicPartition> partitions) {
+        for (TopicPartition partition : partitions) {
+            processedOffsets.remove(partition);
+            committedOffsets.remove(partition);
+        }
+    }
+
+    /**
+     * 收集指定分区中处理进度超过已提交位移的分区
+     *
+     * @param partitions 分区
+     * @return 待提交位移
+     */
+    private Map<TopicPartition, OffsetAndMetadata> collectPending(Collection<TopicPartition> partitions) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        for (TopicPartition partition : partitions) {
+            Long processed = processedOffsets.get(partition);
+            if (processed == null || processed == NONE) continue;
+            Long committed = committedOffsets.get(partition);
+            if (committed != null && committed >= processed) continue;
+            committedOffsets.put(partition, processed);
+            offsets.put(partition, new OffsetAndMetadata(processed));
+        }
+        return offsets;
+    }
+}
@@ -0,0 +1,122 @@
+package org.yinqin.mqs.kafka;
+
+import java.util.BitSet;
+
+/**
+ * 分区位移跟踪器
+ * 同一分区的消息乱序处理完成时，用位图记录从可提交位移开始已处理完成的消息，
+ * 可提交位移只推进到第一条未处理完成的消息，之间被跳过的位移视为处理完成
+ * 登记位移只能在拉取线程中按位移升序调用，标记处理完成可以在工作线程中并发调用
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see PollWorker
+ * @see OffsetCommitter
+ * @since 1.0.8
+ */
+public class OffsetTracker {
+
+    /**
+     * 位图头部已推进的位数超过该值后压缩位图
+     */
+    private static final int COMPACT_THRESHOLD = 1024;
+
+    /**
+     * 已处理完成的消息，第i位对应位移base + i - head
+     */
+    private BitSet completed = new BitSet();
+
+    /**
+     * 可提交位移在位图中对应的位置
+     */
+    private int head;
+
+    /**
+     * 可提交位移，即第一条未处理完成的消息位移，为-1时表示尚未登记消息
+     */
+    private long base = -1;
+
+    /**
+     * 下一条待登记的消息位移
+     */
+    private long next = -1;
+
+    /**
+     * 登记待处理的消息，与上一条登记的消息之间被跳过的位移视为处理完成
+     *
+     * @param offset 消息位移
+     */
+    public synchronized void track(long offset) {
+        if (offset < next) return;
+        fillTo(offset);
+        next = offset + 1;
+    }
+
+    /**
+     * 将下一条待登记的位移推进到指定位移，之间被跳过的位移视为处理完成，用于跳过被过滤的消息
+     *
+     * @param offset 下一条待登记的消息位移
+     * @return 推进后的可提交位移，未推进时返回-1
+     */
+    public synchronized long skipTo(long offset) {
+        if (offset <= next) return -1;
+        fillTo(offset);
+        next = offset;
+        return advance();
+    }
+
+    /**
+     * 标记消息处理完成
+     *
+     * @param offset 消息位移
+     * @return 推进后的可提交位移，未推进时返回-1
+     */
+    public synchronized long complete(long offset) {
+        if (offset < base || offset >= next) return -1;
+        completed.set(index(offset));
+        return advance();
+    }
+
+    /**
+     * @return 已登记但尚不能提交的位移跨度，包括已处理完成但前面还有未完成消息的位移
+     */
+    public synchronized long span() {
+        return base < 0 ? 0 : next - base;
+    }
+
+    /**
+     * 标记从下一条待登记位移到指定位移之前的位移处理完成
+     *
+     * @param offset 结束位移，不包含
+     */
+    private void fillTo(long offset) {
+        if (base < 0) {
+            base = offset;
+            next = offset;
+            return;
+        }
+        if (offset > next) completed.set(index(next), index(offset));
+    }
+
+    /**
+     * 将可提交位移推进到第一条未处理完成的消息
+     *
+     * @return 推进后的可提交位移，未推进时返回-1
+     */
+    private long advance() {
+        int firstPending = completed.nextClearBit(head);
+        if (firstPending == head) return -1;
+        base += firstPending - head;
+        head = firstPending;
+        if (head >= COMPACT_THRESHOLD) {
+            completed = completed.get(head, Math.max(head, completed.length()));
+            head = 0;
+        }
+        return base;
+    }
+
+    private int index(long offset) {
+        return head + (int) (offset - base);
+    }
+}
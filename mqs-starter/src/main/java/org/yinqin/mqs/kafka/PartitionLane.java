@@ -0,0 +1,111 @@
+package org.yinqin.mqs.kafka;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分区顺序处理通道
+ * 同一分区的消息按提交顺序串行执行，不同分区的通道共享同一个工作线程池并行执行
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see PollWorker
+ * @since 1.0.8
+ */
+public class PartitionLane implements Runnable {
+
+    private final Logger logger = LoggerFactory.getLogger(PartitionLane.class);
+
+    /**
+     * 通道名称，一般为topic-partition
+     */
+    private final String name;
+
+    /**
+     * 工作线程池
+     */
+    private final Executor executor;
+
+    /**
+     * 待执行任务队列
+     */
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 待处理消息数量
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * 通道是否已提交到线程池执行
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    public PartitionLane(String name, Executor executor) {
+        this.name = name;
+        this.executor = executor;
+    }
+
+    /**
+     * 提交任务
+     *
+     * @param task  任务
+     * @param count 任务包含的消息数量
+     */
+    public void submit(Runnable task, int count) {
+        pending.addAndGet(count);
+        tasks.add(() -> {
+            try {
+                task.run();
+            } finally {
+                pending.addAndGet(-count);
+            }
+        });
+        schedule();
+    }
+
+    /**
+     * @return 待处理消息数量
+     */
+    public int pending() {
+        return pending.get();
+    }
+
+    /**
+     * 串行执行队列中的任务，直到队列为空
+     */
+    @Override
+    public void run() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (Exception e) {
+                logger.error("通道：{}，任务执行异常：", name, e);
+            }
+        }
+        scheduled.set(false);
+        // 释放标记后可能有新任务入队，需要再次调度
+        if (!tasks.isEmpty()) schedule();
+    }
+
+    private void schedule() {
+        if (!scheduled.compareAndSet(false, true)) return;
+        try {
+            executor.execute(this);
+        } catch (RejectedExecutionException e) {
+            scheduled.set(false);
+            logger.warn("通道：{}，工作线程池已关闭，丢弃待处理任务", name);
+            tasks.clear();
+            pending.set(0);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.yinqin.mqs.kafka;
+
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 分区回退协调器
+ * 工作线程中消费失败时不能直接回退位移，只记录回退请求，由拉取线程取出后回退位移并暂停拉取该分区；
+ * 每次回退后分区代数加一，回退前提交或累积的任务在执行和标记处理完成前检查代数，已过期时跳过，
+ * 避免回退位移之后的消息先于失败的消息被标记处理完成
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see PollWorker
+ * @since 1.0.8
+ */
+public class PartitionRewinder {
+
+    /**
+     * 各分区当前代数，未回退过的分区为0
+     */
+    private final Map<TopicPartition, Long> generations = new ConcurrentHashMap<>();
+
+    /**
+     * 各分区待执行的回退位移，同一分区多次请求时取最小位移
+     */
+    private final Map<TopicPartition, Long> requests = new ConcurrentHashMap<>();
+
+    /**
+     * 提交任务前获取分区当前代数
+     *
+     * @param partition 分区
+     * @return 分区当前代数
+     */
+    public long generation(TopicPartition partition) {
+        return generations.getOrDefault(partition, 0L);
+    }
+
+    /**
+     * 分区有待执行的回退请求，或任务提交后分区已回退或已释放时，任务已过期
+     *
+     * @param partition  分区
+     * @param generation 提交任务时的分区代数
+     * @return 任务是否已过期
+     */
+    public boolean isStale(TopicPartition partition, long generation) {
+        return requests.containsKey(partition) || generation(partition) != generation;
+    }
+
+    /**
+     * 请求回退分区位移，任务已过期时忽略
+     *
+     * @param partition  分区
+     * @param generation 提交任务时的分区代数
+     * @param offset     回退到的位移，即第一条处理失败的消息位移
+     */
+    public synchronized void request(TopicPartition partition, long generation, long offset) {
+        if (generation(partition) != generation) return;
+        requests.merge(partition, offset, Math::min);
+    }
+
+    /**
+     * 取出全部回退请求，并使对应分区已提交的任务过期，只在拉取线程中调用
+     *
+     * @return 分区与回退位移
+     */
+    public synchronized Map<TopicPartition, Long> take() {
+        if (requests.isEmpty()) return Collections.emptyMap();
+        Map<TopicPartition, Long> taken = new HashMap<>(requests);
+        for (TopicPartition partition : taken.keySet()) generations.merge(partition, 1L, Long::sum);
+        requests.clear();
+        return taken;
+    }
+
+    /**
+     * 丢弃分区的回退请求，并使已提交的任务过期，分区被回收或丢失后调用
+     *
+     * @param partition 分区
+     */
+    public synchronized void release(TopicPartition partition) {
+        requests.remove(partition);
+        generations.merge(partition, 1L, Long::sum);
+    }
+}
@@ -1,30 +1,69 @@
 package org.yinqin.mqs.kafka;
 
-import cn.hutool.core.thread.ThreadUtil;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.header.Header;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.yinqin.mqs.common.MessageAdapter;
+import org.yinqin.mqs.common.Constants;
+import org.yinqin.mqs.common.config.MqsProperties.AdapterProperties.CustomKafkaProperties;
 import org.yinqin.mqs.common.entity.AdapterMessage;
-import org.yinqin.mqs.common.handler.MessageHandler;
+import org.yinqin.mqs.common.exception.MqsConsumerException;
+import org.yinqin.mqs.common.handler.BatchResult;
+import org.yinqin.mqs.common.handler.HandlerDefinition;
+import org.yinqin.mqs.common.handler.MicroBatchAccumulator;
+import org.yinqin.mqs.kafka.consumer.KafkaAdapterMessage;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.stream.Collectors;
 
 /**
  * 拉取消息工作线程
+ * 未配置工作线程池时，在拉取线程中直接处理消息；
+ * 配置工作线程池后，拉取线程只负责拉取消息，按分区提交到顺序处理通道中并行处理，积压的分区会被暂停拉取；
+ * 开启按key顺序消费后，同一分区的消息再按bizKey分到多个顺序处理通道并行处理，由位移跟踪器计算可提交位移，
+ * 未开启重试时处理失败的消息在原通道中退避后重新处理，期间不提交其位移；
+ * 开启手动提交位移后，只提交已处理完成的消息位移；
+ * 开启自适应拉取后，依赖broker端长轮询等待消息，不再在空拉取后休眠；
+ * 批量消息处理器配置了最小批量和linger时间后，跨拉取累积消息，批次处理完成后才标记位移，未开启重试时处理失败则回退位移；
+ * 开启重试后，消费失败的消息转发到重试topic，未到期的重试消息回退位移并暂停该分区直到到期；未开启重试时，消息处理器抛出异常的消息视为处理失败；
+ * 支持部分确认的批量消息处理器部分失败时，开启重试则只转发失败的消息，否则各分区回退到第一条失败的消息并暂停拉取该分区，
+ * 同一位移连续失败时按指数退避延长暂停时间；工作线程中的失败由拉取线程回退位移，回退前已提交的后续任务不再执行；
+ * 消息处理器声明了tag过滤表达式时，在转换消息前按tag消息头过滤；
+ * 停止时唤醒拉取线程，在限定时间内等待处理中的消息完成并提交已处理完成的位移后关闭消费者；
+ * 广播消费时不使用消费组，直接分配全部分区，位移保存在本地文件中
  *
  * @author YinQin
- * @version 1.0.6
+ * @version 1.0.8
  * @createDate 2023年10月13日
  * @see Runnable
+ * @see PartitionLane
+ * @see OffsetCommitter
+ * @see OffsetTracker
+ * @see AdaptivePollTimeout
+ * @see MicroBatchAccumulator
+ * @see RetryTopicRouter
+ * @see PartitionRewinder
+ * @see BroadcastAssignor
  * @since 1.0.0
  */
 public class PollWorker implements Runnable {
@@ -36,25 +75,260 @@ public class PollWorker implements Runnable {
      */
     private final AtomicBoolean closed = new AtomicBoolean(false);
 
+    /**
+     * 停止信号，用于唤醒空拉取后的等待
+     */
+    private final CountDownLatch stopSignal = new CountDownLatch(1);
+
+    /**
+     * 拉取线程结束信号
+     */
+    private final CountDownLatch terminated = new CountDownLatch(1);
+
     /**
      * kafka源生消费者
      */
     private final KafkaConsumer<String, byte[]> kafkaConsumer;
 
     /**
-     * 消息处理器集合
+     * 消息处理器分发表
      */
-    private final Map<String, MessageHandler> messageHandlers;
+    private final Map<String, HandlerDefinition> handlerDefinitions;
 
     /**
      * 拉取消息间隔
      */
     private final int interval;
 
-    public PollWorker(KafkaConsumer<String, byte[]> kafkaConsumer, Map<String, MessageHandler> messageHandlers, int interval) {
+    /**
+     * 消息处理线程池，为空时在拉取线程中直接处理消息
+     */
+    private final ExecutorService workerPool;
+
+    /**
+     * 单个分区待处理消息数上限，超过后暂停拉取该分区
+     */
+    private final int partitionMaxPending;
+
+    /**
+     * 分区顺序处理通道，仅在拉取线程中访问
+     */
+    private final Map<TopicPartition, PartitionLane> lanes = new HashMap<>();
+
+    /**
+     * 单个分区按bizKey划分的顺序处理通道数，小于等于1时不开启按key顺序消费
+     */
+    private final int keyOrderedLanes;
+
+    /**
+     * 按key顺序消费时各分区的key顺序处理通道，仅在拉取线程中访问
+     */
+    private final Map<TopicPartition, PartitionLane[]> keyLanes = new HashMap<>();
+
+    /**
+     * 按key顺序消费时各分区的位移跟踪器，仅在拉取线程中访问
+     */
+    private final Map<TopicPartition, OffsetTracker> offsetTrackers = new HashMap<>();
+
+    /**
+     * 因积压而暂停拉取的分区，仅在拉取线程中访问
+     */
+    private final Set<TopicPartition> pausedPartitions = new HashSet<>();
+
+    /**
+     * 按topic累积消息的累积器，在拉取线程中直接处理消息时使用，仅在拉取线程中访问
+     */
+    private final Map<String, MicroBatchAccumulator> topicAccumulators = new HashMap<>();
+
+    /**
+     * 按分区累积消息的累积器，分区并行消费时使用，仅在拉取线程中访问
+     */
+    private final Map<TopicPartition, MicroBatchAccumulator> partitionAccumulators = new HashMap<>();
+
+    /**
+     * 因重试消息未到期或消费失败而暂停拉取的分区及恢复时间，仅在拉取线程中访问
+     */
+    private final Map<TopicPartition, Long> delayedPartitions = new HashMap<>();
+
+    /**
+     * 各分区最近一次消费失败回退到的位移，仅在拉取线程中访问
+     */
+    private final Map<TopicPartition, Long> failedOffsets = new HashMap<>();
+
+    /**
+     * 各分区最近一次回退位移的连续失败次数，仅在拉取线程中访问
+     */
+    private final Map<TopicPartition, Integer> failedAttempts = new HashMap<>();
+
+    /**
+     * 分区回退协调器，工作线程中消费失败时请求回退位移
+     */
+    private final PartitionRewinder rewinder = new PartitionRewinder();
+
+    /**
+     * 消费失败后暂停拉取分区的基础时间，单位：毫秒
+     */
+    private final long suspendTime;
+
+    /**
+     * 重试路由，未开启重试时为空
+     */
+    private final RetryTopicRouter retryRouter;
+
+    /**
+     * 广播消费分区分配器，集群消费时为空
+     */
+    private final BroadcastAssignor broadcastAssignor;
+
+    /**
+     * 位移提交器，自动提交位移时为空
+     */
+    private final OffsetCommitter offsetCommitter;
+
+    /**
+     * 自适应拉取超时时间，固定间隔拉取时为空
+     */
+    private final AdaptivePollTimeout adaptivePollTimeout;
+
+    /**
+     * 停止时等待处理中消息完成的最长时间，单位：毫秒
+     */
+    private final long shutdownTimeout;
+
+    /**
+     * 停止时检查分区处理通道是否处理完成的间隔，单位：毫秒
+     */
+    private static final long DRAIN_CHECK_INTERVAL = 10;
+
+    /**
+     * 同步提交位移超时时间
+     */
+    private static final Duration COMMIT_SYNC_TIMEOUT = Duration.ofSeconds(5);
+
+    /**
+     * 固定间隔拉取时的拉取超时时间
+     */
+    private static final Duration FIXED_POLL_TIMEOUT = Duration.ofMillis(100);
+
+    /**
+     * fetch.max.wait.ms默认值，单位：毫秒
+     */
+    private static final String DEFAULT_FETCH_MAX_WAIT = "500";
+
+    /**
+     * 暂停时间指数退避的最大倍数为2的6次方
+     */
+    private static final int MAX_SUSPEND_SHIFT = 6;
+
+    /**
+     * 同一位移连续失败达到该次数后按错误级别记录日志
+     */
+    private static final int SUSPEND_ESCALATE_ATTEMPTS = 10;
+
+    /**
+     * 创建集群消费的拉取消息工作线程，由消费组分配分区
+     *
+     * @param kafkaConsumer      kafka源生消费者
+     * @param handlerDefinitions 消息处理器分发表
+     * @param kafkaProperties    kafka配置
+     * @param workerPool         消息处理线程池，可以为空
+     * @param manualCommit       是否手动提交位移
+     * @param retryRouter        重试路由，可以为空
+     */
+    public PollWorker(KafkaConsumer<String, byte[]> kafkaConsumer, Map<String, HandlerDefinition> handlerDefinitions, CustomKafkaProperties kafkaProperties, ExecutorService workerPool, boolean manualCommit, RetryTopicRouter retryRouter) {
+        this(kafkaConsumer, handlerDefinitions, kafkaProperties, workerPool, manualCommit ? new OffsetCommitter(kafkaConsumer, kafkaProperties.getCommitBatchSize(), kafkaProperties.getCommitInterval()) : null, retryRouter, null);
+    }
+
+    /**
+     * 创建广播消费的拉取消息工作线程，直接分配订阅topic的全部分区，位移提交到本地位移存储
+     *
+     * @param kafkaConsumer      未配置消费组的kafka源生消费者
+     * @param handlerDefinitions 消息处理器分发表
+     * @param kafkaProperties    kafka配置
+     * @param workerPool         消息处理线程池，可以为空
+     * @param localOffsetStore   本地位移存储
+     */
+    public PollWorker(KafkaConsumer<String, byte[]> kafkaConsumer, Map<String, HandlerDefinition> handlerDefinitions, CustomKafkaProperties kafkaProperties, ExecutorService workerPool, LocalOffsetStore localOffsetStore) {
+        this(kafkaConsumer, handlerDefinitions, kafkaProperties, workerPool, new OffsetCommitter(kafkaConsumer, localOffsetStore, kafkaProperties.getCommitBatchSize(), kafkaProperties.getCommitInterval()), null, localOffsetStore);
+    }
+
+    private PollWorker(KafkaConsumer<String, byte[]> kafkaConsumer, Map<String, HandlerDefinition> handlerDefinitions, CustomKafkaProperties kafkaProperties, ExecutorService workerPool, OffsetCommitter offsetCommitter, RetryTopicRouter retryRouter, LocalOffsetStore localOffsetStore) {
         this.kafkaConsumer = kafkaConsumer;
-        this.messageHandlers = messageHandlers;
-        this.interval = interval;
+        this.handlerDefinitions = handlerDefinitions;
+        this.retryRouter = retryRouter;
+        this.interval = kafkaProperties.getInterval();
+        this.workerPool = workerPool;
+        this.partitionMaxPending = kafkaProperties.getPartitionMaxPending();
+        this.keyOrderedLanes = workerPool == null ? 0 : kafkaProperties.getKeyOrderedLanes();
+        this.shutdownTimeout = kafkaProperties.getShutdownTimeout();
+        this.suspendTime = kafkaProperties.getSuspendTime();
+        this.offsetCommitter = offsetCommitter;
+        this.broadcastAssignor = localOffsetStore == null ? null : new BroadcastAssignor(kafkaConsumer, handlerDefinitions.keySet(), localOffsetStore, offsetCommitter, kafkaProperties);
+        if (kafkaProperties.isAdaptivePoll()) {
+            long fetchMaxWait = Long.parseLong(kafkaProperties.getClientConfig().getProperty(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, DEFAULT_FETCH_MAX_WAIT));
+            this.adaptivePollTimeout = new AdaptivePollTimeout(fetchMaxWait, kafkaProperties.getMaxPollTimeout());
+        } else {
+            this.adaptivePollTimeout = null;
+        }
+    }
+
+    /**
+     * 创建再均衡监听器
+     * 只处理被回收的分区：处理累积的消息，在限定时间内等待分区处理通道中的消息完成，并同步提交已处理完成的位移；
+     * 协作式再均衡时未被回收的分区不受影响，继续消费
+     *
+     * @return 再均衡监听器
+     */
+    public ConsumerRebalanceListener rebalanceListener() {
+        return new ConsumerRebalanceListener() {
+            @Override
+            public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                if (partitions.isEmpty()) return;
+                flushTopicAccumulators(true);
+                for (TopicPartition partition : partitions) {
+                    MicroBatchAccumulator accumulator = partitionAccumulators.remove(partition);
+                    if (accumulator != null) submitBatches(partition, accumulator.drain(true));
+                }
+                if (!drainLanes(partitions, System.currentTimeMillis() + shutdownTimeout)) {
+                    logger.warn("分区被回收时等待处理中的消息超时，未处理完成的消息位移不会提交：{}", partitions);
+                }
+                if (offsetCommitter != null) offsetCommitter.commitSync(partitions, COMMIT_SYNC_TIMEOUT);
+                releasePartitions(partitions);
+                logger.info("分区已回收：{}", partitions);
+            }
+
+            @Override
+            public void onPartitionsLost(Collection<TopicPartition> partitions) {
+                // 分区已被分配给其他消费者，不能再提交位移，直接丢弃未处理的消息
+                partitionAccumulators.keySet().removeAll(partitions);
+                releasePartitions(partitions);
+                logger.warn("分区已丢失：{}", partitions);
+            }
+
+            @Override
+            public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                // 新分配的分区从已提交位移处开始消费
+                if (offsetCommitter != null) offsetCommitter.assign(partitions);
+                if (!partitions.isEmpty()) logger.info("分区已分配：{}", partitions);
+            }
+        };
+    }
+
+    /**
+     * 释放分区的本地状态，分区被回收或丢失后调用，仍在处理中的消息处理完成后不会再标记位移
+     *
+     * @param partitions 分区
+     */
+    private void releasePartitions(Collection<TopicPartition> partitions) {
+        if (offsetCommitter != null) offsetCommitter.remove(partitions);
+        lanes.keySet().removeAll(partitions);
+        keyLanes.keySet().removeAll(partitions);
+        offsetTrackers.keySet().removeAll(partitions);
+        pausedPartitions.removeAll(partitions);
+        delayedPartitions.keySet().removeAll(partitions);
+        failedOffsets.keySet().removeAll(partitions);
+        failedAttempts.keySet().removeAll(partitions);
+        for (TopicPartition partition : partitions) rewinder.release(partition);
     }
 
     @Override
@@ -62,73 +336,617 @@ public class PollWorker implements Runnable {
         try {
             while (!closed.get()) {
                 try {
-                    List<AdapterMessage> messages = fetchMessages();
-                    if (messages.isEmpty()) {
-                        ThreadUtil.sleep(interval);
+                    // 广播消费时订阅的topic尚无分区，等待下次刷新
+                    if (broadcastAssignor != null && !broadcastAssignor.maybeRefresh()) {
+                        awaitStop(interval);
                         continue;
                     }
-
-                    consumeMessage(messages);
+                    ConsumerRecords<String, byte[]> records = kafkaConsumer.poll(nextPollTimeout());
+                    if (adaptivePollTimeout != null) adaptivePollTimeout.onPoll(records.count());
+                    Set<TopicPartition> rewound = applyRewinds();
+                    if (workerPool != null) resumeDrainedPartitions();
+                    resumeDuePartitions();
+                    if (!records.isEmpty()) {
+                        Map<TopicPartition, List<ConsumerRecord<String, byte[]>>> partitionRecords = groupByPartition(records);
+                        // 已回退位移的分区丢弃本次拉取到的消息，恢复拉取后从回退位移重新拉取
+                        partitionRecords.keySet().removeAll(rewound);
+                        if (workerPool == null) consumeMessage(partitionRecords);
+                        else dispatchToLanes(partitionRecords);
+                    }
+                    flushAccumulators(false);
+                    if (offsetCommitter != null) offsetCommitter.maybeCommit();
+                    if (records.isEmpty() && adaptivePollTimeout == null) awaitStop(Math.min(interval, remainingLinger()));
+                } catch (WakeupException e) {
+                    // 停止时唤醒拉取线程，由循环条件退出
                 } catch (Exception e) {
                     logger.error("拉取消息异常：", e);
                 }
             }
+            drainAndCommit(System.currentTimeMillis() + shutdownTimeout);
         } finally {
             // 关闭消费者,必须在当前线程关闭，否则会有线程安全问题
-            kafkaConsumer.close();
+            kafkaConsumer.close(COMMIT_SYNC_TIMEOUT);
+            if (broadcastAssignor != null) broadcastAssignor.close();
+            terminated.countDown();
         }
 
     }
 
+    /**
+     * 发出停止信号并唤醒拉取线程，不等待拉取线程结束
+     */
     public void shutdown() {
-        closed.set(true);
+        if (!closed.compareAndSet(false, true)) return;
+        stopSignal.countDown();
+        kafkaConsumer.wakeup();
+    }
+
+    /**
+     * 等待拉取线程结束
+     *
+     * @param timeout 最长等待时间，单位：毫秒
+     * @return 拉取线程是否已结束
+     * @throws InterruptedException 等待时被中断
+     */
+    public boolean awaitTermination(long timeout) throws InterruptedException {
+        return terminated.await(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return 停止时等待处理中消息完成的最长时间，单位：毫秒
+     */
+    public long getShutdownTimeout() {
+        return shutdownTimeout;
+    }
+
+    /**
+     * 空拉取后等待，收到停止信号时立即返回
+     *
+     * @param timeout 等待时间，单位：毫秒
+     */
+    private void awaitStop(long timeout) {
+        try {
+            stopSignal.await(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 停止前处理累积的消息，在截止时间前等待分区处理通道中的消息处理完成，并同步提交已处理完成的位移
+     *
+     * @param deadline 截止时间，毫秒时间戳
+     */
+    private void drainAndCommit(long deadline) {
+        flushAccumulators(true);
+        Set<TopicPartition> partitions = new HashSet<>(lanes.keySet());
+        partitions.addAll(offsetTrackers.keySet());
+        if (!drainLanes(partitions, deadline)) logger.warn("等待处理中的消息超时，未处理完成的消息位移不会提交");
+        if (offsetCommitter == null) return;
+        try {
+            offsetCommitter.commitSync(COMMIT_SYNC_TIMEOUT);
+        } catch (WakeupException e) {
+            // 唤醒信号在拉取结束后才到达时会中断本次提交，重新提交一次
+            offsetCommitter.commitSync(COMMIT_SYNC_TIMEOUT);
+        }
     }
 
     /**
-     * 拉取消息
+     * 分区待处理消息数，按key顺序消费时为已拉取但尚不能提交的位移跨度
      *
+     * @param partition 分区
+     * @return 待处理消息数
+     */
+    private long pending(TopicPartition partition) {
+        long pending = 0;
+        PartitionLane lane = lanes.get(partition);
+        if (lane != null) pending += lane.pending();
+        OffsetTracker tracker = offsetTrackers.get(partition);
+        if (tracker != null) pending += tracker.span();
+        return pending;
+    }
+
+    /**
+     * 在截止时间前等待分区处理通道中的消息处理完成
+     *
+     * @param partitions 分区
+     * @param deadline   截止时间，毫秒时间戳
+     * @return 是否全部处理完成
+     */
+    private boolean drainLanes(Collection<TopicPartition> partitions, long deadline) {
+        for (TopicPartition partition : partitions) {
+            while (pending(partition) > 0) {
+                if (System.currentTimeMillis() >= deadline) return false;
+                try {
+                    Thread.sleep(DRAIN_CHECK_INTERVAL);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 计算下次拉取的超时时间，自适应拉取时不超过下次提交位移、恢复分区、累积消息或重试消息到期的时间
+     *
+     * @return 拉取超时时间
+     */
+    private Duration nextPollTimeout() {
+        if (adaptivePollTimeout == null) return FIXED_POLL_TIMEOUT;
+        long deadline = offsetCommitter == null ? Long.MAX_VALUE : offsetCommitter.remainingUntilCommit();
+        if (!pausedPartitions.isEmpty()) deadline = Math.min(deadline, interval);
+        deadline = Math.min(deadline, remainingLinger());
+        long now = System.currentTimeMillis();
+        for (long resumeTime : delayedPartitions.values()) deadline = Math.min(deadline, Math.max(0, resumeTime - now));
+        return adaptivePollTimeout.next(deadline);
+    }
+
+    /**
+     * 将同一分区中满足tag过滤表达式的消息包装为只读消息视图
+     *
+     * @param definition       消息处理器定义
+     * @param partitionRecords 同一分区的消息
      * @return 消息集合
      */
-    private List<AdapterMessage> fetchMessages() {
-        ConsumerRecords<String, byte[]> records = kafkaConsumer.poll(Duration.ofMillis(100));
-        Iterator<ConsumerRecord<String, byte[]>> iterator = records.iterator();
-        List<AdapterMessage> messages = new ArrayList<>(records.count());
-        ConsumerRecord<String, byte[]> item;
+    private List<AdapterMessage> fetchMessages(HandlerDefinition definition, List<ConsumerRecord<String, byte[]>> partitionRecords) {
+        List<AdapterMessage> messages = new ArrayList<>(partitionRecords.size());
+        for (ConsumerRecord<String, byte[]> item : filter(definition, partitionRecords)) messages.add(new KafkaAdapterMessage(item));
+        return messages;
+    }
+
+    /**
+     * 在转换消息前按tag消息头过滤，过滤掉的消息视为处理完成
+     *
+     * @param definition       消息处理器定义
+     * @param partitionRecords 同一分区的消息
+     * @return 满足tag过滤表达式的消息
+     */
+    private List<ConsumerRecord<String, byte[]>> filter(HandlerDefinition definition, List<ConsumerRecord<String, byte[]>> partitionRecords) {
+        if (!definition.isTagFiltered()) return partitionRecords;
+        List<ConsumerRecord<String, byte[]>> accepted = new ArrayList<>(partitionRecords.size());
+        for (ConsumerRecord<String, byte[]> item : partitionRecords) {
+            Header header = item.headers().lastHeader(Constants.KAFKA_TAG_HEADER);
+            String tag = header == null || header.value() == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+            if (definition.acceptTag(tag)) accepted.add(item);
+        }
+        return accepted;
+    }
+
+    /**
+     * 按分区整理拉取到的消息，重试topic中未到期的消息回退位移，并暂停该分区直到到期
+     *
+     * @param records 拉取到的消息
+     * @return 分区与可以消费的消息
+     */
+    private Map<TopicPartition, List<ConsumerRecord<String, byte[]>>> groupByPartition(ConsumerRecords<String, byte[]> records) {
+        Map<TopicPartition, List<ConsumerRecord<String, byte[]>>> partitionRecords = new LinkedHashMap<>();
+        List<TopicPartition> delayed = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (TopicPartition partition : records.partitions()) {
+            List<ConsumerRecord<String, byte[]>> recordList = records.records(partition);
+            if (retryRouter != null && retryRouter.isRetryTopic(partition.topic())) {
+                for (int i = 0; i < recordList.size(); i++) {
+                    long dueTime = retryRouter.dueTime(recordList.get(i));
+                    if (dueTime <= now) continue;
+                    // 同一重试topic中的消息按到期时间先后写入，第一条未到期的消息之后的消息等到期后重新拉取
+                    kafkaConsumer.seek(partition, recordList.get(i).offset());
+                    delayedPartitions.put(partition, dueTime);
+                    delayed.add(partition);
+                    recordList = recordList.subList(0, i);
+                    break;
+                }
+            }
+            if (!recordList.isEmpty()) partitionRecords.put(partition, recordList);
+        }
+        if (!delayed.isEmpty()) {
+            kafkaConsumer.pause(delayed);
+            logger.debug("重试消息未到期，暂停拉取：{}", delayed);
+        }
+        return partitionRecords;
+    }
+
+    /**
+     * 恢复重试消息已到期或消费失败暂停时间已到期的分区
+     */
+    private void resumeDuePartitions() {
+        if (delayedPartitions.isEmpty()) return;
+        List<TopicPartition> due = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<TopicPartition, Long>> iterator = delayedPartitions.entrySet().iterator();
         while (iterator.hasNext()) {
-            item = iterator.next();
-            AdapterMessage message = AdapterMessage.builder()
-                    .topic(item.topic())
-                    .body(item.value())
-                    .bizKey(item.key())
-                    .build();
-            message.setOriginMessage(item);
-            messages.add(message);
+            Map.Entry<TopicPartition, Long> entry = iterator.next();
+            if (entry.getValue() > now) continue;
+            iterator.remove();
+            // 因积压暂停的分区由积压恢复逻辑负责恢复
+            if (!pausedPartitions.contains(entry.getKey())) due.add(entry.getKey());
         }
-        return messages;
+        if (due.isEmpty()) return;
+        due.retainAll(kafkaConsumer.assignment());
+        kafkaConsumer.resume(due);
+        logger.debug("暂停时间已到期，恢复拉取：{}", due);
     }
 
     /**
-     * 按照topic分组批量消费消息
+     * 执行工作线程请求的位移回退
      *
-     * @param messages 消息集合
+     * @return 已回退位移的分区
      */
-    private void consumeMessage(List<AdapterMessage> messages) {
-        Map<String, List<AdapterMessage>> collect = messages.stream().collect(Collectors.groupingBy(AdapterMessage::getTopic, Collectors.toList()));
-        try {
-            for (Map.Entry<String, List<AdapterMessage>> entry : collect.entrySet()) {
-                String topic = entry.getKey();
-                List<AdapterMessage> messageObjectList = entry.getValue();
-                logger.debug("kafka批量消息，topic：{},消息数量为：{}", topic, messageObjectList.size());
-                MessageAdapter messageAdapter = messageHandlers.get(messageObjectList.get(0).getTopic()).getClass().getAnnotation(MessageAdapter.class);
-                if (messageAdapter.isBatch()) {
-                    messageHandlers.get(messageObjectList.get(0).getTopic()).process(messages);
-                } else {
-                    for (AdapterMessage msg : messages)
-                        messageHandlers.get(messageObjectList.get(0).getTopic()).process(msg);
+    private Set<TopicPartition> applyRewinds() {
+        Map<TopicPartition, Long> requests = rewinder.take();
+        if (requests.isEmpty()) return Collections.emptySet();
+        Set<TopicPartition> assignment = kafkaConsumer.assignment();
+        Set<TopicPartition> rewound = new HashSet<>();
+        for (Map.Entry<TopicPartition, Long> entry : requests.entrySet()) {
+            if (!assignment.contains(entry.getKey())) continue;
+            suspend(entry.getKey(), entry.getValue());
+            rewound.add(entry.getKey());
+        }
+        return rewound;
+    }
+
+    /**
+     * 回退到第一条消费失败的消息并暂停拉取该分区，同一位移连续失败时按2的幂延长暂停时间
+     *
+     * @param partition 分区
+     * @param offset    第一条消费失败的消息位移
+     */
+    private void suspend(TopicPartition partition, long offset) {
+        int attempts = Long.valueOf(offset).equals(failedOffsets.get(partition)) ? failedAttempts.get(partition) + 1 : 1;
+        failedOffsets.put(partition, offset);
+        failedAttempts.put(partition, attempts);
+        long suspend = suspendTime << Math.min(attempts - 1, MAX_SUSPEND_SHIFT);
+        kafkaConsumer.seek(partition, offset);
+        kafkaConsumer.pause(Collections.singleton(partition));
+        delayedPartitions.merge(partition, System.currentTimeMillis() + suspend, Math::max);
+        if (attempts < SUSPEND_ESCALATE_ATTEMPTS) {
+            logger.warn("消费失败，回退位移并暂停拉取{}毫秒，分区：{}，位移：{}，连续失败次数：{}", suspend, partition, offset, attempts);
+        } else {
+            logger.error("同一位移持续消费失败，请检查消息处理器或开启重试，分区：{}，位移：{}，连续失败次数：{}", partition, offset, attempts);
+        }
+    }
+
+    /**
+     * 按照topic分组批量消费消息并标记处理完成，跨拉取累积的消息只追加到累积器中；
+     * 部分处理失败时各分区只标记到第一条失败消息之前，并回退到第一条失败消息、暂停拉取后重新拉取
+     *
+     * @param records 分区与拉取到的消息
+     */
+    private void consumeMessage(Map<TopicPartition, List<ConsumerRecord<String, byte[]>>> records) {
+        Map<String, List<TopicPartition>> topicPartitions = new LinkedHashMap<>();
+        for (Map.Entry<TopicPartition, List<ConsumerRecord<String, byte[]>>> entry : records.entrySet()) {
+            TopicPartition partition = entry.getKey();
+            HandlerDefinition definition = handlerDefinitions.get(partition.topic());
+            if (definition.isMicroBatch()) {
+                accumulate(topicAccumulators.computeIfAbsent(partition.topic(), topic -> new MicroBatchAccumulator(definition)), partition, entry.getValue());
+                continue;
+            }
+            topicPartitions.computeIfAbsent(partition.topic(), topic -> new ArrayList<>()).add(partition);
+        }
+        for (Map.Entry<String, List<TopicPartition>> entry : topicPartitions.entrySet()) {
+            HandlerDefinition definition = handlerDefinitions.get(entry.getKey());
+            Map<TopicPartition, List<ConsumerRecord<String, byte[]>>> acceptedRecords = new LinkedHashMap<>();
+            List<AdapterMessage> messages = new ArrayList<>();
+            for (TopicPartition partition : entry.getValue()) {
+                List<ConsumerRecord<String, byte[]>> accepted = filter(definition, records.get(partition));
+                acceptedRecords.put(partition, accepted);
+                for (ConsumerRecord<String, byte[]> item : accepted) messages.add(new KafkaAdapterMessage(item));
+            }
+            BatchResult result = messages.isEmpty() ? BatchResult.success() : consumeMessage(entry.getKey(), messages);
+            int from = 0;
+            for (Map.Entry<TopicPartition, List<ConsumerRecord<String, byte[]>>> partitionEntry : acceptedRecords.entrySet()) {
+                TopicPartition partition = partitionEntry.getKey();
+                List<ConsumerRecord<String, byte[]>> accepted = partitionEntry.getValue();
+                int firstFailure = result.firstFailure(from, from + accepted.size()) - from;
+                from += accepted.size();
+                if (firstFailure == accepted.size()) {
+                    // 包括被过滤掉的消息在内全部标记处理完成
+                    markProcessed(partition, records.get(partition));
+                    continue;
+                }
+                markProcessed(partition, accepted.subList(0, firstFailure));
+                suspend(partition, accepted.get(firstFailure).offset());
+            }
+        }
+    }
+
+    /**
+     * 消费同一topic的消息，开启重试时单条消费失败的消息逐条转发到重试topic，批量消费失败时整批转发，部分失败时只转发失败的消息，
+     * 转发成功的消息视为处理完成，从第一条转发失败的消息开始视为处理失败；
+     * 未开启重试且手动提交位移时，单条消费在第一条抛出异常的消息处停止，该消息及之后的消息视为处理失败，批量消费抛出异常时整批视为处理失败；
+     * 未开启重试且自动提交位移时，与旧版本相同，抛出异常的消息记录日志后跳过
+     *
+     * @param topic    主题
+     * @param messages 该主题下的消息集合
+     * @return 处理结果
+     */
+    private BatchResult consumeMessage(String topic, List<AdapterMessage> messages) {
+        logger.debug("kafka批量消息，topic：{},消息数量为：{}", topic, messages.size());
+        HandlerDefinition definition = handlerDefinitions.get(topic);
+        if (definition.isBatch()) {
+            try {
+                BatchResult result = definition.dispatchWithResult(messages);
+                if (result.isSuccess() || retryRouter == null) return result;
+                logger.warn("kafka批量消费部分失败，topic：{}，只转发失败的{}条消息", topic, result.failedCount());
+                List<AdapterMessage> failedMessages = result.failedMessages(messages);
+                int forwarded = retryRouter.republish(failedMessages);
+                if (forwarded == failedMessages.size()) return BatchResult.success();
+                // 第一条转发失败的消息在本批次中的下标
+                int firstUnforwarded = result.firstFailure(0, messages.size());
+                for (int i = 0; i < forwarded; i++) firstUnforwarded = result.firstFailure(firstUnforwarded + 1, messages.size());
+                return BatchResult.failedRange(firstUnforwarded, messages.size());
+            } catch (Exception e) {
+                logger.error("kafka消费异常：", e);
+                if (retryRouter == null) return rewindOnFailure() ? BatchResult.failedRange(0, messages.size()) : BatchResult.success();
+                int forwarded = retryRouter.republish(messages);
+                if (forwarded < messages.size()) return BatchResult.failedRange(forwarded, messages.size());
+            }
+            return BatchResult.success();
+        }
+        for (int i = 0; i < messages.size(); i++) {
+            try {
+                definition.getHandler().process(messages.get(i));
+            } catch (Exception e) {
+                logger.error("kafka消费异常：", e);
+                if (retryRouter == null) {
+                    if (rewindOnFailure()) return BatchResult.failedRange(i, messages.size());
+                } else if (retryRouter.republish(Collections.singletonList(messages.get(i))) == 0) {
+                    return BatchResult.failedRange(i, messages.size());
                 }
             }
+        }
+        return BatchResult.success();
+    }
+
+    /**
+     * 未开启重试时，消息处理器抛出异常后是否回退位移重新消费；只在手动提交位移时回退，
+     * 自动提交位移时记录日志后跳过，避免一条始终处理失败的消息阻塞整个分区
+     *
+     * @return 是否回退位移
+     */
+    private boolean rewindOnFailure() {
+        return offsetCommitter != null;
+    }
+
+    /**
+     * 将分区消息追加到累积器，所在批次全部处理完成后标记处理完成；
+     * 处理失败且手动提交位移或转发重试topic失败时，请求回退到本次追加的第一条消息，否则记录日志后跳过
+     *
+     * @param accumulator      累积器
+     * @param partition        分区
+     * @param partitionRecords 该分区下拉取到的消息
+     */
+    private void accumulate(MicroBatchAccumulator accumulator, TopicPartition partition, List<ConsumerRecord<String, byte[]>> partitionRecords) {
+        long generation = rewinder.generation(partition);
+        accumulator.append(fetchMessages(accumulator.getDefinition(), partitionRecords)).whenComplete((result, e) -> {
+            if (e != null) {
+                if (rewindOnFailure() || retryRouter != null) rewinder.request(partition, generation, partitionRecords.get(0).offset());
+            } else if (!rewinder.isStale(partition, generation)) markProcessed(partition, partitionRecords);
+        });
+    }
+
+    /**
+     * 取出累积器中可以处理的批次，直接处理或提交到分区顺序处理通道
+     *
+     * @param force 是否忽略最小批量和linger时间，取出全部消息
+     */
+    private void flushAccumulators(boolean force) {
+        flushTopicAccumulators(force);
+        for (Map.Entry<TopicPartition, MicroBatchAccumulator> entry : partitionAccumulators.entrySet()) {
+            submitBatches(entry.getKey(), entry.getValue().drain(force));
+        }
+    }
+
+    /**
+     * 取出按topic累积的消息中可以处理的批次，在拉取线程中直接处理
+     *
+     * @param force 是否忽略最小批量和linger时间，取出全部消息
+     */
+    private void flushTopicAccumulators(boolean force) {
+        for (Map.Entry<String, MicroBatchAccumulator> entry : topicAccumulators.entrySet()) {
+            for (MicroBatchAccumulator.Batch batch : entry.getValue().drain(force)) processBatch(entry.getKey(), batch);
+        }
+    }
+
+    /**
+     * 将批次提交到分区顺序处理通道
+     *
+     * @param partition 分区
+     * @param batches   批次集合
+     */
+    private void submitBatches(TopicPartition partition, List<MicroBatchAccumulator.Batch> batches) {
+        for (MicroBatchAccumulator.Batch batch : batches) {
+            lanes.computeIfAbsent(partition, tp -> new PartitionLane(tp.toString(), workerPool)).submit(() -> processBatch(partition.topic(), batch), batch.size());
+        }
+    }
+
+    /**
+     * 处理累积的批次
+     *
+     * @param topic 主题
+     * @param batch 批次
+     */
+    private void processBatch(String topic, MicroBatchAccumulator.Batch batch) {
+        try {
+            logger.debug("kafka累积批量消息，topic：{},消息数量为：{}", topic, batch.size());
+            batch.process(retryRouter == null ? null : this::republishOrFail);
         } catch (Exception e) {
             logger.error("kafka消费异常：", e);
         }
     }
+
+    /**
+     * 累积批次的恢复处理器，转发失败时抛出异常，使批次对应的追加记录异常完成并回退位移
+     *
+     * @param messages 处理失败的批次消息
+     */
+    private void republishOrFail(List<AdapterMessage> messages) {
+        if (retryRouter.republish(messages) < messages.size()) throw new MqsConsumerException("消费失败的消息转发到重试topic失败");
+    }
+
+    /**
+     * @return 所有累积器中最近一次linger时间到期的剩余毫秒数
+     */
+    private long remainingLinger() {
+        long remaining = Long.MAX_VALUE;
+        for (MicroBatchAccumulator accumulator : topicAccumulators.values()) remaining = Math.min(remaining, accumulator.remainingLinger());
+        for (MicroBatchAccumulator accumulator : partitionAccumulators.values()) remaining = Math.min(remaining, accumulator.remainingLinger());
+        return remaining;
+    }
+
+    /**
+     * 标记分区消息处理完成
+     *
+     * @param partition        分区
+     * @param partitionRecords 该分区下已处理的消息，按位移升序
+     */
+    private void markProcessed(TopicPartition partition, List<ConsumerRecord<String, byte[]>> partitionRecords) {
+        if (offsetCommitter == null || partitionRecords.isEmpty()) return;
+        offsetCommitter.markProcessed(partition, partitionRecords.get(partitionRecords.size() - 1).offset(), partitionRecords.size());
+    }
+
+    /**
+     * 按分区将消息提交到顺序处理通道或累积器，并暂停积压的分区
+     *
+     * @param records 分区与拉取到的消息
+     */
+    private void dispatchToLanes(Map<TopicPartition, List<ConsumerRecord<String, byte[]>>> records) {
+        List<TopicPartition> backlogged = new ArrayList<>();
+        for (Map.Entry<TopicPartition, List<ConsumerRecord<String, byte[]>>> entry : records.entrySet()) {
+            TopicPartition partition = entry.getKey();
+            List<ConsumerRecord<String, byte[]>> partitionRecords = entry.getValue();
+            HandlerDefinition definition = handlerDefinitions.get(partition.topic());
+            if (definition.isMicroBatch()) {
+                accumulate(partitionAccumulators.computeIfAbsent(partition, tp -> new MicroBatchAccumulator(definition)), partition, partitionRecords);
+            } else if (keyOrderedLanes > 1) {
+                dispatchByKey(definition, partition, partitionRecords);
+            } else {
+                long generation = rewinder.generation(partition);
+                lanes.computeIfAbsent(partition, tp -> new PartitionLane(tp.toString(), workerPool)).submit(() -> {
+                    // 分区已回退位移，回退位移之后的消息会重新拉取
+                    if (rewinder.isStale(partition, generation)) return;
+                    List<ConsumerRecord<String, byte[]>> accepted = filter(definition, partitionRecords);
+                    List<AdapterMessage> messages = new ArrayList<>(accepted.size());
+                    for (ConsumerRecord<String, byte[]> item : accepted) messages.add(new KafkaAdapterMessage(item));
+                    BatchResult result = messages.isEmpty() ? BatchResult.success() : consumeMessage(partition.topic(), messages);
+                    int firstFailure = result.firstFailure(0, accepted.size());
+                    if (firstFailure == accepted.size()) {
+                        markProcessed(partition, partitionRecords);
+                        return;
+                    }
+                    // 工作线程中不能回退位移，只标记到第一条失败消息之前，由拉取线程回退位移并暂停拉取
+                    markProcessed(partition, accepted.subList(0, firstFailure));
+                    rewinder.request(partition, generation, accepted.get(firstFailure).offset());
+                }, partitionRecords.size());
+            }
+            if (pending(partition) >= partitionMaxPending && pausedPartitions.add(partition)) backlogged.add(partition);
+        }
+        if (!backlogged.isEmpty()) {
+            kafkaConsumer.pause(backlogged);
+            logger.debug("分区积压，暂停拉取：{}", backlogged);
+        }
+    }
+
+    /**
+     * 按bizKey将同一分区的消息提交到key顺序处理通道，同一bizKey的消息在同一通道内按位移顺序处理，没有bizKey的消息进入第一个通道；
+     * 消息处理完成后由位移跟踪器推进可提交位移，被过滤掉的消息视为处理完成；
+     * 开启重试时失败的消息已转发到重试topic，视为处理完成；未开启重试时只完成处理成功的位移，
+     * 失败的消息在原通道中按指数退避重新处理，阻塞该通道中后续的消息以保证同一bizKey的顺序，直到处理成功、消费者停止或分区被释放
+     *
+     * @param definition       消息处理器定义
+     * @param partition        分区
+     * @param partitionRecords 该分区下拉取到的消息，按位移升序
+     */
+    private void dispatchByKey(HandlerDefinition definition, TopicPartition partition, List<ConsumerRecord<String, byte[]>> partitionRecords) {
+        OffsetTracker tracker = offsetTrackers.computeIfAbsent(partition, tp -> new OffsetTracker());
+        PartitionLane[] partitionLanes = keyLanes.computeIfAbsent(partition, tp -> {
+            PartitionLane[] created = new PartitionLane[keyOrderedLanes];
+            for (int i = 0; i < keyOrderedLanes; i++) created[i] = new PartitionLane(tp + Constants.HYPHEN + i, workerPool);
+            return created;
+        });
+        Map<Integer, List<ConsumerRecord<String, byte[]>>> laneRecords = new LinkedHashMap<>();
+        for (ConsumerRecord<String, byte[]> item : filter(definition, partitionRecords)) {
+            tracker.track(item.offset());
+            int index = item.key() == null ? 0 : (item.key().hashCode() & Integer.MAX_VALUE) % keyOrderedLanes;
+            laneRecords.computeIfAbsent(index, k -> new ArrayList<>()).add(item);
+        }
+        markCommittable(partition, tracker.skipTo(partitionRecords.get(partitionRecords.size() - 1).offset() + 1), 0);
+        long generation = rewinder.generation(partition);
+        for (Map.Entry<Integer, List<ConsumerRecord<String, byte[]>>> entry : laneRecords.entrySet()) {
+            List<ConsumerRecord<String, byte[]>> records = entry.getValue();
+            partitionLanes[entry.getKey()].submit(() -> consumeByKey(tracker, partition, generation, records), records.size());
+        }
+    }
+
+    /**
+     * 在key顺序处理通道中处理消息，只完成处理成功的位移，失败的消息退避后重新处理
+     *
+     * @param tracker    位移跟踪器
+     * @param partition  分区
+     * @param generation 提交任务时的分区代数，分区被释放后不再重新处理
+     * @param records    同一通道的消息，按位移升序
+     */
+    private void consumeByKey(OffsetTracker tracker, TopicPartition partition, long generation, List<ConsumerRecord<String, byte[]>> records) {
+        List<ConsumerRecord<String, byte[]>> remaining = records;
+        int attempts = 0;
+        while (!closed.get() && !rewinder.isStale(partition, generation)) {
+            List<AdapterMessage> messages = new ArrayList<>(remaining.size());
+            for (ConsumerRecord<String, byte[]> item : remaining) messages.add(new KafkaAdapterMessage(item));
+            BatchResult result = consumeMessage(partition.topic(), messages);
+            List<ConsumerRecord<String, byte[]>> failed = new ArrayList<>(result.failedCount());
+            long committable = -1;
+            for (int i = 0; i < remaining.size(); i++) {
+                if (result.isFailed(i)) failed.add(remaining.get(i));
+                else committable = Math.max(committable, tracker.complete(remaining.get(i).offset()));
+            }
+            markCommittable(partition, committable, remaining.size() - failed.size());
+            if (failed.isEmpty()) return;
+            remaining = failed;
+            attempts++;
+            long suspend = suspendTime << Math.min(attempts - 1, MAX_SUSPEND_SHIFT);
+            if (attempts < SUSPEND_ESCALATE_ATTEMPTS) {
+                logger.warn("按key顺序消费失败，{}毫秒后在原通道重新处理，分区：{}，第一条失败消息位移：{}，失败数量：{}，连续失败次数：{}", suspend, partition, failed.get(0).offset(), failed.size(), attempts);
+            } else {
+                logger.error("按key顺序消费持续失败，请检查消息处理器或开启重试，分区：{}，第一条失败消息位移：{}，失败数量：{}，连续失败次数：{}", partition, failed.get(0).offset(), failed.size(), attempts);
+            }
+            awaitStop(suspend);
+            // 工作线程池强制关闭时不再重新处理
+            if (Thread.currentThread().isInterrupted()) return;
+        }
+    }
+
+    /**
+     * 按位移跟踪器推进后的可提交位移标记处理完成
+     *
+     * @param partition   分区
+     * @param committable 可提交位移，为-1时表示未推进
+     * @param count       处理完成的消息数量
+     */
+    private void markCommittable(TopicPartition partition, long committable, int count) {
+        if (offsetCommitter == null || committable < 0) return;
+        offsetCommitter.markProcessed(partition, committable - 1, count);
+    }
+
+    /**
+     * 恢复积压已消化的分区，待处理消息降到上限的一半以下时恢复拉取
+     */
+    private void resumeDrainedPartitions() {
+        if (pausedPartitions.isEmpty()) return;
+        List<TopicPartition> drained = new ArrayList<>();
+        Iterator<TopicPartition> iterator = pausedPartitions.iterator();
+        while (iterator.hasNext()) {
+            TopicPartition partition = iterator.next();
+            if (pending(partition) <= partitionMaxPending / 2) {
+                iterator.remove();
+                // 重试消息未到期的分区由到期恢复逻辑负责恢复
+                if (!delayedPartitions.containsKey(partition)) drained.add(partition);
+            }
+        }
+        if (drained.isEmpty()) return;
+        // 只恢复仍分配给当前消费者的分区
+        drained.retainAll(kafkaConsumer.assignment());
+        kafkaConsumer.resume(drained);
+        logger.debug("分区积压已消化，恢复拉取：{}", drained);
+    }
 }
@@ -0,0 +1,198 @@
+package org.yinqin.mqs.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yinqin.mqs.common.Constants;
+import org.yinqin.mqs.common.config.MqsProperties.AdapterProperties.ConvertProperties;
+import org.yinqin.mqs.common.config.MqsProperties.AdapterProperties.CustomKafkaProperties.RetryProperties;
+import org.yinqin.mqs.common.entity.AdapterMessage;
+import org.yinqin.mqs.common.entity.MessageSendResult;
+import org.yinqin.mqs.common.handler.HandlerDefinition;
+import org.yinqin.mqs.common.service.MessageProducer;
+import org.yinqin.mqs.common.util.ConvertUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * kafka消费失败重试路由
+ * 消费失败的消息通过实例的生产者转发到分级重试topic，消息头中记录重试次数、原始位置和到期时间，
+ * 超过最大重试次数后转发到死信topic；重试topic与原始topic使用同一个消息处理器消费，
+ * 未到期的重试消息由拉取线程回退位移并暂停该重试分区，不会阻塞原始topic的消费
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see PollWorker
+ * @see RetryProperties
+ * @since 1.0.8
+ */
+public class RetryTopicRouter {
+
+    private final Logger logger = LoggerFactory.getLogger(RetryTopicRouter.class);
+
+    /**
+     * 已重试次数
+     */
+    public static final String RETRY_COUNT_HEADER = "mqs-retry-count";
+
+    /**
+     * 原始topic
+     */
+    public static final String ORIGIN_TOPIC_HEADER = "mqs-origin-topic";
+
+    /**
+     * 原始分区
+     */
+    public static final String ORIGIN_PARTITION_HEADER = "mqs-origin-partition";
+
+    /**
+     * 原始位移
+     */
+    public static final String ORIGIN_OFFSET_HEADER = "mqs-origin-offset";
+
+    /**
+     * 重试到期时间，毫秒时间戳
+     */
+    public static final String DUE_TIME_HEADER = "mqs-retry-due";
+
+    /**
+     * 实例ID
+     */
+    private final String instanceId;
+
+    /**
+     * 实例的生产者
+     */
+    private final MessageProducer producer;
+
+    /**
+     * 重试配置
+     */
+    private final RetryProperties retryProperties;
+
+    /**
+     * topic名称转换配置
+     */
+    private final ConvertProperties topicProperties;
+
+    /**
+     * 重试topic与原始topic的对应关系，启动时初始化，之后只读
+     */
+    private final Map<String, String> retryTopics = new HashMap<>();
+
+    public RetryTopicRouter(String instanceId, MessageProducer producer, RetryProperties retryProperties, ConvertProperties topicProperties) {
+        this.instanceId = instanceId;
+        this.producer = producer;
+        this.retryProperties = retryProperties;
+        this.topicProperties = topicProperties;
+    }
+
+    /**
+     * 为每个topic增加各级重试topic，重试topic与原始topic使用同一个消息处理器
+     *
+     * @param messageHandlers 消息处理器分发表
+     * @return 包含重试topic的消息处理器分发表
+     */
+    public Map<String, HandlerDefinition> expand(Map<String, HandlerDefinition> messageHandlers) {
+        Map<String, HandlerDefinition> expanded = new HashMap<>(messageHandlers);
+        messageHandlers.forEach((topic, definition) -> {
+            for (int i = 1; i <= retryProperties.getDelays().size(); i++) {
+                String retryTopic = retryTopic(topic, i);
+                retryTopics.put(retryTopic, topic);
+                expanded.put(retryTopic, definition);
+            }
+        });
+        return expanded;
+    }
+
+    /**
+     * @param topic 主题
+     * @return 是否为重试topic
+     */
+    public boolean isRetryTopic(String topic) {
+        return retryTopics.containsKey(topic);
+    }
+
+    /**
+     * 读取重试消息的到期时间
+     *
+     * @param consumerRecord kafka原生消息
+     * @return 到期时间，没有到期时间时返回0
+     */
+    public long dueTime(ConsumerRecord<String, byte[]> consumerRecord) {
+        Header header = consumerRecord.headers().lastHeader(DUE_TIME_HEADER);
+        if (header == null || header.value() == null) return 0;
+        try {
+            return Long.parseLong(new String(header.value(), StandardCharsets.UTF_8));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 将消费失败的消息按顺序同步转发到下一级重试topic或死信topic，转发成功的原消息视为处理完成；
+     * 任一条转发失败时停止转发，该消息及之后的消息仍视为处理失败，由调用方回退位移后重新消费
+     *
+     * @param messages 消费失败的消息
+     * @return 转发成功的消息数量，全部转发成功时等于消息数量
+     */
+    public int republish(List<AdapterMessage> messages) {
+        for (int i = 0; i < messages.size(); i++) {
+            AdapterMessage message = messages.get(i);
+            Map<String, String> headers = new HashMap<>(message.getHeaders());
+            int retryCount = parseInt(headers.get(RETRY_COUNT_HEADER)) + 1;
+            if (!headers.containsKey(ORIGIN_TOPIC_HEADER)) {
+                headers.put(ORIGIN_TOPIC_HEADER, message.getTopic());
+                if (message.getOriginMessage() instanceof ConsumerRecord) {
+                    ConsumerRecord<?, ?> consumerRecord = (ConsumerRecord<?, ?>) message.getOriginMessage();
+                    headers.put(ORIGIN_PARTITION_HEADER, String.valueOf(consumerRecord.partition()));
+                    headers.put(ORIGIN_OFFSET_HEADER, String.valueOf(consumerRecord.offset()));
+                }
+            }
+            String originTopic = headers.get(ORIGIN_TOPIC_HEADER);
+            String targetTopic;
+            if (retryCount <= retryProperties.getDelays().size()) {
+                targetTopic = retryTopic(originTopic, retryCount);
+                headers.put(DUE_TIME_HEADER, String.valueOf(System.currentTimeMillis() + retryProperties.getDelays().get(retryCount - 1)));
+            } else {
+                targetTopic = ConvertUtil.convertName(originTopic + retryProperties.getDlqSuffix(), topicProperties);
+                headers.remove(DUE_TIME_HEADER);
+            }
+            headers.put(RETRY_COUNT_HEADER, String.valueOf(retryCount));
+            AdapterMessage retryMessage = AdapterMessage.builder().topic(targetTopic).tag(message.getTag()).bizKey(message.getBizKey()).body(message.getBody()).headers(headers).build();
+            MessageSendResult result = producer.sendMessage(retryMessage);
+            if (result.getStatus() == Constants.SUCCESS) {
+                logger.warn("实例：{}，消费失败的消息已转发到：{}，原始topic：{}，原始位移：{}，重试次数：{}", instanceId, targetTopic, originTopic, headers.get(ORIGIN_OFFSET_HEADER), retryCount);
+            } else {
+                logger.error("实例：{}，消费失败的消息转发到{}失败，将回退位移后重新消费，原始topic：{}，原始位移：{}", instanceId, targetTopic, originTopic, headers.get(ORIGIN_OFFSET_HEADER), result.getThrowable());
+                return i;
+            }
+        }
+        return messages.size();
+    }
+
+    /**
+     * 计算重试topic名称
+     *
+     * @param topic      原始topic
+     * @param retryCount 重试次数
+     * @return 转换后的重试topic名称
+     */
+    private String retryTopic(String topic, int retryCount) {
+        return ConvertUtil.convertName(topic + retryProperties.getRetrySuffix() + retryCount, topicProperties);
+    }
+
+    private static int parseInt(String value) {
+        if (value == null) return 0;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
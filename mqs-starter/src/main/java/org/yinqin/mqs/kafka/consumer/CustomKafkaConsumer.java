@@ -8,11 +8,15 @@ import org.yinqin.mqs.common.Constants;
 import org.yinqin.mqs.common.service.MessageConsumer;
 import org.yinqin.mqs.kafka.PollWorker;
 
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
 /**
  * 自定义kafka消费者
  *
  * @author YinQin
- * @version 1.0.6
+ * @version 1.0.8
  * @createDate 2023年10月13日
  * @see MessageConsumer
  * @since 1.0.0
@@ -32,31 +36,60 @@ public class CustomKafkaConsumer implements MessageConsumer {
     private final String consumerType;
 
     /**
-     * 拉取消息工作线程
+     * 拉取消息工作线程集合，每个工作线程对应一个kafka原生消费者
      */
     @Getter
-    private final PollWorker pollWorker;
+    private final List<PollWorker> pollWorkers;
+
+    /**
+     * 消息处理线程池，未开启分区并行消费模式时为空
+     */
+    private final ExecutorService workerPool;
+
+    /**
+     * 停止时为提交位移和关闭消费者额外预留的时间，单位：毫秒
+     */
+    private static final long CLOSE_MARGIN = 10000;
 
-    public CustomKafkaConsumer(String instanceId, String consumerType, PollWorker pollWorker) {
+    public CustomKafkaConsumer(String instanceId, String consumerType, List<PollWorker> pollWorkers, ExecutorService workerPool) {
         this.instanceId = instanceId;
         this.consumerType = consumerType;
-        this.pollWorker = pollWorker;
+        this.pollWorkers = pollWorkers;
+        this.workerPool = workerPool;
     }
 
     /**
-     * 异步启动拉取消息工作线程
+     * 异步启动所有拉取消息工作线程
      */
     @Override
     public void start() {
-        ThreadUtil.newThread(pollWorker, instanceId + Constants.HYPHEN + consumerType + "-poll-worker").start();
+        for (int i = 0; i < pollWorkers.size(); i++) {
+            ThreadUtil.newThread(pollWorkers.get(i), instanceId + Constants.HYPHEN + consumerType + "-poll-worker-" + i).start();
+        }
     }
 
     /**
-     * 停止拉取消息工作线程
+     * 停止所有拉取消息工作线程
+     * 先唤醒所有拉取线程，再在限定时间内等待处理中的消息完成、位移提交和消费者关闭，最后关闭消息处理线程池
+     *
+     * @throws InterruptedException 等待时被中断
      */
     @Override
-    public void destroy() {
-        pollWorker.shutdown();
+    public void destroy() throws InterruptedException {
+        for (PollWorker pollWorker : pollWorkers) pollWorker.shutdown();
+        long shutdownTimeout = 0;
+        for (PollWorker pollWorker : pollWorkers) shutdownTimeout = Math.max(shutdownTimeout, pollWorker.getShutdownTimeout());
+        // 额外预留提交位移和关闭消费者的时间
+        long deadline = System.currentTimeMillis() + shutdownTimeout + CLOSE_MARGIN;
+        for (PollWorker pollWorker : pollWorkers) {
+            if (!pollWorker.awaitTermination(Math.max(0, deadline - System.currentTimeMillis()))) {
+                logger.warn("实例：{}，消费类型：{}，等待拉取线程停止超时", instanceId, consumerType);
+            }
+        }
+        if (workerPool != null) {
+            workerPool.shutdown();
+            if (!workerPool.awaitTermination(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) workerPool.shutdownNow();
+        }
         logger.info("实例：{}，消费类型：{}， 消费者停止成功，", instanceId, consumerType);
     }
 
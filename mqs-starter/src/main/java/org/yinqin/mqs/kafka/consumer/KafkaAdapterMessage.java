@@ -0,0 +1,160 @@
+package org.yinqin.mqs.kafka.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.yinqin.mqs.common.Constants;
+import org.yinqin.mqs.common.entity.AdapterMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * kafka消费消息视图
+ * 直接包装kafka原生消息，属性在读取时才从原生消息中获取，不复制消息内容；
+ * 消息头在第一次读取时才按UTF-8解码，tag从生产者写入的tag消息头中读取，该消息头不包含在getHeaders中；
+ * 调用任一setter时先将全部属性复制到消息自身（写时复制），之后读写复制后的属性，不影响原生消息；
+ * 消息头在复制前为只读集合，需要修改消息头时调用setHeaders或{@link AdapterMessage#toMutable()}
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see ConsumerRecord
+ * @since 1.0.8
+ */
+public class KafkaAdapterMessage extends AdapterMessage {
+
+    /**
+     * kafka原生消息
+     */
+    private final ConsumerRecord<String, byte[]> consumerRecord;
+
+    /**
+     * 解码后的消息头，第一次读取时初始化
+     */
+    private Map<String, String> decodedHeaders;
+
+    /**
+     * 是否已写时复制，复制后属性从父类字段读取
+     */
+    private boolean copied;
+
+    public KafkaAdapterMessage(ConsumerRecord<String, byte[]> consumerRecord) {
+        this.consumerRecord = consumerRecord;
+    }
+
+    @Override
+    public String getTopic() {
+        if (copied) return super.getTopic();
+        return consumerRecord.topic();
+    }
+
+    @Override
+    public String getTag() {
+        if (copied) return super.getTag();
+        Header header = consumerRecord.headers().lastHeader(Constants.KAFKA_TAG_HEADER);
+        return header == null || header.value() == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String getBizKey() {
+        if (copied) return super.getBizKey();
+        return consumerRecord.key();
+    }
+
+    @Override
+    public byte[] getBody() {
+        if (copied) return super.getBody();
+        return consumerRecord.value();
+    }
+
+    @Override
+    public Map<String, String> getHeaders() {
+        if (copied) return super.getHeaders();
+        if (decodedHeaders == null) {
+            Map<String, String> headers = new HashMap<>();
+            for (Header header : consumerRecord.headers()) {
+                // tag消息头只在内部使用，通过getTag读取
+                if (Constants.KAFKA_TAG_HEADER.equals(header.key())) continue;
+                headers.put(header.key(), header.value() == null ? null : new String(header.value(), StandardCharsets.UTF_8));
+            }
+            decodedHeaders = headers.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(headers);
+        }
+        return decodedHeaders;
+    }
+
+    @Override
+    public Object getOriginMessage() {
+        if (copied) return super.getOriginMessage();
+        return consumerRecord;
+    }
+
+    @Override
+    public void setTopic(String topic) {
+        copy();
+        super.setTopic(topic);
+    }
+
+    @Override
+    public void setTag(String tag) {
+        copy();
+        super.setTag(tag);
+    }
+
+    @Override
+    public void setBizKey(String bizKey) {
+        copy();
+        super.setBizKey(bizKey);
+    }
+
+    @Override
+    public void setBody(byte[] body) {
+        copy();
+        super.setBody(body);
+    }
+
+    @Override
+    public void setProcessTime(Long processTime) {
+        copy();
+        super.setProcessTime(processTime);
+    }
+
+    @Override
+    public void setMsgId(String msgId) {
+        copy();
+        super.setMsgId(msgId);
+    }
+
+    @Override
+    public void setConsumeTimes(int consumeTimes) {
+        copy();
+        super.setConsumeTimes(consumeTimes);
+    }
+
+    @Override
+    public void setHeaders(Map<String, String> headers) {
+        copy();
+        super.setHeaders(headers);
+    }
+
+    @Override
+    public void setOriginMessage(Object originMessage) {
+        copy();
+        super.setOriginMessage(originMessage);
+    }
+
+    /**
+     * 第一次修改前将原生消息中的属性复制到消息自身
+     */
+    private void copy() {
+        if (copied) return;
+        super.setTopic(getTopic());
+        super.setTag(getTag());
+        super.setBizKey(getBizKey());
+        super.setBody(getBody());
+        super.setHeaders(new HashMap<>(getHeaders()));
+        super.setOriginMessage(getOriginMessage());
+        copied = true;
+    }
+}
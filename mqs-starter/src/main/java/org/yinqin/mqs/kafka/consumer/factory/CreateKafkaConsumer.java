@@ -1,7 +1,12 @@
 package org.yinqin.mqs.kafka.consumer.factory;
 
+import cn.hutool.core.net.NetUtil;
+import cn.hutool.core.thread.ThreadUtil;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.kafka.clients.CommonClientConfigs;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.CooperativeStickyAssignor;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.common.serialization.ByteArrayDeserializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
@@ -9,18 +14,27 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.yinqin.mqs.common.Constants;
 import org.yinqin.mqs.common.config.MqsProperties;
-import org.yinqin.mqs.common.handler.MessageHandler;
+import org.yinqin.mqs.common.handler.HandlerDefinition;
+import org.yinqin.mqs.common.service.MessageProducer;
 import org.yinqin.mqs.common.util.ConvertUtil;
+import org.yinqin.mqs.kafka.PollWorker;
+import org.yinqin.mqs.kafka.RetryTopicRouter;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * 创建kafka消费者公共方法
  *
  * @author YinQin
- * @version 1.0.6
+ * @version 1.0.8
  * @createDate 2023年11月30日
  * @since 1.0.6
  */
@@ -33,13 +47,37 @@ public interface CreateKafkaConsumer {
      *
      * @param kafkaProperties kafka配置
      * @param properties      mqs配置
+     * @param messageHandlers 消息处理器
      */
-    default void init(Properties kafkaProperties, MqsProperties.AdapterProperties properties) {
+    default void init(Properties kafkaProperties, MqsProperties.AdapterProperties properties, Map<String, HandlerDefinition> messageHandlers) {
         kafkaProperties.putAll(properties.getKafka().getClientConfig());
         kafkaProperties.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
         kafkaProperties.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
         kafkaProperties.put(ConsumerConfig.CLIENT_ID_CONFIG, UUID.randomUUID().toString().replace(Constants.HYPHEN, Constants.EMPTY).substring(0, 8));
-        kafkaProperties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, Constants.TRUE);
+        kafkaProperties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, isManualCommit(properties, messageHandlers) ? Constants.FALSE : Constants.TRUE);
+        if (properties.getKafka().isCooperativeRebalance()) {
+            kafkaProperties.put(ConsumerConfig.PARTITION_ASSIGNMENT_STRATEGY_CONFIG, CooperativeStickyAssignor.class.getName());
+        }
+        for (HandlerDefinition definition : messageHandlers.values()) {
+            if (StringUtils.isNotBlank(definition.getSqlExpression())) {
+                logger.warn("kafka不支持SQL92过滤，topic：{}，忽略过滤表达式：{}，只按tag过滤", definition.getTopic(), definition.getSqlExpression());
+            }
+        }
+    }
+
+    /**
+     * 是否手动提交位移，分区并行消费模式或跨拉取累积消息时消息延后处理，必须手动提交位移
+     *
+     * @param properties      mqs配置
+     * @param messageHandlers 消息处理器
+     * @return 是否手动提交位移
+     */
+    default boolean isManualCommit(MqsProperties.AdapterProperties properties, Map<String, HandlerDefinition> messageHandlers) {
+        if (properties.getKafka().isManualCommit() || properties.getKafka().getWorkerThreads() > 0) return true;
+        for (HandlerDefinition definition : messageHandlers.values()) {
+            if (definition.isMicroBatch()) return true;
+        }
+        return false;
     }
 
     /**
@@ -49,9 +87,10 @@ public interface CreateKafkaConsumer {
      * @param instanceId      实例ID
      * @param groupName       消费组名称
      * @param messageHandlers 消息处理器
+     * @param listener        再均衡监听器
      */
-    default void subscribe(KafkaConsumer<String, byte[]> kafkaConsumer, String instanceId, String groupName, Map<String, MessageHandler> messageHandlers) {
-        kafkaConsumer.subscribe(messageHandlers.keySet());
+    default void subscribe(KafkaConsumer<String, byte[]> kafkaConsumer, String instanceId, String groupName, Map<String, HandlerDefinition> messageHandlers, ConsumerRebalanceListener listener) {
+        kafkaConsumer.subscribe(messageHandlers.keySet(), listener);
         for (String topic : messageHandlers.keySet()) {
             logger.info("实例：{} 消费者启动中，消费组：{}，订阅Topic：{}", instanceId, groupName, topic);
         }
@@ -71,4 +110,95 @@ public interface CreateKafkaConsumer {
         // 创建kafka原生消费者
         return new KafkaConsumer<>(kafkaProperties);
     }
+
+    /**
+     * 创建消息处理线程池，未开启分区并行消费模式时返回空
+     *
+     * @param instanceId   实例ID
+     * @param consumerType 消费类型
+     * @param properties   mqs配置
+     * @return 消息处理线程池
+     */
+    default ExecutorService createWorkerPool(String instanceId, String consumerType, MqsProperties.AdapterProperties properties) {
+        int workerThreads = properties.getKafka().getWorkerThreads();
+        int keyOrderedLanes = properties.getKafka().getKeyOrderedLanes();
+        if (workerThreads <= 0) {
+            if (keyOrderedLanes > 1) logger.warn("实例：{}，未配置消息处理线程数，按key顺序消费不生效", instanceId);
+            return null;
+        }
+        logger.info("实例：{}，消费类型：{}，开启分区并行消费模式，工作线程数：{}", instanceId, consumerType, workerThreads);
+        if (keyOrderedLanes > 1) logger.info("实例：{}，消费类型：{}，开启按key顺序消费，单个分区通道数：{}", instanceId, consumerType, keyOrderedLanes);
+        return Executors.newFixedThreadPool(workerThreads, ThreadUtil.newNamedThreadFactory(instanceId + Constants.HYPHEN + consumerType + "-worker-", false));
+    }
+
+    /**
+     * 创建重试路由，未开启重试或实例未开启生产者时返回空
+     *
+     * @param instanceId    实例ID
+     * @param properties    mqs配置
+     * @param retryProducer 实例的生产者
+     * @return 重试路由
+     */
+    default RetryTopicRouter createRetryRouter(String instanceId, MqsProperties.AdapterProperties properties, MessageProducer retryProducer) {
+        if (!properties.getKafka().getRetry().isEnabled()) return null;
+        if (retryProducer == null) {
+            logger.warn("实例：{} 未开启生产者，消费失败重试不生效", instanceId);
+            return null;
+        }
+        return new RetryTopicRouter(instanceId, retryProducer, properties.getKafka().getRetry(), properties.getTopic());
+    }
+
+    /**
+     * 静态成员group.instance.id前缀，未配置前缀时取本机主机名
+     *
+     * @param instanceId 实例ID
+     * @param properties mqs配置
+     * @return 前缀-实例ID
+     */
+    default String getGroupInstancePrefix(String instanceId, MqsProperties.AdapterProperties properties) {
+        String prefix = properties.getKafka().getGroupInstancePrefix();
+        if (StringUtils.isBlank(prefix)) prefix = NetUtil.getLocalHostName();
+        return prefix + Constants.HYPHEN + instanceId;
+    }
+
+    /**
+     * 按并发数创建同一消费组下的多个kafka原生消费者及其拉取消息工作线程
+     * 并发数优先取消息处理器注解中的配置，未配置时取实例配置，并发数相同的消息处理器共用消费者
+     *
+     * @param instanceId      实例ID
+     * @param groupName       消费组名称
+     * @param properties      mqs配置
+     * @param kafkaProperties 初始化后的kafka配置
+     * @param messageHandlers 消息处理器
+     * @param workerPool      消息处理线程池
+     * @param retryRouter     重试路由，未开启重试时为空
+     * @return 拉取消息工作线程集合
+     */
+    default List<PollWorker> createPollWorkers(String instanceId, String groupName, MqsProperties.AdapterProperties properties, Properties kafkaProperties, Map<String, HandlerDefinition> messageHandlers, ExecutorService workerPool, RetryTopicRouter retryRouter) {
+        Map<Integer, Map<String, HandlerDefinition>> concurrencyHandlers = new TreeMap<>();
+        messageHandlers.forEach((topic, definition) -> {
+            int concurrency = definition.getConcurrency();
+            if (concurrency <= 0) concurrency = properties.getKafka().getConcurrency();
+            concurrencyHandlers.computeIfAbsent(Math.max(1, concurrency), key -> new HashMap<>()).put(topic, definition);
+        });
+        List<PollWorker> pollWorkers = new ArrayList<>();
+        String clientId = kafkaProperties.getProperty(ConsumerConfig.CLIENT_ID_CONFIG);
+        String groupInstancePrefix = properties.getKafka().isStaticMembership() ? getGroupInstancePrefix(instanceId, properties) : null;
+        concurrencyHandlers.forEach((concurrency, handlers) -> {
+            logger.info("实例：{} 消费者启动中，消费组：{}，并发数：{}，订阅Topic：{}", instanceId, groupName, concurrency, handlers.keySet());
+            for (int i = 0; i < concurrency; i++) {
+                Properties consumerProperties = new Properties();
+                consumerProperties.putAll(kafkaProperties);
+                consumerProperties.put(ConsumerConfig.CLIENT_ID_CONFIG, clientId + Constants.HYPHEN + pollWorkers.size());
+                if (groupInstancePrefix != null) {
+                    consumerProperties.put(ConsumerConfig.GROUP_INSTANCE_ID_CONFIG, groupInstancePrefix + Constants.HYPHEN + pollWorkers.size());
+                }
+                KafkaConsumer<String, byte[]> kafkaConsumer = createKafkaConsumer(groupName, properties, consumerProperties);
+                PollWorker pollWorker = new PollWorker(kafkaConsumer, handlers, properties.getKafka(), workerPool, isManualCommit(properties, messageHandlers), retryRouter);
+                subscribe(kafkaConsumer, instanceId, groupName, handlers, pollWorker.rebalanceListener());
+                pollWorkers.add(pollWorker);
+            }
+        });
+        return pollWorkers;
+    }
 }
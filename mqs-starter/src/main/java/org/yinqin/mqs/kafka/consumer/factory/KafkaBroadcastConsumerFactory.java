@@ -5,13 +5,17 @@ import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.yinqin.mqs.common.Constants;
 import org.yinqin.mqs.common.config.MqsProperties;
 import org.yinqin.mqs.common.factory.ConsumerFactory;
-import org.yinqin.mqs.common.handler.MessageHandler;
+import org.yinqin.mqs.common.handler.HandlerDefinition;
 import org.yinqin.mqs.common.service.MessageConsumer;
+import org.yinqin.mqs.kafka.LocalOffsetStore;
 import org.yinqin.mqs.kafka.PollWorker;
 import org.yinqin.mqs.kafka.consumer.CustomKafkaConsumer;
 
+import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
 
 /**
  * kafka广播消费者工厂类
@@ -20,24 +24,34 @@ import java.util.Properties;
  * @createDate 2023年11月27日
  * @since 1.0.6
  * @see ConsumerFactory
- * @version 1.0.6
+ * @version 1.0.8
  */
 public class KafkaBroadcastConsumerFactory extends ConsumerFactory implements CreateKafkaConsumer {
+
+    /**
+     * 本地位移文件后缀
+     */
+    private static final String BROADCAST_OFFSET_FILE_SUFFIX = "-broadcast.offsets";
+
     @Override
-    public MessageConsumer createConsumer(String instanceId, MqsProperties.AdapterProperties properties, Map<String, MessageHandler> messageHandlers) {
+    public MessageConsumer createConsumer(String instanceId, MqsProperties.AdapterProperties properties, Map<String, HandlerDefinition> messageHandlers) {
         Properties kafkaProperties = new Properties();
-        init(kafkaProperties, properties);
-        // 设置消费组名称
-        String groupName = properties.getGroupName();
-        groupName += Constants.BROADCAST_CONNECTOR + kafkaProperties.getProperty(ConsumerConfig.CLIENT_ID_CONFIG);
+        init(kafkaProperties, properties, messageHandlers);
+        // 广播消费不使用消费组，位移由本地位移存储管理
+        kafkaProperties.remove(ConsumerConfig.GROUP_ID_CONFIG);
+        kafkaProperties.remove(ConsumerConfig.GROUP_INSTANCE_ID_CONFIG);
+        kafkaProperties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, Constants.FALSE);
         // 创建kafka原生消费者
-        KafkaConsumer<String, byte[]> kafkaConsumer = createKafkaConsumer(groupName, properties, kafkaProperties);
-        // 订阅topic
-        subscribe(kafkaConsumer, instanceId, groupName, messageHandlers);
-        // 创建拉取消息工作线程
-        PollWorker pollWorker = new PollWorker(kafkaConsumer, messageHandlers, properties.getKafka().getInterval());
+        KafkaConsumer<String, byte[]> kafkaConsumer = new KafkaConsumer<>(kafkaProperties);
+        // 打开本地位移存储
+        LocalOffsetStore localOffsetStore = new LocalOffsetStore(Paths.get(properties.getKafka().getBroadcastOffsetDir(), instanceId + BROADCAST_OFFSET_FILE_SUFFIX));
+        // 创建消息处理线程池
+        ExecutorService workerPool = createWorkerPool(instanceId, Constants.BROADCAST, properties);
+        // 创建拉取消息工作线程，启动后分配订阅topic的全部分区
+        PollWorker pollWorker = new PollWorker(kafkaConsumer, messageHandlers, properties.getKafka(), workerPool, localOffsetStore);
+        logger.info("实例：{} 广播消费者启动中，订阅Topic：{}", instanceId, messageHandlers.keySet());
         // 创建自定义消费者
-        return new CustomKafkaConsumer(instanceId, Constants.BROADCAST, pollWorker);
+        return new CustomKafkaConsumer(instanceId, Constants.BROADCAST, Collections.singletonList(pollWorker), workerPool);
     }
 
 }
@@ -1,17 +1,20 @@
 package org.yinqin.mqs.kafka.consumer.factory;
 
 import org.apache.kafka.clients.consumer.ConsumerConfig;
-import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.yinqin.mqs.common.Constants;
 import org.yinqin.mqs.common.config.MqsProperties;
 import org.yinqin.mqs.common.factory.ConsumerFactory;
-import org.yinqin.mqs.common.handler.MessageHandler;
+import org.yinqin.mqs.common.handler.HandlerDefinition;
 import org.yinqin.mqs.common.service.MessageConsumer;
+import org.yinqin.mqs.common.service.MessageProducer;
 import org.yinqin.mqs.kafka.PollWorker;
+import org.yinqin.mqs.kafka.RetryTopicRouter;
 import org.yinqin.mqs.kafka.consumer.CustomKafkaConsumer;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
 
 /**
  * kafka事务消费者工厂类
@@ -20,27 +23,41 @@ import java.util.Properties;
  * @createDate 2023年11月27日
  * @since 1.0.6
  * @see ConsumerFactory
- * @version 1.0.6
+ * @version 1.0.8
  */
 public class KafkaTranConsumerFactory extends ConsumerFactory implements CreateKafkaConsumer {
 
+    /**
+     * 转发消费失败消息的实例生产者，为空时不开启重试
+     */
+    private final MessageProducer retryProducer;
+
+    public KafkaTranConsumerFactory() {
+        this(null);
+    }
+
+    public KafkaTranConsumerFactory(MessageProducer retryProducer) {
+        this.retryProducer = retryProducer;
+    }
+
     @Override
-    public MessageConsumer createConsumer(String instanceId, MqsProperties.AdapterProperties properties, Map<String, MessageHandler> messageHandlers) {
+    public MessageConsumer createConsumer(String instanceId, MqsProperties.AdapterProperties properties, Map<String, HandlerDefinition> messageHandlers) {
+        // 开启重试时订阅各级重试topic
+        RetryTopicRouter retryRouter = createRetryRouter(instanceId, properties, retryProducer);
+        if (retryRouter != null) messageHandlers = retryRouter.expand(messageHandlers);
         // 初始化配置
         Properties kafkaProperties = new Properties();
-        init(kafkaProperties, properties);
+        init(kafkaProperties, properties, messageHandlers);
         // 设置消费模式为单条消费
         kafkaProperties.setProperty(ConsumerConfig.CLIENT_ID_CONFIG, "1");
         // 设置消费组名称
         String groupName = properties.getGroupName();
-        // 创建kafka原生消费者
-        KafkaConsumer<String, byte[]> kafkaConsumer = createKafkaConsumer(groupName, properties, kafkaProperties);
-        // 订阅topic
-        subscribe(kafkaConsumer, instanceId, groupName, messageHandlers);
-        // 创建拉取消息工作线程
-        PollWorker pollWorker = new PollWorker(kafkaConsumer, messageHandlers, properties.getKafka().getInterval());
+        // 创建消息处理线程池
+        ExecutorService workerPool = createWorkerPool(instanceId, Constants.TRAN, properties);
+        // 按并发数创建kafka原生消费者、拉取消息工作线程并订阅topic
+        List<PollWorker> pollWorkers = createPollWorkers(instanceId, groupName, properties, kafkaProperties, messageHandlers, workerPool, retryRouter);
         // 创建自定义消费者
-        return new CustomKafkaConsumer(instanceId, Constants.TRAN, pollWorker);
+        return new CustomKafkaConsumer(instanceId, Constants.TRAN, pollWorkers, workerPool);
     }
 
 }
@@ -0,0 +1,60 @@
+package org.yinqin.mqs.kafka.producer;
+
+import org.apache.kafka.clients.producer.Partitioner;
+import org.apache.kafka.clients.producer.internals.DefaultPartitioner;
+import org.apache.kafka.common.Cluster;
+import org.yinqin.mqs.common.partitioner.BizKeyPartitioner;
+
+import java.util.Map;
+
+/**
+ * 按业务键分区策略选择分区的kafka分区器
+ * 有bizKey的消息按实例配置的分区策略选择分区，与rocketmq选择队列使用相同的策略；
+ * 没有bizKey的消息交给kafka默认分区器
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see BizKeyPartitioner
+ * @since 1.0.8
+ */
+public class BizKeyKafkaPartitioner implements Partitioner {
+
+    /**
+     * 传递分区策略名称的生产者配置项
+     */
+    public static final String PARTITIONER_CONFIG = "mqs.biz-key.partitioner";
+
+    /**
+     * 没有bizKey时使用的kafka默认分区器
+     */
+    private final DefaultPartitioner defaultPartitioner = new DefaultPartitioner();
+
+    /**
+     * 业务键分区策略
+     */
+    private BizKeyPartitioner partitioner;
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+        Object name = configs.get(PARTITIONER_CONFIG);
+        partitioner = BizKeyPartitioner.of(name == null ? null : name.toString());
+        defaultPartitioner.configure(configs);
+    }
+
+    @Override
+    public int partition(String topic, Object key, byte[] keyBytes, Object value, byte[] valueBytes, Cluster cluster) {
+        if (key == null || partitioner == null) return defaultPartitioner.partition(topic, key, keyBytes, value, valueBytes, cluster);
+        return partitioner.partition(key.toString(), cluster.partitionsForTopic(topic).size());
+    }
+
+    @Override
+    public void onNewBatch(String topic, Cluster cluster, int prevPartition) {
+        defaultPartitioner.onNewBatch(topic, cluster, prevPartition);
+    }
+
+    @Override
+    public void close() {
+        defaultPartitioner.close();
+    }
+}
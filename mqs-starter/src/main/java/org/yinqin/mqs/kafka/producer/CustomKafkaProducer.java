@@ -12,18 +12,25 @@ import org.yinqin.mqs.common.config.MqsProperties.AdapterProperties;
 import org.yinqin.mqs.common.entity.AdapterMessage;
 import org.yinqin.mqs.common.entity.MessageCallback;
 import org.yinqin.mqs.common.entity.MessageSendResult;
+import org.yinqin.mqs.common.partitioner.BizKeyPartitioner;
 import org.yinqin.mqs.common.service.MessageProducer;
 import org.yinqin.mqs.common.util.ConvertUtil;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * 自定义kafka生产者
  *
  * @author YinQin
- * @version 1.0.6
+ * @version 1.0.8
  * @createDate 2023年10月13日
  * @see MessageProducer
  * @since 1.0.0
@@ -34,6 +41,11 @@ public class CustomKafkaProducer implements MessageProducer {
 
     private static final String ERROR_MESSAGE = "同步消息发送失败，失败原因：";
 
+    /**
+     * 同步发送消息和批量发送消息的等待时间，单位：毫秒
+     */
+    private static final long SEND_TIMEOUT = 3000;
+
     /**
      * 实例ID
      */
@@ -49,9 +61,19 @@ public class CustomKafkaProducer implements MessageProducer {
      */
     private final AdapterProperties kafkaProperties;
 
+    /**
+     * 生产者在生产者池中的序号，不在池中时为-1
+     */
+    private final int poolIndex;
+
     public CustomKafkaProducer(String instanceId, AdapterProperties kafkaProperties) {
+        this(instanceId, kafkaProperties, -1);
+    }
+
+    public CustomKafkaProducer(String instanceId, AdapterProperties kafkaProperties, int poolIndex) {
         this.instanceId = instanceId;
         this.kafkaProperties = kafkaProperties;
+        this.poolIndex = poolIndex;
     }
 
     /**
@@ -63,6 +85,18 @@ public class CustomKafkaProducer implements MessageProducer {
         Properties properties = kafkaProperties.getKafka().getClientConfig();
         properties.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
         properties.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
+        if (!BizKeyPartitioner.LEGACY.equals(kafkaProperties.getPartitioner())) {
+            // 校验分区策略，再交给kafka客户端创建分区器
+            BizKeyPartitioner.of(kafkaProperties.getPartitioner());
+            properties.put(ProducerConfig.PARTITIONER_CLASS_CONFIG, BizKeyKafkaPartitioner.class.getName());
+            properties.put(BizKeyKafkaPartitioner.PARTITIONER_CONFIG, kafkaProperties.getPartitioner());
+        }
+        String clientId = properties.getProperty(ProducerConfig.CLIENT_ID_CONFIG);
+        if (poolIndex >= 0 && clientId != null) {
+            // 生产者池中的生产者使用不同的client.id，避免指标和日志冲突
+            properties = (Properties) properties.clone();
+            properties.put(ProducerConfig.CLIENT_ID_CONFIG, clientId + Constants.HYPHEN + poolIndex);
+        }
         kafkaProducer = new org.apache.kafka.clients.producer.KafkaProducer<>(properties);
         logger.info("实例：{} 生产者启动中成功", instanceId);
     }
@@ -79,8 +113,7 @@ public class CustomKafkaProducer implements MessageProducer {
         MessageSendResult messageSendResult = new MessageSendResult();
         try {
             Future<RecordMetadata> future = kafkaProducer.send(producerRecord);
-            future.get(3000, TimeUnit.MILLISECONDS);
-            messageSendResult.setStatus(Constants.SUCCESS);
+            fillSendResult(messageSendResult, future.get(SEND_TIMEOUT, TimeUnit.MILLISECONDS));
         } catch (InterruptedException e) {
             // 恢复中断状态
             Thread.currentThread().interrupt();
@@ -109,8 +142,7 @@ public class CustomKafkaProducer implements MessageProducer {
         MessageSendResult messageSendResult = new MessageSendResult();
         try {
             Future<RecordMetadata> future = kafkaProducer.send(producerRecord);
-            future.get(timeout, unit);
-            messageSendResult.setStatus(Constants.SUCCESS);
+            fillSendResult(messageSendResult, future.get(timeout, unit));
         } catch (InterruptedException e) {
             // 恢复中断状态
             Thread.currentThread().interrupt();
@@ -137,14 +169,72 @@ public class CustomKafkaProducer implements MessageProducer {
         try {
             kafkaProducer.send(producerRecord, (recordMetadata, e) -> {
                 if (callback == null) return;
-                if (e == null) callback.onSuccess();
-                else callback.onError(e);
+                if (e != null) {
+                    callback.onError(e);
+                    return;
+                }
+                MessageSendResult messageSendResult = new MessageSendResult();
+                fillSendResult(messageSendResult, recordMetadata);
+                callback.onSuccess(messageSendResult);
             });
         } catch (Exception e) {
             logger.error("异步消息发送失败，失败原因：", e);
+            if (callback != null) callback.onError(e);
         }
     }
 
+    /**
+     * 批量发送消息方法
+     * 所有消息连续交给kafka客户端，由客户端按分区合并为批量请求，再通过一个聚合结果等待全部消息发送完成，最多等待{@link #SEND_TIMEOUT}毫秒
+     *
+     * @param messages 消息集合
+     * @return 与消息顺序一致的发送结果，超时未完成的消息视为发送失败
+     */
+    @Override
+    public List<MessageSendResult> sendBatch(List<AdapterMessage> messages) {
+        List<CompletableFuture<MessageSendResult>> futures = new ArrayList<>(messages.size());
+        for (AdapterMessage message : messages) futures.add(sendAsync(message));
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(SEND_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            // 恢复中断状态
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // 部分消息发送失败或超时，逐条收集结果
+        }
+        List<MessageSendResult> results = new ArrayList<>(messages.size());
+        for (CompletableFuture<MessageSendResult> future : futures) {
+            MessageSendResult messageSendResult;
+            try {
+                messageSendResult = future.getNow(null);
+            } catch (CompletionException e) {
+                messageSendResult = new MessageSendResult();
+                messageSendResult.setStatus(Constants.ERROR);
+                messageSendResult.setThrowable(e.getCause());
+            }
+            if (messageSendResult == null) {
+                messageSendResult = new MessageSendResult();
+                messageSendResult.setStatus(Constants.ERROR);
+                messageSendResult.setThrowable(new TimeoutException("批量消息发送超时"));
+            }
+            results.add(messageSendResult);
+        }
+        return results;
+    }
+
+    /**
+     * 根据kafka发送结果填充消息发送结果
+     *
+     * @param messageSendResult 消息发送结果
+     * @param recordMetadata    kafka发送结果
+     */
+    private void fillSendResult(MessageSendResult messageSendResult, RecordMetadata recordMetadata) {
+        messageSendResult.setStatus(Constants.SUCCESS);
+        messageSendResult.setTopic(recordMetadata.topic());
+        messageSendResult.setPartition(recordMetadata.partition());
+        messageSendResult.setOffset(recordMetadata.hasOffset() ? recordMetadata.offset() : -1);
+    }
+
     /**
      * 注销kafka生产者
      */
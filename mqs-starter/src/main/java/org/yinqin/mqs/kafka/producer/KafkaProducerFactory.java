@@ -8,7 +8,7 @@ import org.yinqin.mqs.common.service.MessageProducer;
  * Kafka生产者工厂类
  *
  * @author YinQin
- * @version 1.0.6
+ * @version 1.0.8
  * @createDate 2023年11月27日
  * @see ProducerFactory
  * @since 1.0.6
@@ -18,4 +18,9 @@ public class KafkaProducerFactory extends ProducerFactory {
     public MessageProducer createProducer(String instanceId, MqsProperties.AdapterProperties kafkaProperties) {
         return new CustomKafkaProducer(instanceId, kafkaProperties);
     }
+
+    @Override
+    protected MessageProducer createProducer(String instanceId, MqsProperties.AdapterProperties kafkaProperties, int poolIndex) {
+        return new CustomKafkaProducer(instanceId, kafkaProperties, poolIndex);
+    }
 }
@@ -0,0 +1,84 @@
+package org.yinqin.mqs.rocketmq;
+
+import org.apache.rocketmq.client.consumer.MessageQueueListener;
+import org.apache.rocketmq.client.impl.FindBrokerResult;
+import org.apache.rocketmq.client.impl.factory.MQClientInstance;
+import org.apache.rocketmq.common.MixAll;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.apache.rocketmq.remoting.common.RemotingHelper;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 消费队列分配记录
+ * 包装litePull消费者的队列变更监听器，记录每个topic当前分配给消费者的队列，
+ * 并根据消息的topic、队列ID和存储地址找到消息所属的队列，队列已不再分配给当前消费者时返回空
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see PullWorker
+ * @see MessageQueueListener
+ * @since 1.0.8
+ */
+public class AssignedQueues implements MessageQueueListener {
+
+    /**
+     * 源生队列变更监听器
+     */
+    private final MessageQueueListener delegate;
+
+    /**
+     * rocketmq客户端实例，用于查询broker地址
+     */
+    private final MQClientInstance clientInstance;
+
+    /**
+     * 各topic分配给当前消费者的队列，由再均衡线程写入
+     */
+    private final Map<String, Set<MessageQueue>> topicQueues = new ConcurrentHashMap<>();
+
+    public AssignedQueues(MessageQueueListener delegate, MQClientInstance clientInstance) {
+        this.delegate = delegate;
+        this.clientInstance = clientInstance;
+    }
+
+    @Override
+    public void messageQueueChanged(String topic, Set<MessageQueue> mqAll, Set<MessageQueue> mqDivided) {
+        delegate.messageQueueChanged(topic, mqAll, mqDivided);
+        topicQueues.put(topic, new HashSet<>(mqDivided));
+    }
+
+    /**
+     * 查找消息所属的队列，多个broker上存在相同队列ID时按消息存储地址匹配broker
+     *
+     * @param msg rocketmq原生消息
+     * @return 消息所属的队列，队列已不再分配给当前消费者时返回空
+     */
+    public MessageQueue resolve(MessageExt msg) {
+        Set<MessageQueue> queues = topicQueues.get(msg.getTopic());
+        if (queues == null) return null;
+        MessageQueue matched = null;
+        boolean ambiguous = false;
+        for (MessageQueue queue : queues) {
+            if (queue.getQueueId() != msg.getQueueId()) continue;
+            if (matched != null) {
+                ambiguous = true;
+                break;
+            }
+            matched = queue;
+        }
+        if (!ambiguous) return matched;
+        String storeHost = RemotingHelper.parseSocketAddressAddr(msg.getStoreHost());
+        for (MessageQueue queue : queues) {
+            if (queue.getQueueId() != msg.getQueueId()) continue;
+            FindBrokerResult broker = clientInstance.findBrokerAddressInSubscribe(queue.getBrokerName(), MixAll.MASTER_ID, true);
+            if (broker != null && storeHost.equals(broker.getBrokerAddr())) return queue;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,325 @@
+package org.yinqin.mqs.rocketmq;
+
+import org.apache.rocketmq.client.consumer.DefaultLitePullConsumer;
+import org.apache.rocketmq.client.consumer.store.OffsetStore;
+import org.apache.rocketmq.client.exception.MQClientException;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yinqin.mqs.common.config.MqsProperties.AdapterProperties.CustomRocketmqProperties;
+import org.yinqin.mqs.common.entity.AdapterMessage;
+import org.yinqin.mqs.common.handler.BatchResult;
+import org.yinqin.mqs.common.handler.HandlerDefinition;
+import org.yinqin.mqs.rocketmq.consumer.RocketmqAdapterMessage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * litePull拉取消息工作线程
+ * 合并多次拉取的结果，每次最多交给消息处理器pollBatchSize条消息；
+ * 批量消息处理器按topic一次处理本轮拉取的全部消息，失败时回退本轮涉及的所有队列，
+ * 支持部分确认的批量消息处理器只回退到各队列第一条失败的消息；
+ * 单条消息处理器按队列顺序逐条处理，失败时回退到失败的消息，该队列后续消息不再处理；
+ * 回退的队列暂停拉取suspendTime毫秒后恢复，重新拉取失败的消息；
+ * 每轮处理完成后只更新本地位移存储中已处理完成的位移，回退的队列只更新到失败消息之前；
+ * 位移由rocketmq客户端按persistConsumerOffsetInterval定时批量持久化，队列被回收时和消费者关闭时同步持久化；
+ * 拉取按较短的时间片等待，停止时最多一个时间片后退出拉取
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see Runnable
+ * @see AssignedQueues
+ * @since 1.0.8
+ */
+public class PullWorker implements Runnable {
+
+    private final Logger logger = LoggerFactory.getLogger(PullWorker.class);
+
+    /**
+     * 线程停止标记
+     */
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    /**
+     * 拉取线程结束信号
+     */
+    private final CountDownLatch terminated = new CountDownLatch(1);
+
+    /**
+     * rocketmq源生litePull消费者
+     */
+    private final DefaultLitePullConsumer consumer;
+
+    /**
+     * 位移存储，由拉取线程显式更新，rocketmq客户端定时、队列被回收时和关闭时持久化
+     */
+    private final OffsetStore offsetStore;
+
+    /**
+     * 消费队列分配记录
+     */
+    private final AssignedQueues assignedQueues;
+
+    /**
+     * 消息处理器分发表
+     */
+    private final Map<String, HandlerDefinition> handlerDefinitions;
+
+    /**
+     * 每次交给消息处理器的消息数量上限
+     */
+    private final int pollBatchSize;
+
+    /**
+     * 拉取超时时间，单位：毫秒
+     */
+    private final long pollTimeout;
+
+    /**
+     * 消费失败后暂停拉取该队列的时间，单位：毫秒
+     */
+    private final long suspendTime;
+
+    /**
+     * 因消费失败而暂停拉取的队列及恢复时间，仅在拉取线程中访问
+     */
+    private final Map<MessageQueue, Long> suspendedQueues = new HashMap<>();
+
+    /**
+     * 合并拉取结果时，本地缓存中没有消息后等待的时间，单位：毫秒
+     */
+    private static final long MERGE_POLL_TIMEOUT = 10;
+
+    /**
+     * 单次等待消息的最长时间，停止时最多等待一个时间片，单位：毫秒
+     */
+    private static final long POLL_SLICE = 100;
+
+    public PullWorker(DefaultLitePullConsumer consumer, OffsetStore offsetStore, AssignedQueues assignedQueues, Map<String, HandlerDefinition> handlerDefinitions, CustomRocketmqProperties rocketmqProperties) {
+        this.consumer = consumer;
+        this.offsetStore = offsetStore;
+        this.assignedQueues = assignedQueues;
+        this.handlerDefinitions = handlerDefinitions;
+        this.pollBatchSize = rocketmqProperties.getPollBatchSize();
+        this.pollTimeout = rocketmqProperties.getPollTimeout();
+        this.suspendTime = rocketmqProperties.getSuspendTime();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!closed.get()) {
+                try {
+                    resumeDueQueues();
+                    List<MessageExt> messages = poll();
+                    if (!messages.isEmpty()) commit(consumeMessage(groupByQueue(messages)));
+                } catch (Exception e) {
+                    logger.error("拉取消息异常：", e);
+                }
+            }
+        } finally {
+            // 关闭时由rocketmq客户端持久化位移存储中的位移
+            consumer.shutdown();
+            terminated.countDown();
+        }
+    }
+
+    /**
+     * 发出停止信号，拉取线程在当前时间片或本轮处理完成后退出，不等待拉取线程结束
+     */
+    public void shutdown() {
+        closed.set(true);
+    }
+
+    /**
+     * 等待拉取线程结束
+     *
+     * @param timeout 最长等待时间，单位：毫秒
+     * @return 拉取线程是否已结束
+     * @throws InterruptedException 等待时被中断
+     */
+    public boolean awaitTermination(long timeout) throws InterruptedException {
+        return terminated.await(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return 拉取超时时间，单位：毫秒
+     */
+    public long getPollTimeout() {
+        return pollTimeout;
+    }
+
+    /**
+     * 拉取消息，按时间片等待直到拉取到消息、超过拉取超时时间或收到停止信号；
+     * 本地缓存中还有消息时继续拉取，直到达到pollBatchSize条
+     *
+     * @return rocketmq原生消息
+     */
+    private List<MessageExt> poll() {
+        long deadline = System.currentTimeMillis() + pollTimeout;
+        List<MessageExt> messages = Collections.emptyList();
+        while (messages.isEmpty() && !closed.get()) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) break;
+            messages = consumer.poll(Math.min(remaining, POLL_SLICE));
+        }
+        if (messages.isEmpty() || messages.size() >= pollBatchSize) return messages;
+        List<MessageExt> merged = new ArrayList<>(messages);
+        while (merged.size() < pollBatchSize && !closed.get()) {
+            List<MessageExt> more = consumer.poll(MERGE_POLL_TIMEOUT);
+            if (more.isEmpty()) break;
+            merged.addAll(more);
+        }
+        return merged;
+    }
+
+    /**
+     * 按队列分组，保持同一队列内的消息顺序，已不再分配给当前消费者的队列的消息直接丢弃
+     *
+     * @param messages rocketmq原生消息
+     * @return 队列与消息
+     */
+    private Map<MessageQueue, List<MessageExt>> groupByQueue(List<MessageExt> messages) {
+        Map<MessageQueue, List<MessageExt>> queueMessages = new LinkedHashMap<>();
+        for (MessageExt msg : messages) {
+            MessageQueue queue = assignedQueues.resolve(msg);
+            if (queue == null) {
+                logger.warn("消息所属队列已不再分配给当前消费者，丢弃该消息，topic：{}，队列ID：{}，位移：{}", msg.getTopic(), msg.getQueueId(), msg.getQueueOffset());
+                continue;
+            }
+            queueMessages.computeIfAbsent(queue, k -> new ArrayList<>()).add(msg);
+        }
+        return queueMessages;
+    }
+
+    /**
+     * 处理本轮拉取的消息
+     *
+     * @param queueMessages 队列与消息
+     * @return 各队列处理完成的下一条消息位移
+     */
+    private Map<MessageQueue, Long> consumeMessage(Map<MessageQueue, List<MessageExt>> queueMessages) {
+        Map<String, List<MessageQueue>> topicQueues = new LinkedHashMap<>();
+        for (MessageQueue queue : queueMessages.keySet()) {
+            topicQueues.computeIfAbsent(queue.getTopic(), k -> new ArrayList<>()).add(queue);
+        }
+        Map<MessageQueue, Long> processedOffsets = new HashMap<>();
+        topicQueues.forEach((topic, queues) -> {
+            HandlerDefinition definition = handlerDefinitions.get(topic);
+            if (definition.isBatch()) consumeBatch(definition, queues, queueMessages, processedOffsets);
+            else for (MessageQueue queue : queues) consumeQueue(definition, queue, queueMessages.get(queue), processedOffsets);
+        });
+        return processedOffsets;
+    }
+
+    /**
+     * 批量消息处理器一次处理同一topic的全部消息，失败时回退所有涉及的队列，部分失败时各队列回退到第一条失败的消息
+     *
+     * @param definition       消息处理器定义
+     * @param queues           topic涉及的队列
+     * @param queueMessages    队列与消息
+     * @param processedOffsets 各队列处理完成的下一条消息位移
+     */
+    private void consumeBatch(HandlerDefinition definition, List<MessageQueue> queues, Map<MessageQueue, List<MessageExt>> queueMessages, Map<MessageQueue, Long> processedOffsets) {
+        List<AdapterMessage> messages = new ArrayList<>();
+        for (MessageQueue queue : queues) {
+            for (MessageExt msg : queueMessages.get(queue)) messages.add(new RocketmqAdapterMessage(msg));
+        }
+        BatchResult result;
+        try {
+            result = definition.dispatchWithResult(messages);
+        } catch (Exception e) {
+            logger.error("主题{}批量消费异常，回退{}个队列：", definition.getTopic(), queues.size(), e);
+            for (MessageQueue queue : queues) suspend(queue, queueMessages.get(queue).get(0).getQueueOffset());
+            return;
+        }
+        if (!result.isSuccess()) logger.warn("主题{}批量消费部分失败，失败数量：{}，回退失败消息所在队列", definition.getTopic(), result.failedCount());
+        // 各队列确认到该队列第一条失败消息之前，并回退到第一条失败消息
+        int from = 0;
+        for (MessageQueue queue : queues) {
+            List<MessageExt> msgs = queueMessages.get(queue);
+            int firstFailure = result.firstFailure(from, from + msgs.size()) - from;
+            if (firstFailure > 0) processedOffsets.put(queue, msgs.get(firstFailure - 1).getQueueOffset() + 1);
+            if (firstFailure < msgs.size()) suspend(queue, msgs.get(firstFailure).getQueueOffset());
+            from += msgs.size();
+        }
+    }
+
+    /**
+     * 单条消息处理器按顺序逐条处理同一队列的消息，失败时回退到失败的消息
+     *
+     * @param definition       消息处理器定义
+     * @param queue            队列
+     * @param msgs             队列中的消息
+     * @param processedOffsets 各队列处理完成的下一条消息位移
+     */
+    private void consumeQueue(HandlerDefinition definition, MessageQueue queue, List<MessageExt> msgs, Map<MessageQueue, Long> processedOffsets) {
+        for (MessageExt msg : msgs) {
+            try {
+                definition.dispatch(Collections.singletonList(new RocketmqAdapterMessage(msg)));
+                processedOffsets.put(queue, msg.getQueueOffset() + 1);
+            } catch (Exception e) {
+                logger.error("主题{}消费异常，队列：{}，位移：{}：", definition.getTopic(), queue, msg.getQueueOffset(), e);
+                suspend(queue, msg.getQueueOffset());
+                return;
+            }
+        }
+    }
+
+    /**
+     * 回退队列到指定位移并暂停拉取，暂停时间到期后恢复
+     *
+     * @param queue  队列
+     * @param offset 回退到的位移
+     */
+    private void suspend(MessageQueue queue, long offset) {
+        try {
+            consumer.seek(queue, offset);
+        } catch (MQClientException e) {
+            // 队列已被回收时无法回退，由新分配的消费者从已提交位移处重新消费
+            logger.warn("回退队列失败：{}，位移：{}", queue, offset, e);
+            return;
+        }
+        consumer.pause(Collections.singletonList(queue));
+        suspendedQueues.put(queue, System.currentTimeMillis() + suspendTime);
+    }
+
+    /**
+     * 恢复暂停时间已到期的队列
+     */
+    private void resumeDueQueues() {
+        if (suspendedQueues.isEmpty()) return;
+        long now = System.currentTimeMillis();
+        List<MessageQueue> due = new ArrayList<>();
+        Iterator<Map.Entry<MessageQueue, Long>> iterator = suspendedQueues.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<MessageQueue, Long> entry = iterator.next();
+            if (entry.getValue() > now) continue;
+            due.add(entry.getKey());
+            iterator.remove();
+        }
+        if (!due.isEmpty()) consumer.resume(due);
+    }
+
+    /**
+     * 显式提交已处理完成的位移，只更新本地位移存储，不逐轮同步持久化到broker
+     * 只更新处理完成的队列，seek不会修改消费者内部记录的消费位移，因此不使用commitSync提交全部队列；
+     * rocketmq客户端定时调用persistAll持久化全部队列的位移，再均衡移除队列前和消费者关闭时同步持久化
+     *
+     * @param processedOffsets 各队列处理完成的下一条消息位移
+     */
+    private void commit(Map<MessageQueue, Long> processedOffsets) {
+        processedOffsets.forEach((queue, offset) -> offsetStore.updateOffset(queue, offset, false));
+    }
+}
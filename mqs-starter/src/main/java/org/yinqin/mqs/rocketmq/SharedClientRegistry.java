@@ -0,0 +1,110 @@
+package org.yinqin.mqs.rocketmq;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 共享客户端实例登记表
+ * 开启share-client-instance后，生产者和消费者启动成功时按客户端实例ID登记，停止时注销，
+ * 所有消费组启动完成后输出每个共享客户端实例上的生产者数和消费者数，用于确认共用是否生效
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see org.yinqin.mqs.common.util.ConvertUtil#rocketmqInstanceName
+ * @since 1.0.8
+ */
+public class SharedClientRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedClientRegistry.class);
+
+    /**
+     * 客户端实例ID与登记数
+     */
+    private static final Map<String, Registration> REGISTRATIONS = new ConcurrentHashMap<>();
+
+    private SharedClientRegistry() {
+    }
+
+    /**
+     * 登记生产者
+     *
+     * @param clientId 客户端实例ID
+     */
+    public static void registerProducer(String clientId) {
+        REGISTRATIONS.computeIfAbsent(clientId, k -> new Registration()).producers.incrementAndGet();
+    }
+
+    /**
+     * 登记消费者
+     *
+     * @param clientId 客户端实例ID
+     */
+    public static void registerConsumer(String clientId) {
+        REGISTRATIONS.computeIfAbsent(clientId, k -> new Registration()).consumers.incrementAndGet();
+    }
+
+    /**
+     * 注销生产者，客户端实例上的生产者和消费者全部注销后移除登记
+     *
+     * @param clientId 客户端实例ID
+     */
+    public static void unregisterProducer(String clientId) {
+        REGISTRATIONS.computeIfPresent(clientId, (k, registration) -> {
+            registration.producers.decrementAndGet();
+            return registration.isEmpty() ? null : registration;
+        });
+    }
+
+    /**
+     * 注销消费者，客户端实例上的生产者和消费者全部注销后移除登记
+     *
+     * @param clientId 客户端实例ID
+     */
+    public static void unregisterConsumer(String clientId) {
+        REGISTRATIONS.computeIfPresent(clientId, (k, registration) -> {
+            registration.consumers.decrementAndGet();
+            return registration.isEmpty() ? null : registration;
+        });
+    }
+
+    /**
+     * @param clientId 客户端实例ID
+     * @return 客户端实例上登记的生产者数
+     */
+    public static int producers(String clientId) {
+        Registration registration = REGISTRATIONS.get(clientId);
+        return registration == null ? 0 : registration.producers.get();
+    }
+
+    /**
+     * @param clientId 客户端实例ID
+     * @return 客户端实例上登记的消费者数
+     */
+    public static int consumers(String clientId) {
+        Registration registration = REGISTRATIONS.get(clientId);
+        return registration == null ? 0 : registration.consumers.get();
+    }
+
+    /**
+     * 输出每个共享客户端实例上的生产者数和消费者数
+     */
+    public static void logRegistrations() {
+        REGISTRATIONS.forEach((clientId, registration) -> logger.info("共享客户端实例：{}，生产者数：{}，消费者数：{}", clientId, registration.producers.get(), registration.consumers.get()));
+    }
+
+    private static class Registration {
+
+        private final AtomicInteger producers = new AtomicInteger();
+
+        private final AtomicInteger consumers = new AtomicInteger();
+
+        private boolean isEmpty() {
+            return producers.get() <= 0 && consumers.get() <= 0;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package org.yinqin.mqs.rocketmq.consumer;
 
 import lombok.Getter;
+import lombok.Setter;
 import org.apache.rocketmq.acl.common.AclClientRPCHook;
 import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
 import org.apache.rocketmq.client.consumer.rebalance.AllocateMessageQueueAveragely;
@@ -10,12 +11,16 @@ import org.slf4j.LoggerFactory;
 import org.yinqin.mqs.common.config.MqsProperties.AdapterProperties;
 import org.yinqin.mqs.common.exception.MqsConsumerException;
 import org.yinqin.mqs.common.service.MessageConsumer;
+import org.yinqin.mqs.rocketmq.SharedClientRegistry;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 自定义rocketmq消费者
  *
  * @author YinQin
- * @version 1.0.6
+ * @version 1.0.8
  * @createDate 2023年10月13日
  * @see MessageConsumer
  * @since 1.0.0
@@ -35,8 +40,25 @@ public class CustomRocketmqConsumer implements MessageConsumer {
     @Getter
     private final DefaultMQPushConsumer consumer;
 
+    /**
+     * 等待消息处理线程池关闭的时间，单位：毫秒
+     */
+    private static final long POOL_CLOSE_TIMEOUT = 10000;
+
+    /**
+     * 消息处理线程池，未开启分片并行消费时为空
+     */
+    @Setter
+    private ExecutorService workerPool;
+
+    /**
+     * 是否使用共享客户端实例
+     */
+    private final boolean sharedClient;
+
     public CustomRocketmqConsumer(String instanceId, AdapterProperties rocketmqProperties) {
         this.instanceId = instanceId;
+        this.sharedClient = rocketmqProperties.getRocketmq().isShareClientInstance();
         String groupName = rocketmqProperties.getGroupName();
         if (rocketmqProperties.getRocketmq().getAcl().isEnabled()) {
             consumer = new DefaultMQPushConsumer(groupName, new AclClientRPCHook(rocketmqProperties.getRocketmq().getAcl()), new AllocateMessageQueueAveragely());
@@ -55,14 +77,23 @@ public class CustomRocketmqConsumer implements MessageConsumer {
         } catch (MQClientException e) {
             throw new MqsConsumerException("启动消费组失败，实例ID：" + instanceId, e);
         }
+        if (sharedClient) SharedClientRegistry.registerConsumer(consumer.buildMQClientId());
+        logger.info("实例：{}，消费组：{} 启动成功，客户端实例：{}", instanceId, consumer.getConsumerGroup(), consumer.buildMQClientId());
     }
 
     /**
-     * 关闭所有源生rocketmq消费者
+     * 关闭所有源生rocketmq消费者，再关闭消息处理线程池
+     *
+     * @throws InterruptedException 等待线程池关闭时被中断
      */
     @Override
-    public void destroy() {
+    public void destroy() throws InterruptedException {
         consumer.shutdown();
+        if (sharedClient) SharedClientRegistry.unregisterConsumer(consumer.buildMQClientId());
+        if (workerPool != null) {
+            workerPool.shutdown();
+            if (!workerPool.awaitTermination(POOL_CLOSE_TIMEOUT, TimeUnit.MILLISECONDS)) workerPool.shutdownNow();
+        }
         logger.info("实例：{} 消费者停止成功", instanceId);
     }
 }
@@ -0,0 +1,131 @@
+package org.yinqin.mqs.rocketmq.consumer;
+
+import cn.hutool.core.thread.ThreadUtil;
+import lombok.Getter;
+import org.apache.rocketmq.acl.common.AclClientRPCHook;
+import org.apache.rocketmq.client.consumer.DefaultLitePullConsumer;
+import org.apache.rocketmq.client.consumer.store.OffsetStore;
+import org.apache.rocketmq.client.consumer.store.RemoteBrokerOffsetStore;
+import org.apache.rocketmq.client.exception.MQClientException;
+import org.apache.rocketmq.client.impl.MQClientManager;
+import org.apache.rocketmq.client.impl.factory.MQClientInstance;
+import org.apache.rocketmq.remoting.RPCHook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yinqin.mqs.common.Constants;
+import org.yinqin.mqs.common.config.MqsProperties.AdapterProperties;
+import org.yinqin.mqs.common.exception.MqsConsumerException;
+import org.yinqin.mqs.common.handler.HandlerDefinition;
+import org.yinqin.mqs.common.service.MessageConsumer;
+import org.yinqin.mqs.rocketmq.AssignedQueues;
+import org.yinqin.mqs.rocketmq.PullWorker;
+import org.yinqin.mqs.rocketmq.SharedClientRegistry;
+
+import java.util.Map;
+
+/**
+ * 自定义rocketmq litePull消费者
+ * 由一个拉取线程拉取并处理消息，位移由拉取线程显式提交
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see MessageConsumer
+ * @see PullWorker
+ * @since 1.0.8
+ */
+public class CustomRocketmqLitePullConsumer implements MessageConsumer {
+
+    private final Logger logger = LoggerFactory.getLogger(CustomRocketmqLitePullConsumer.class);
+
+    /**
+     * 实例ID
+     */
+    private final String instanceId;
+
+    /**
+     * 消费类型
+     */
+    private final String consumerType;
+
+    /**
+     * 配置
+     */
+    private final AdapterProperties properties;
+
+    /**
+     * 消息处理器分发表
+     */
+    private final Map<String, HandlerDefinition> messageHandlers;
+
+    /**
+     * acl访问控制钩子，未开启acl时为空
+     */
+    private final RPCHook rpcHook;
+
+    /**
+     * rocketmq原生litePull消费者对象
+     */
+    @Getter
+    private final DefaultLitePullConsumer consumer;
+
+    /**
+     * 拉取消息工作线程，启动时创建
+     */
+    private PullWorker pullWorker;
+
+    /**
+     * 停止时为关闭消费者额外预留的时间，单位：毫秒
+     */
+    private static final long CLOSE_MARGIN = 10000;
+
+    public CustomRocketmqLitePullConsumer(String instanceId, String consumerType, AdapterProperties properties, Map<String, HandlerDefinition> messageHandlers) {
+        this.instanceId = instanceId;
+        this.consumerType = consumerType;
+        this.properties = properties;
+        this.messageHandlers = messageHandlers;
+        this.rpcHook = properties.getRocketmq().getAcl().isEnabled() ? new AclClientRPCHook(properties.getRocketmq().getAcl()) : null;
+        this.consumer = new DefaultLitePullConsumer(properties.getGroupName(), rpcHook);
+    }
+
+    /**
+     * 启动消费者和拉取消息工作线程，必须在订阅topic之后调用
+     * 使用与消费者相同的客户端实例创建位移存储，并包装队列变更监听器以记录分配给当前消费者的队列
+     */
+    @Override
+    public void start() {
+        MQClientInstance clientInstance = MQClientManager.getInstance().getOrCreateMQClientInstance(consumer, rpcHook);
+        OffsetStore offsetStore = new RemoteBrokerOffsetStore(clientInstance, consumer.getConsumerGroup());
+        consumer.setOffsetStore(offsetStore);
+        AssignedQueues assignedQueues = new AssignedQueues(consumer.getMessageQueueListener(), clientInstance);
+        consumer.setMessageQueueListener(assignedQueues);
+        pullWorker = new PullWorker(consumer, offsetStore, assignedQueues, messageHandlers, properties.getRocketmq());
+        try {
+            consumer.start();
+        } catch (MQClientException e) {
+            throw new MqsConsumerException("启动消费组失败，实例ID：" + instanceId, e);
+        }
+        if (properties.getRocketmq().isShareClientInstance()) SharedClientRegistry.registerConsumer(consumer.buildMQClientId());
+        ThreadUtil.newThread(pullWorker, instanceId + Constants.HYPHEN + consumerType + "-pull-worker").start();
+        logger.info("实例：{}，消费组：{} 启动成功，客户端实例：{}", instanceId, consumer.getConsumerGroup(), consumer.buildMQClientId());
+    }
+
+    /**
+     * 停止拉取消息工作线程，等待本轮消息处理完成后关闭源生消费者
+     *
+     * @throws InterruptedException 等待时被中断
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        if (pullWorker == null) {
+            consumer.shutdown();
+            return;
+        }
+        pullWorker.shutdown();
+        if (!pullWorker.awaitTermination(pullWorker.getPollTimeout() + CLOSE_MARGIN)) {
+            logger.warn("实例：{}，消费类型：{}，等待拉取线程停止超时", instanceId, consumerType);
+        }
+        if (properties.getRocketmq().isShareClientInstance()) SharedClientRegistry.unregisterConsumer(consumer.buildMQClientId());
+        logger.info("实例：{}，消费类型：{}， 消费者停止成功", instanceId, consumerType);
+    }
+}
@@ -0,0 +1,169 @@
+package org.yinqin.mqs.rocketmq.consumer;
+
+import org.apache.rocketmq.common.message.MessageConst;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.yinqin.mqs.common.entity.AdapterMessage;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * rocketmq消费消息视图
+ * 直接包装rocketmq原生消息，属性在读取时才从原生消息中获取，不复制消息内容；
+ * 消息头在第一次读取时才从消息属性中排除系统属性后生成；
+ * 调用任一setter时先将全部属性复制到消息自身（写时复制），之后读写复制后的属性，不影响原生消息；
+ * 消息头在复制前为只读集合，需要修改消息头时调用setHeaders或{@link AdapterMessage#toMutable()}
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see MessageExt
+ * @since 1.0.8
+ */
+public class RocketmqAdapterMessage extends AdapterMessage {
+
+    /**
+     * rocketmq原生消息
+     */
+    private final MessageExt messageExt;
+
+    /**
+     * 用户自定义属性，第一次读取时初始化
+     */
+    private Map<String, String> userProperties;
+
+    /**
+     * 是否已写时复制，复制后属性从父类字段读取
+     */
+    private boolean copied;
+
+    public RocketmqAdapterMessage(MessageExt messageExt) {
+        this.messageExt = messageExt;
+    }
+
+    @Override
+    public String getTopic() {
+        if (copied) return super.getTopic();
+        return messageExt.getTopic();
+    }
+
+    @Override
+    public String getTag() {
+        if (copied) return super.getTag();
+        return messageExt.getTags();
+    }
+
+    @Override
+    public String getBizKey() {
+        if (copied) return super.getBizKey();
+        return messageExt.getKeys();
+    }
+
+    @Override
+    public byte[] getBody() {
+        if (copied) return super.getBody();
+        return messageExt.getBody();
+    }
+
+    @Override
+    public String getMsgId() {
+        if (copied) return super.getMsgId();
+        return messageExt.getMsgId();
+    }
+
+    @Override
+    public int getConsumeTimes() {
+        if (copied) return super.getConsumeTimes();
+        return messageExt.getReconsumeTimes();
+    }
+
+    @Override
+    public Map<String, String> getHeaders() {
+        if (copied) return super.getHeaders();
+        if (userProperties == null) {
+            Map<String, String> headers = new HashMap<>();
+            for (Map.Entry<String, String> entry : messageExt.getProperties().entrySet()) {
+                if (!MessageConst.STRING_HASH_SET.contains(entry.getKey())) headers.put(entry.getKey(), entry.getValue());
+            }
+            userProperties = headers.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(headers);
+        }
+        return userProperties;
+    }
+
+    @Override
+    public Object getOriginMessage() {
+        if (copied) return super.getOriginMessage();
+        return messageExt;
+    }
+
+    @Override
+    public void setTopic(String topic) {
+        copy();
+        super.setTopic(topic);
+    }
+
+    @Override
+    public void setTag(String tag) {
+        copy();
+        super.setTag(tag);
+    }
+
+    @Override
+    public void setBizKey(String bizKey) {
+        copy();
+        super.setBizKey(bizKey);
+    }
+
+    @Override
+    public void setBody(byte[] body) {
+        copy();
+        super.setBody(body);
+    }
+
+    @Override
+    public void setProcessTime(Long processTime) {
+        copy();
+        super.setProcessTime(processTime);
+    }
+
+    @Override
+    public void setMsgId(String msgId) {
+        copy();
+        super.setMsgId(msgId);
+    }
+
+    @Override
+    public void setConsumeTimes(int consumeTimes) {
+        copy();
+        super.setConsumeTimes(consumeTimes);
+    }
+
+    @Override
+    public void setHeaders(Map<String, String> headers) {
+        copy();
+        super.setHeaders(headers);
+    }
+
+    @Override
+    public void setOriginMessage(Object originMessage) {
+        copy();
+        super.setOriginMessage(originMessage);
+    }
+
+    /**
+     * 第一次修改前将原生消息中的属性复制到消息自身
+     */
+    private void copy() {
+        if (copied) return;
+        super.setTopic(getTopic());
+        super.setTag(getTag());
+        super.setBizKey(getBizKey());
+        super.setBody(getBody());
+        super.setMsgId(getMsgId());
+        super.setConsumeTimes(getConsumeTimes());
+        super.setHeaders(new HashMap<>(getHeaders()));
+        super.setOriginMessage(getOriginMessage());
+        copied = true;
+    }
+}
@@ -1,6 +1,10 @@
 package org.yinqin.mqs.rocketmq.consumer.factory;
 
+import cn.hutool.core.thread.ThreadUtil;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.rocketmq.client.consumer.DefaultLitePullConsumer;
 import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
+import org.apache.rocketmq.client.consumer.MessageSelector;
 import org.apache.rocketmq.client.consumer.listener.ConsumeConcurrentlyStatus;
 import org.apache.rocketmq.client.consumer.listener.ConsumeOrderlyStatus;
 import org.apache.rocketmq.client.consumer.listener.MessageListenerConcurrently;
@@ -11,22 +15,34 @@ import org.apache.rocketmq.common.message.MessageExt;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.yinqin.mqs.common.Constants;
-import org.yinqin.mqs.common.MessageAdapter;
 import org.yinqin.mqs.common.config.MqsProperties;
 import org.yinqin.mqs.common.entity.AdapterMessage;
 import org.yinqin.mqs.common.exception.MqsConsumerException;
-import org.yinqin.mqs.common.handler.MessageHandler;
+import org.yinqin.mqs.common.handler.BatchResult;
+import org.yinqin.mqs.common.handler.HandlerDefinition;
+import org.yinqin.mqs.common.handler.KeyShardedExecutor;
+import org.yinqin.mqs.common.handler.MicroBatchAccumulator;
+import org.yinqin.mqs.common.service.MessageConsumer;
+import org.yinqin.mqs.common.util.ConvertUtil;
+import org.yinqin.mqs.rocketmq.consumer.CustomRocketmqLitePullConsumer;
+import org.yinqin.mqs.rocketmq.consumer.RocketmqAdapterMessage;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * 创建rocketmq消费者公共方法
  *
  * @author YinQin
- * @version 1.0.6
+ * @version 1.0.8
  * @createDate 2023年11月30日
  * @since 1.0.6
  */
@@ -38,11 +54,12 @@ public interface CreateRocketmqConsumer {
      * 初始化配置
      *
      * @param consumer   源生rocketmq消费者
+     * @param instanceId 实例ID
      * @param properties 配置
      */
-    default void init(DefaultMQPushConsumer consumer, MqsProperties.AdapterProperties properties) {
+    default void init(DefaultMQPushConsumer consumer, String instanceId, MqsProperties.AdapterProperties properties) {
         consumer.resetClientConfig(properties.getRocketmq().getClientConfig());
-        consumer.setInstanceName(UUID.randomUUID().toString().replace(Constants.HYPHEN, Constants.EMPTY).substring(0, 8));
+        consumer.setInstanceName(ConvertUtil.rocketmqInstanceName(instanceId, properties));
         consumer.setConsumeMessageBatchMaxSize(properties.getRocketmq().getConsumeMessageBatchMaxSize()); //公共消息可以配置每次消费数量,默认为1
         consumer.setConsumeFromWhere(ConsumeFromWhere.CONSUME_FROM_LAST_OFFSET);
         consumer.setConsumeThreadMax(properties.getRocketmq().getConsumeThreadMax());
@@ -52,56 +69,122 @@ public interface CreateRocketmqConsumer {
     }
 
     /**
-     * 订阅topic
+     * @param properties 配置
+     * @return 是否使用litePull消费引擎
+     */
+    default boolean isLitePull(MqsProperties.AdapterProperties properties) {
+        return Constants.LITE_PULL.equals(properties.getRocketmq().getConsumerEngine());
+    }
+
+    /**
+     * 创建litePull消费者并订阅topic
+     * 关闭自动提交，位移由拉取线程在消息处理完成后显式提交
+     *
+     * @param instanceId      实例ID
+     * @param consumerType    消费类型
+     * @param groupName       消费组名称
+     * @param properties      配置
+     * @param messageHandlers 消息处理器
+     * @return 自定义litePull消费者
+     */
+    default MessageConsumer createLitePullConsumer(String instanceId, String consumerType, String groupName, MqsProperties.AdapterProperties properties, Map<String, HandlerDefinition> messageHandlers) {
+        CustomRocketmqLitePullConsumer customConsumer = new CustomRocketmqLitePullConsumer(instanceId, consumerType, properties, messageHandlers);
+        DefaultLitePullConsumer consumer = customConsumer.getConsumer();
+        consumer.resetClientConfig(properties.getRocketmq().getClientConfig());
+        consumer.setInstanceName(ConvertUtil.rocketmqInstanceName(instanceId, properties));
+        consumer.setConsumerGroup(groupName);
+        consumer.setAutoCommit(false);
+        consumer.setConsumeFromWhere(ConsumeFromWhere.CONSUME_FROM_LAST_OFFSET);
+        consumer.setPullBatchSize(properties.getRocketmq().getPullBatchSize());
+        consumer.setPullThresholdForQueue(properties.getRocketmq().getPullThresholdForQueue());
+        for (Map.Entry<String, HandlerDefinition> entry : messageHandlers.entrySet()) {
+            MessageSelector selector = selector(entry.getValue());
+            logger.info("实例：{} litePull消费者启动中，消费组：{}，订阅Topic：{}，过滤表达式：{}", instanceId, groupName, entry.getKey(), selector.getExpression());
+            try {
+                consumer.subscribe(entry.getKey(), selector);
+            } catch (MQClientException e) {
+                throw new MqsConsumerException("订阅Topic失败: " + entry.getKey(), e);
+            }
+        }
+        return customConsumer;
+    }
+
+    /**
+     * 创建顺序消息分片执行器，未开启分片并行消费时返回空
+     * 回调线程自己处理一个分片，其余分片提交到线程池；所有回调线程同时处理时最多需要消费线程数乘以其余分片数个线程，
+     * 线程池大小取该值与orderlyLaneThreads（未配置时为消费线程数）中较小的一个，线程不足时分片在线程池队列中等待
+     *
+     * @param instanceId 实例ID
+     * @param properties 配置
+     * @return 分片通道线程池
+     */
+    default ExecutorService createLanePool(String instanceId, MqsProperties.AdapterProperties properties) {
+        int lanes = properties.getRocketmq().getOrderlyLanes();
+        if (lanes <= 1) return null;
+        int consumeThreadMax = properties.getRocketmq().getConsumeThreadMax();
+        int laneThreads = properties.getRocketmq().getOrderlyLaneThreads() > 0 ? properties.getRocketmq().getOrderlyLaneThreads() : consumeThreadMax;
+        int threads = Math.max(1, Math.min(consumeThreadMax * (lanes - 1), laneThreads));
+        logger.info("实例：{}，开启顺序消息分片并行消费，通道数：{}，线程数：{}", instanceId, lanes, threads);
+        return Executors.newFixedThreadPool(threads, ThreadUtil.newNamedThreadFactory(instanceId + Constants.HYPHEN + Constants.TRAN + "-lane-", false));
+    }
+
+    /**
+     * 订阅topic，按消息处理器声明的tag或SQL92表达式在broker端过滤
      *
      * @param consumer        源生rocketmq消费者
      * @param instanceId      实例ID
      * @param groupName       消费组名称
      * @param messageHandlers 消息处理器
      */
-    default void subscribe(DefaultMQPushConsumer consumer, String instanceId, String groupName, Map<String, MessageHandler> messageHandlers) {
-        for (String topic : messageHandlers.keySet()) {
-            logger.info("实例：{} 消费者启动中，消费组：{}，订阅Topic：{}", instanceId, groupName, topic);
+    default void subscribe(DefaultMQPushConsumer consumer, String instanceId, String groupName, Map<String, HandlerDefinition> messageHandlers) {
+        for (Map.Entry<String, HandlerDefinition> entry : messageHandlers.entrySet()) {
+            MessageSelector selector = selector(entry.getValue());
+            logger.info("实例：{} 消费者启动中，消费组：{}，订阅Topic：{}，过滤表达式：{}", instanceId, groupName, entry.getKey(), selector.getExpression());
             try {
-                consumer.subscribe(topic, Constants.WILDCARD);
+                consumer.subscribe(entry.getKey(), selector);
             } catch (MQClientException e) {
-                throw new MqsConsumerException("订阅Topic失败: " + topic, e);
+                throw new MqsConsumerException("订阅Topic失败: " + entry.getKey(), e);
             }
         }
     }
 
+    /**
+     * 根据消息处理器定义创建broker端过滤选择器，配置了SQL92表达式时优先使用SQL92过滤
+     *
+     * @param definition 消息处理器定义
+     * @return 消息选择器
+     */
+    default MessageSelector selector(HandlerDefinition definition) {
+        if (StringUtils.isNotBlank(definition.getSqlExpression())) return MessageSelector.bySql(definition.getSqlExpression());
+        return MessageSelector.byTag(StringUtils.isBlank(definition.getTagExpression()) ? Constants.WILDCARD : definition.getTagExpression());
+    }
+
     /**
      * 注册多线程消息监听器
+     * 配置了最小批量和linger时间的批量消息处理器，跨回调累积消息，回调线程等待本次消息所在批次处理完成后再返回消费状态；
+     * 支持部分确认的批量消息处理器只确认到第一条失败消息之前
      *
      * @param consumer        源生rocketmq消费者
      * @param messageHandlers 消息处理器
      */
-    default void registerMessageListenerConcurrently(DefaultMQPushConsumer consumer, Map<String, MessageHandler> messageHandlers) {
+    default void registerMessageListenerConcurrently(DefaultMQPushConsumer consumer, Map<String, HandlerDefinition> messageHandlers) {
+        Map<String, MicroBatchAccumulator> accumulators = new ConcurrentHashMap<>();
         consumer.registerMessageListener((MessageListenerConcurrently) (messageList, context) -> {
             if (messageList.isEmpty()) return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
             MessageExt firstMsg = messageList.get(0); //每次只拉取一条
-            List<AdapterMessage> messages = new ArrayList<>();
-            messageList.forEach(msg -> {
-                AdapterMessage message = AdapterMessage.builder()
-                        .topic(msg.getTopic())
-                        .tag(msg.getTags())
-                        .bizKey(msg.getKeys())
-                        .body(msg.getBody())
-                        .msgId(msg.getMsgId())
-                        .originMessage(msg)
-                        .consumeTimes(msg.getReconsumeTimes())
-                        .build();
-                message.setOriginMessage(msg);
-                message.setMsgId(msg.getMsgId());
-                message.setConsumeTimes(msg.getReconsumeTimes());
-                messages.add(message);
-            });
+            List<AdapterMessage> messages = fetchMessages(messageList);
+            HandlerDefinition definition = messageHandlers.get(firstMsg.getTopic());
             try {
-                MessageAdapter messageAdapter = messageHandlers.get(firstMsg.getTopic()).getClass().getAnnotation(MessageAdapter.class);
-                if (messageAdapter.isBatch()) {
-                    messageHandlers.get(firstMsg.getTopic()).process(messages);
-                } else {
-                    for (AdapterMessage msg : messages) messageHandlers.get(firstMsg.getTopic()).process(msg);
+                if (definition.isMicroBatch()) {
+                    consumeMicroBatch(accumulators.computeIfAbsent(firstMsg.getTopic(), topic -> new MicroBatchAccumulator(definition)), messages);
+                    return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
+                }
+                BatchResult result = definition.dispatchWithResult(messages);
+                if (!result.isSuccess()) {
+                    // 确认到第一条失败消息之前，之后的消息由rocketmq重新投递
+                    int firstFailure = result.firstFailure(0, messages.size());
+                    context.setAckIndex(firstFailure - 1);
+                    logger.warn("主题{}批量消费部分失败，失败数量：{}，从第{}条消息开始重新投递", firstMsg.getTopic(), result.failedCount(), firstFailure + 1);
                 }
                 return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
             } catch (Exception e) {
@@ -117,33 +200,28 @@ public interface CreateRocketmqConsumer {
      * @param consumer        源生rocketmq消费者
      * @param messageHandlers 消息处理器
      */
-    default void registerMessageListenerOrderly(DefaultMQPushConsumer consumer, Map<String, MessageHandler> messageHandlers) {
+    default void registerMessageListenerOrderly(DefaultMQPushConsumer consumer, Map<String, HandlerDefinition> messageHandlers) {
+        registerMessageListenerOrderly(consumer, messageHandlers, null);
+    }
+
+    /**
+     * 注册顺序消息监听器
+     * 配置了分片执行器时，同一队列的一批消息按bizKey分片并行处理，所有分片处理完成后才返回消费状态，
+     * 任一分片失败时整批稍后重新消费
+     *
+     * @param consumer        源生rocketmq消费者
+     * @param messageHandlers 消息处理器
+     * @param shardedExecutor 分片执行器，为空时按顺序逐条处理
+     */
+    default void registerMessageListenerOrderly(DefaultMQPushConsumer consumer, Map<String, HandlerDefinition> messageHandlers, KeyShardedExecutor shardedExecutor) {
         consumer.registerMessageListener((MessageListenerOrderly) (messageList, context) -> {
             if (messageList.isEmpty()) return ConsumeOrderlyStatus.SUCCESS;
-            MessageExt firstMsg = messageList.get(0); //每次只拉取一条
-            List<AdapterMessage> messages = new ArrayList<>();
-            messageList.forEach(msg -> {
-                AdapterMessage message = AdapterMessage.builder()
-                        .topic(msg.getTopic())
-                        .tag(msg.getTags())
-                        .bizKey(msg.getKeys())
-                        .body(msg.getBody())
-                        .msgId(msg.getMsgId())
-                        .originMessage(msg)
-                        .consumeTimes(msg.getReconsumeTimes())
-                        .build();
-                message.setOriginMessage(msg);
-                message.setMsgId(msg.getMsgId());
-                message.setConsumeTimes(msg.getReconsumeTimes());
-                messages.add(message);
-            });
+            MessageExt firstMsg = messageList.get(0); //未开启分片时每次只拉取一条
+            List<AdapterMessage> messages = fetchMessages(messageList);
             try {
-                MessageAdapter messageAdapter = messageHandlers.get(firstMsg.getTopic()).getClass().getAnnotation(MessageAdapter.class);
-                if (messageAdapter.isBatch()) {
-                    messageHandlers.get(firstMsg.getTopic()).process(messages);
-                } else {
-                    for (AdapterMessage msg : messages) messageHandlers.get(firstMsg.getTopic()).process(msg);
-                }
+                HandlerDefinition definition = messageHandlers.get(firstMsg.getTopic());
+                if (shardedExecutor == null) definition.dispatch(messages);
+                else shardedExecutor.execute(definition, messages);
                 return ConsumeOrderlyStatus.SUCCESS;
             } catch (Exception e) {
                 logger.error("主题{}消费异常：", firstMsg.getTopic(), e);
@@ -151,4 +229,49 @@ public interface CreateRocketmqConsumer {
             }
         });
     }
+
+    /**
+     * 将消息追加到累积器，并由当前回调线程处理可以处理的批次，直到本次追加的消息全部处理完成
+     *
+     * @param accumulator 累积器
+     * @param messages    本次回调的消息
+     * @throws InterruptedException 等待时被中断
+     * @throws MqsConsumerException 本次消息所在批次处理失败
+     */
+    default void consumeMicroBatch(MicroBatchAccumulator accumulator, List<AdapterMessage> messages) throws InterruptedException {
+        CompletableFuture<Void> future = accumulator.append(messages);
+        long lingerMs = accumulator.getDefinition().getLingerMs();
+        while (!future.isDone()) {
+            for (MicroBatchAccumulator.Batch batch : accumulator.drain(false)) {
+                try {
+                    batch.process();
+                } catch (Exception e) {
+                    logger.error("主题{}累积批量消费异常：", accumulator.getDefinition().getTopic(), e);
+                }
+            }
+            // 本次消息可能正由其他回调线程处理，最多等待到linger时间到期后再尝试取出批次
+            try {
+                future.get(Math.max(1, Math.min(accumulator.remainingLinger(), lingerMs)), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException | ExecutionException ignored) {
+                // 超时后继续取出批次，处理失败在循环结束后统一抛出
+            }
+        }
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            throw new MqsConsumerException("累积批量消费失败", e.getCause());
+        }
+    }
+
+    /**
+     * 将rocketmq原生消息包装为只读消息视图
+     *
+     * @param messageList rocketmq原生消息
+     * @return 消息集合
+     */
+    default List<AdapterMessage> fetchMessages(List<MessageExt> messageList) {
+        List<AdapterMessage> messages = new ArrayList<>(messageList.size());
+        for (MessageExt msg : messageList) messages.add(new RocketmqAdapterMessage(msg));
+        return messages;
+    }
 }
@@ -3,7 +3,7 @@ package org.yinqin.mqs.rocketmq.consumer.factory;
 import org.yinqin.mqs.common.Constants;
 import org.yinqin.mqs.common.config.MqsProperties;
 import org.yinqin.mqs.common.factory.ConsumerFactory;
-import org.yinqin.mqs.common.handler.MessageHandler;
+import org.yinqin.mqs.common.handler.HandlerDefinition;
 import org.yinqin.mqs.common.service.MessageConsumer;
 import org.yinqin.mqs.common.util.ConvertUtil;
 import org.yinqin.mqs.rocketmq.consumer.CustomRocketmqConsumer;
@@ -14,7 +14,7 @@ import java.util.Map;
  * rocketmq批量消费者工厂类
  *
  * @author YinQin
- * @version 1.0.6
+ * @version 1.0.8
  * @createDate 2023年11月27日
  * @see ConsumerFactory
  * @since 1.0.6
@@ -22,10 +22,11 @@ import java.util.Map;
 public class RocketmqBatchConsumerFactory extends ConsumerFactory implements CreateRocketmqConsumer {
 
     @Override
-    public MessageConsumer createConsumer(String instanceId, MqsProperties.AdapterProperties properties, Map<String, MessageHandler> messageHandlers) {
-        CustomRocketmqConsumer consumer = new CustomRocketmqConsumer(instanceId, properties);
-        init(consumer.getConsumer(), properties);
+    public MessageConsumer createConsumer(String instanceId, MqsProperties.AdapterProperties properties, Map<String, HandlerDefinition> messageHandlers) {
         String groupName = ConvertUtil.convertName(properties.getGroupName() + Constants.BATCH_SUFFIX, properties.getGroup());
+        if (isLitePull(properties)) return createLitePullConsumer(instanceId, Constants.BATCH, groupName, properties, messageHandlers);
+        CustomRocketmqConsumer consumer = new CustomRocketmqConsumer(instanceId, properties);
+        init(consumer.getConsumer(), instanceId, properties);
         consumer.getConsumer().setConsumerGroup(groupName);
         subscribe(consumer.getConsumer(), instanceId, groupName, messageHandlers);
         registerMessageListenerConcurrently(consumer.getConsumer(), messageHandlers);
@@ -4,7 +4,7 @@ import org.apache.rocketmq.common.protocol.heartbeat.MessageModel;
 import org.yinqin.mqs.common.Constants;
 import org.yinqin.mqs.common.config.MqsProperties;
 import org.yinqin.mqs.common.factory.ConsumerFactory;
-import org.yinqin.mqs.common.handler.MessageHandler;
+import org.yinqin.mqs.common.handler.HandlerDefinition;
 import org.yinqin.mqs.common.service.MessageConsumer;
 import org.yinqin.mqs.common.util.ConvertUtil;
 import org.yinqin.mqs.rocketmq.consumer.CustomRocketmqConsumer;
@@ -23,9 +23,9 @@ import java.util.Map;
 public class RocketmqBroadcastConsumerFactory extends ConsumerFactory implements CreateRocketmqConsumer {
 
     @Override
-    public MessageConsumer createConsumer(String instanceId, MqsProperties.AdapterProperties properties, Map<String, MessageHandler> messageHandlers) {
+    public MessageConsumer createConsumer(String instanceId, MqsProperties.AdapterProperties properties, Map<String, HandlerDefinition> messageHandlers) {
         CustomRocketmqConsumer consumer = new CustomRocketmqConsumer(instanceId, properties);
-        init(consumer.getConsumer(), properties);
+        init(consumer.getConsumer(), instanceId, properties);
         String groupName = ConvertUtil.convertName(properties.getGroupName() + Constants.BROADCAST_SUFFIX, properties.getGroup());
         consumer.getConsumer().setConsumerGroup(groupName);
         consumer.getConsumer().setMessageModel(MessageModel.BROADCASTING);
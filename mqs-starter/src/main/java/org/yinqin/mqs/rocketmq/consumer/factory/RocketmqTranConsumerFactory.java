@@ -1,19 +1,22 @@
 package org.yinqin.mqs.rocketmq.consumer.factory;
 
+import org.yinqin.mqs.common.Constants;
 import org.yinqin.mqs.common.config.MqsProperties;
 import org.yinqin.mqs.common.factory.ConsumerFactory;
-import org.yinqin.mqs.common.handler.MessageHandler;
+import org.yinqin.mqs.common.handler.HandlerDefinition;
+import org.yinqin.mqs.common.handler.KeyShardedExecutor;
 import org.yinqin.mqs.common.service.MessageConsumer;
 import org.yinqin.mqs.common.util.ConvertUtil;
 import org.yinqin.mqs.rocketmq.consumer.CustomRocketmqConsumer;
 
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 /**
  * rocketmq事务消费者工厂类
  *
  * @author YinQin
- * @version 1.0.6
+ * @version 1.0.8
  * @createDate 2023年11月27日
  * @see ConsumerFactory
  * @since 1.0.6
@@ -21,14 +24,18 @@ import java.util.Map;
 public class RocketmqTranConsumerFactory extends ConsumerFactory implements CreateRocketmqConsumer {
 
     @Override
-    public MessageConsumer createConsumer(String instanceId, MqsProperties.AdapterProperties properties, Map<String, MessageHandler> messageHandlers) {
-        CustomRocketmqConsumer consumer = new CustomRocketmqConsumer(instanceId, properties);
-        init(consumer.getConsumer(), properties);
-        consumer.getConsumer().setConsumeMessageBatchMaxSize(1);
+    public MessageConsumer createConsumer(String instanceId, MqsProperties.AdapterProperties properties, Map<String, HandlerDefinition> messageHandlers) {
         String groupName = ConvertUtil.convertName(properties.getGroupName(), properties.getGroup());
+        if (isLitePull(properties)) return createLitePullConsumer(instanceId, Constants.TRAN, groupName, properties, messageHandlers);
+        CustomRocketmqConsumer consumer = new CustomRocketmqConsumer(instanceId, properties);
+        init(consumer.getConsumer(), instanceId, properties);
+        // 开启分片并行消费时每次回调取多条消息按bizKey分片，否则每次只取一条
+        ExecutorService lanePool = createLanePool(instanceId, properties);
+        if (lanePool == null) consumer.getConsumer().setConsumeMessageBatchMaxSize(1);
+        consumer.setWorkerPool(lanePool);
         consumer.getConsumer().setConsumerGroup(groupName);
         subscribe(consumer.getConsumer(), instanceId, groupName, messageHandlers);
-        registerMessageListenerOrderly(consumer.getConsumer(), messageHandlers);
+        registerMessageListenerOrderly(consumer.getConsumer(), messageHandlers, lanePool == null ? null : new KeyShardedExecutor(lanePool, properties.getRocketmq().getOrderlyLanes()));
         return consumer;
     }
 }
@@ -0,0 +1,49 @@
+package org.yinqin.mqs.rocketmq.producer;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.rocketmq.client.producer.MessageQueueSelector;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.yinqin.mqs.common.partitioner.BizKeyPartitioner;
+
+import java.util.List;
+
+/**
+ * 按bizKey选择rocketmq队列的选择器，每个生产者只创建一个
+ * 配置了分区策略时对任意非空bizKey按分区策略选择队列；
+ * 否则兼容旧版本，只对数字bizKey选择队列，其余消息由rocketmq轮询选择队列
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see BizKeyPartitioner
+ * @see CustomRocketmqProducer
+ * @since 1.0.8
+ */
+public class BizKeyQueueSelector implements MessageQueueSelector {
+
+    /**
+     * 分区策略，为空时使用旧版本的选择方式
+     */
+    private final BizKeyPartitioner partitioner;
+
+    public BizKeyQueueSelector(BizKeyPartitioner partitioner) {
+        this.partitioner = partitioner;
+    }
+
+    /**
+     * @param bizKey 业务键
+     * @return 是否由本选择器选择队列
+     */
+    public boolean accepts(String bizKey) {
+        if (partitioner != null) return StringUtils.isNotEmpty(bizKey);
+        return StringUtils.isNotBlank(bizKey) && StringUtils.isNumeric(bizKey);
+    }
+
+    @Override
+    public MessageQueue select(List<MessageQueue> list, Message message, Object arg) {
+        if (partitioner != null) return list.get(partitioner.partition(arg.toString(), list.size()));
+        int id = (arg.hashCode() & 0x7FFFFFFF) % 100 + 1;
+        return list.get(id % list.size());
+    }
+}
@@ -1,11 +1,12 @@
 package org.yinqin.mqs.rocketmq.producer;
 
-import org.apache.commons.lang3.StringUtils;
+import cn.hutool.core.thread.ThreadUtil;
 import org.apache.rocketmq.acl.common.AclClientRPCHook;
 import org.apache.rocketmq.client.AccessChannel;
 import org.apache.rocketmq.client.exception.MQClientException;
 import org.apache.rocketmq.client.producer.*;
 import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageClientIDSetter;
 import org.apache.rocketmq.common.message.MessageQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,18 +15,25 @@ import org.yinqin.mqs.common.config.MqsProperties.AdapterProperties;
 import org.yinqin.mqs.common.entity.AdapterMessage;
 import org.yinqin.mqs.common.entity.MessageCallback;
 import org.yinqin.mqs.common.entity.MessageSendResult;
+import org.yinqin.mqs.common.partitioner.BizKeyPartitioner;
 import org.yinqin.mqs.common.service.MessageProducer;
 import org.yinqin.mqs.common.util.ConvertUtil;
+import org.yinqin.mqs.rocketmq.SharedClientRegistry;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
  * 自定义rocketmq生产者
  *
  * @author YinQin
- * @version 1.0.6
+ * @version 1.0.8
  * @createDate 2023年10月13日
  * @see org.yinqin.mqs.common.service.MessageConsumer
  * @since 1.0.0
@@ -36,6 +44,11 @@ public class CustomRocketmqProducer implements MessageProducer {
 
     private static final String SYNC_SEND_ERROR_MESSAGE = "同步消息发送失败，失败原因：";
 
+    /**
+     * 估算批量消息大小时每条消息的额外开销，包括消息编码头和发送时追加的唯一ID属性
+     */
+    private static final int MESSAGE_OVERHEAD = 64;
+
     /**
      * 实例ID
      */
@@ -51,7 +64,38 @@ public class CustomRocketmqProducer implements MessageProducer {
      */
     private final DefaultMQProducer producer;
 
+    /**
+     * 按bizKey选择队列的选择器
+     */
+    private final BizKeyQueueSelector queueSelector;
+
+    /**
+     * 异步发送累积器，未开启发送累积时为空
+     */
+    private final SendAccumulator sendAccumulator;
+
+    /**
+     * 是否使用共享客户端实例，生产者池中第一个以外的生产者不共用
+     */
+    private final boolean sharedClient;
+
+    /**
+     * 停止时等待累积的消息发送完成的最长时间，单位：毫秒
+     */
+    private static final long ACCUMULATOR_CLOSE_TIMEOUT = 10000;
+
     public CustomRocketmqProducer(String instanceId, AdapterProperties rocketmqProperties) {
+        this(instanceId, rocketmqProperties, -1);
+    }
+
+    /**
+     * 创建生产者，生产者池中第一个以外的生产者使用独立的客户端实例，同一客户端实例中不能重复注册同一生产者组
+     *
+     * @param instanceId         实例ID
+     * @param rocketmqProperties 实例配置
+     * @param poolIndex          生产者在生产者池中的序号，不在池中时为-1
+     */
+    public CustomRocketmqProducer(String instanceId, AdapterProperties rocketmqProperties, int poolIndex) {
         this.instanceId = instanceId;
         this.rocketmqProperties = rocketmqProperties;
         logger.info("实例：{} 生产者创建中，创建配置：{}", instanceId, rocketmqProperties);
@@ -62,8 +106,14 @@ public class CustomRocketmqProducer implements MessageProducer {
             producer = new DefaultMQProducer(groupName);
         }
         producer.resetClientConfig(rocketmqProperties.getRocketmq().getClientConfig());
-        producer.setInstanceName(UUID.randomUUID().toString().replace("-", "").substring(0, 8));
+        String instanceName = ConvertUtil.rocketmqInstanceName(instanceId, rocketmqProperties);
+        producer.setInstanceName(poolIndex > 0 ? instanceName + Constants.HYPHEN + poolIndex : instanceName);
+        sharedClient = rocketmqProperties.getRocketmq().isShareClientInstance() && poolIndex <= 0;
         producer.setAccessChannel(AccessChannel.CLOUD);
+        queueSelector = new BizKeyQueueSelector(BizKeyPartitioner.of(rocketmqProperties.getPartitioner()));
+        AdapterProperties.CustomRocketmqProperties rocketmq = rocketmqProperties.getRocketmq();
+        long sendLingerMs = rocketmq.getSendLingerMs();
+        sendAccumulator = sendLingerMs > 0 ? new SendAccumulator(instanceId, producer, queueSelector, sendLingerMs, rocketmq.getSendBatchMaxBytes(), rocketmq.getSendBufferMaxBytes(), rocketmq.getSendBatchThreads()) : null;
     }
 
     /**
@@ -76,6 +126,11 @@ public class CustomRocketmqProducer implements MessageProducer {
         } catch (MQClientException e) {
             logger.error("实例：{} 生产者启动失败", instanceId, e);
         }
+        if (sharedClient) {
+            SharedClientRegistry.registerProducer(producer.buildMQClientId());
+            logger.info("实例：{} 生产者使用共享客户端实例：{}", instanceId, producer.buildMQClientId());
+        }
+        if (sendAccumulator != null) ThreadUtil.newThread(sendAccumulator, instanceId + "-send-accumulator").start();
         logger.info("实例：{} 生产者启动成功", instanceId);
     }
 
@@ -93,18 +148,13 @@ public class CustomRocketmqProducer implements MessageProducer {
         try {
             String bizKey = adapterMessage.getBizKey();
             SendResult sendResult;
-            if (StringUtils.isNotBlank(bizKey) && StringUtils.isNumeric(bizKey)) {
-                sendResult = producer.send(message, new CustomMessageQueueSelector(),bizKey);
+            if (queueSelector.accepts(bizKey)) {
+                sendResult = producer.send(message, queueSelector, bizKey);
             } else {
                 sendResult = producer.send(message);
             }
             adapterMessage.setMsgId(sendResult.getMsgId());
-            if (sendResult.getSendStatus() == SendStatus.SEND_OK) {
-                messageSendResult.setStatus(Constants.SUCCESS);
-            } else {
-                messageSendResult.setStatus(Constants.ERROR);
-                messageSendResult.setThrowable(new MQClientException(0, sendResult.getSendStatus().name()));
-            }
+            fillSendResult(messageSendResult, sendResult);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt(); // 恢复中断状态
             messageSendResult.setStatus(Constants.ERROR);
@@ -118,15 +168,6 @@ public class CustomRocketmqProducer implements MessageProducer {
         return messageSendResult;
     }
 
-    private static class CustomMessageQueueSelector implements MessageQueueSelector {
-        @Override
-        public MessageQueue select(List<MessageQueue> list, Message message, Object o) {
-            int id = (o.hashCode() & 0x7FFFFFFF) % 100 + 1;
-            int index = id % list.size();
-            return list.get(index);
-        }
-    }
-
     /**
      * 同步发送消息方法
      *
@@ -142,18 +183,13 @@ public class CustomRocketmqProducer implements MessageProducer {
         try {
             String bizKey = adapterMessage.getBizKey();
             SendResult sendResult;
-            if (StringUtils.isNotBlank(bizKey) && StringUtils.isNumeric(bizKey)) {
-                sendResult = producer.send(message, new CustomMessageQueueSelector() ,bizKey,unit.toMillis(timeout));
+            if (queueSelector.accepts(bizKey)) {
+                sendResult = producer.send(message, queueSelector, bizKey, unit.toMillis(timeout));
             } else {
                 sendResult = producer.send(message, unit.toMillis(timeout));
             }
             adapterMessage.setMsgId(sendResult.getMsgId());
-            if (sendResult.getSendStatus() == SendStatus.SEND_OK) {
-                messageSendResult.setStatus(Constants.SUCCESS);
-            } else {
-                messageSendResult.setStatus(Constants.ERROR);
-                messageSendResult.setThrowable(new MQClientException(0, sendResult.getSendStatus().name()));
-            }
+            fillSendResult(messageSendResult, sendResult);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt(); // 恢复中断状态
             messageSendResult.setStatus(Constants.ERROR);
@@ -168,7 +204,7 @@ public class CustomRocketmqProducer implements MessageProducer {
     }
 
     /**
-     * 异步发送消息方法
+     * 异步发送消息方法，开启发送累积时交给累积器合并发送
      *
      * @param adapterMessage 消息
      * @param callback       消息发送结果回调
@@ -176,13 +212,21 @@ public class CustomRocketmqProducer implements MessageProducer {
     @Override
     public void sendMessage(AdapterMessage adapterMessage, MessageCallback callback) {
         Message message = ConvertUtil.adapterMessageToRocketmqMessage(adapterMessage, rocketmqProperties.getTopic());
+        if (sendAccumulator != null) {
+            sendAccumulator.append(message, adapterMessage, callback);
+            return;
+        }
         try {
             String bizKey = adapterMessage.getBizKey();
             SendCallback sendCallback = new SendCallback() {
                 @Override
                 public void onSuccess(SendResult sendResult) {
                     adapterMessage.setMsgId(sendResult.getMsgId());
-                    if (callback != null) callback.onSuccess();
+                    if (callback == null) return;
+                    MessageSendResult messageSendResult = new MessageSendResult();
+                    fillSendResult(messageSendResult, sendResult);
+                    if (messageSendResult.getStatus() == Constants.SUCCESS) callback.onSuccess(messageSendResult);
+                    else callback.onError(messageSendResult.getThrowable());
                 }
 
                 @Override
@@ -190,29 +234,196 @@ public class CustomRocketmqProducer implements MessageProducer {
                     if (callback != null) callback.onError(e);
                 }
             };
-            if (StringUtils.isNotBlank(bizKey) && StringUtils.isNumeric(bizKey)) {
-                producer.send(message, new CustomMessageQueueSelector() ,bizKey,sendCallback);
+            if (queueSelector.accepts(bizKey)) {
+                producer.send(message, queueSelector, bizKey, sendCallback);
             } else {
                 producer.send(message, sendCallback);
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt(); // 恢复中断状态
             logger.error("异步消息发送失败，失败原因：", e);
+            if (callback != null) callback.onError(e);
         } catch (Exception e) {
             logger.error("异步消息发送失败，失败原因：", e);
+            if (callback != null) callback.onError(e);
+        }
+    }
+
+    /**
+     * 批量发送消息方法
+     * 按topic和队列分组，队列选择器接受bizKey的消息按与单条发送相同的规则选择队列，其余消息由rocketmq选择队列；
+     * 每组按maxMessageSize拆分为多个批次，每个批次一次请求发送
+     *
+     * @param adapterMessages 消息集合
+     * @return 与消息顺序一致的发送结果，同一批次的消息发送结果相同
+     */
+    @Override
+    public List<MessageSendResult> sendBatch(List<AdapterMessage> adapterMessages) {
+        MessageSendResult[] results = new MessageSendResult[adapterMessages.size()];
+        List<Message> messages = new ArrayList<>(adapterMessages.size());
+        // 未指定队列的消息以null为键
+        Map<String, Map<MessageQueue, List<Integer>>> groups = new LinkedHashMap<>();
+        Map<String, List<MessageQueue>> topicQueues = new HashMap<>();
+        for (int i = 0; i < adapterMessages.size(); i++) {
+            Message message = ConvertUtil.adapterMessageToRocketmqMessage(adapterMessages.get(i), rocketmqProperties.getTopic());
+            messages.add(message);
+            String bizKey = adapterMessages.get(i).getBizKey();
+            MessageQueue queue = null;
+            if (queueSelector.accepts(bizKey)) {
+                try {
+                    List<MessageQueue> queues = topicQueues.get(message.getTopic());
+                    if (queues == null) {
+                        queues = producer.fetchPublishMessageQueues(message.getTopic());
+                        topicQueues.put(message.getTopic(), queues);
+                    }
+                    queue = queueSelector.select(queues, message, bizKey);
+                } catch (Exception e) {
+                    results[i] = failedResult(e);
+                    continue;
+                }
+            }
+            groups.computeIfAbsent(message.getTopic(), k -> new LinkedHashMap<>()).computeIfAbsent(queue, k -> new ArrayList<>()).add(i);
+        }
+        for (Map<MessageQueue, List<Integer>> queueGroups : groups.values()) {
+            for (Map.Entry<MessageQueue, List<Integer>> entry : queueGroups.entrySet()) {
+                for (List<Integer> batch : split(entry.getValue(), messages)) sendBatch(batch, entry.getKey(), messages, adapterMessages, results);
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * 按maxMessageSize拆分同一组消息，超过上限的单条消息单独成为一个批次
+     *
+     * @param indexes  同一组消息的下标
+     * @param messages rocketmq原生消息
+     * @return 批次
+     */
+    private List<List<Integer>> split(List<Integer> indexes, List<Message> messages) {
+        List<List<Integer>> batches = new ArrayList<>();
+        List<Integer> batch = new ArrayList<>();
+        long batchSize = 0;
+        for (Integer index : indexes) {
+            int size = estimateSize(messages.get(index));
+            if (!batch.isEmpty() && batchSize + size > producer.getMaxMessageSize()) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                batchSize = 0;
+            }
+            batch.add(index);
+            batchSize += size;
         }
+        if (!batch.isEmpty()) batches.add(batch);
+        return batches;
     }
 
+    /**
+     * 估算消息编码后的大小，topic和属性按UTF-8编码后的字节数计算
+     *
+     * @param message rocketmq原生消息
+     * @return 消息大小，单位：字节
+     */
+    static int estimateSize(Message message) {
+        int size = utf8Length(message.getTopic()) + (message.getBody() == null ? 0 : message.getBody().length) + MESSAGE_OVERHEAD;
+        if (message.getProperties() != null) {
+            for (Map.Entry<String, String> property : message.getProperties().entrySet()) size += utf8Length(property.getKey()) + utf8Length(property.getValue()) + 2;
+        }
+        return size;
+    }
 
+    private static int utf8Length(String value) {
+        return value.getBytes(StandardCharsets.UTF_8).length;
+    }
 
+    /**
+     * 一次请求发送一个批次
+     *
+     * @param batch           批次消息下标
+     * @param queue           指定的队列，为空时由rocketmq选择
+     * @param messages        rocketmq原生消息
+     * @param adapterMessages 消息集合
+     * @param results         发送结果
+     */
+    private void sendBatch(List<Integer> batch, MessageQueue queue, List<Message> messages, List<AdapterMessage> adapterMessages, MessageSendResult[] results) {
+        List<Message> batchMessages = new ArrayList<>(batch.size());
+        for (Integer index : batch) batchMessages.add(messages.get(index));
+        try {
+            SendResult sendResult = queue == null ? producer.send(batchMessages) : producer.send(batchMessages, queue);
+            for (int i = 0; i < batch.size(); i++) {
+                MessageSendResult messageSendResult = batchResult(sendResult, batchMessages.get(i), i);
+                adapterMessages.get(batch.get(i)).setMsgId(messageSendResult.getMsgId());
+                results[batch.get(i)] = messageSendResult;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // 恢复中断状态
+            logger.error("批量消息发送失败，失败原因：", e);
+            for (Integer index : batch) results[index] = failedResult(e);
+        } catch (Exception e) {
+            logger.error("批量消息发送失败，失败原因：", e);
+            for (Integer index : batch) results[index] = failedResult(e);
+        }
+    }
 
+    /**
+     * 根据批量发送结果生成批次中一条消息的发送结果
+     *
+     * @param sendResult rocketmq批量发送结果
+     * @param message    批次中的消息
+     * @param position   消息在批次中的位置
+     * @return 消息发送结果，消息ID取发送时为该消息生成的唯一ID，位移为批次第一条消息的位移加上消息在批次中的位置
+     */
+    static MessageSendResult batchResult(SendResult sendResult, Message message, int position) {
+        MessageSendResult messageSendResult = new MessageSendResult();
+        fillSendResult(messageSendResult, sendResult);
+        messageSendResult.setMsgId(MessageClientIDSetter.getUniqID(message));
+        if (sendResult.getQueueOffset() >= 0) messageSendResult.setOffset(sendResult.getQueueOffset() + position);
+        return messageSendResult;
+    }
 
     /**
-     * 停止rocketmq生产者
+     * @param throwable 失败原因
+     * @return 发送失败的消息发送结果
+     */
+    private static MessageSendResult failedResult(Throwable throwable) {
+        MessageSendResult messageSendResult = new MessageSendResult();
+        messageSendResult.setStatus(Constants.ERROR);
+        messageSendResult.setThrowable(throwable);
+        return messageSendResult;
+    }
+
+    /**
+     * 根据rocketmq发送结果填充消息发送结果，发送状态不是SEND_OK时视为发送失败
+     *
+     * @param messageSendResult 消息发送结果
+     * @param sendResult        rocketmq发送结果
+     */
+    private static void fillSendResult(MessageSendResult messageSendResult, SendResult sendResult) {
+        messageSendResult.setMsgId(sendResult.getMsgId());
+        if (sendResult.getMessageQueue() != null) {
+            messageSendResult.setTopic(sendResult.getMessageQueue().getTopic());
+            messageSendResult.setPartition(sendResult.getMessageQueue().getQueueId());
+        }
+        messageSendResult.setOffset(sendResult.getQueueOffset());
+        if (sendResult.getSendStatus() == SendStatus.SEND_OK) {
+            messageSendResult.setStatus(Constants.SUCCESS);
+        } else {
+            messageSendResult.setStatus(Constants.ERROR);
+            messageSendResult.setThrowable(new MQClientException(0, sendResult.getSendStatus().name()));
+        }
+    }
+
+    /**
+     * 停止rocketmq生产者，开启发送累积时先等待累积的消息发送完成
+     *
+     * @throws InterruptedException 等待时被中断
      */
     @Override
-    public void destroy() {
+    public void destroy() throws InterruptedException {
+        if (sendAccumulator != null && !sendAccumulator.close(ACCUMULATOR_CLOSE_TIMEOUT)) {
+            logger.warn("实例：{} 等待累积的消息发送完成超时", instanceId);
+        }
         producer.shutdown();
+        if (sharedClient) SharedClientRegistry.unregisterProducer(producer.buildMQClientId());
         logger.info("实例：{} 生产者停止成功", instanceId);
     }
 
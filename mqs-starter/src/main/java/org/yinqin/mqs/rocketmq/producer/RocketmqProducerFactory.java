@@ -9,11 +9,16 @@ import org.yinqin.mqs.common.service.MessageProducer;
  * @author YinQin
  * @createDate 2023年11月27日
  * @since 1.0.6
- * @version 1.0.6
+ * @version 1.0.8
  */
 public class RocketmqProducerFactory extends ProducerFactory {
     @Override
     public MessageProducer createProducer(String instanceId, MqsProperties.AdapterProperties rocketmqProperties) {
         return new CustomRocketmqProducer(instanceId, rocketmqProperties);
     }
+
+    @Override
+    protected MessageProducer createProducer(String instanceId, MqsProperties.AdapterProperties rocketmqProperties, int poolIndex) {
+        return new CustomRocketmqProducer(instanceId, rocketmqProperties, poolIndex);
+    }
 }
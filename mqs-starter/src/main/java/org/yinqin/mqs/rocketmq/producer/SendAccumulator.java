@@ -0,0 +1,448 @@
+package org.yinqin.mqs.rocketmq.producer;
+
+import cn.hutool.core.thread.ThreadUtil;
+import org.apache.rocketmq.client.exception.MQClientException;
+import org.apache.rocketmq.client.producer.DefaultMQProducer;
+import org.apache.rocketmq.client.producer.SendResult;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yinqin.mqs.common.Constants;
+import org.yinqin.mqs.common.entity.AdapterMessage;
+import org.yinqin.mqs.common.entity.MessageCallback;
+import org.yinqin.mqs.common.entity.MessageSendResult;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * rocketmq异步发送累积器
+ * 异步发送和单向发送的消息按topic和队列累积，等待超过linger时间或累积大小达到上限后，由调度线程取出批次，
+ * 按队列交给固定的批量发送线程合并为批量消息发送，再逐条回调每条消息的发送结果；
+ * 同一队列的批次始终由同一发送线程按顺序发送，不同队列的批次并行发送；有bizKey的消息按与单条发送相同的规则选择队列；
+ * 累积和发送中的消息大小之和达到缓冲区上限时，追加消息的线程等待发送完成释放空间，超过生产者发送超时时间后回调失败
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see CustomRocketmqProducer
+ * @since 1.0.8
+ */
+public class SendAccumulator implements Runnable {
+
+    private final Logger logger = LoggerFactory.getLogger(SendAccumulator.class);
+
+    /**
+     * topic队列信息缓存时间，单位：毫秒，与rocketmq客户端从nameserver刷新路由的默认间隔一致
+     */
+    private static final long ROUTE_REFRESH_INTERVAL = 30000;
+
+    /**
+     * 未指定队列时批次键中的队列ID
+     */
+    private static final int ANY_QUEUE = -1;
+
+    /**
+     * rocketmq源生生产者
+     */
+    private final DefaultMQProducer producer;
+
+    /**
+     * 按bizKey选择队列的选择器
+     */
+    private final BizKeyQueueSelector selector;
+
+    /**
+     * 批次等待时间，单位：毫秒
+     */
+    private final long lingerMs;
+
+    /**
+     * 单个批次的大小上限，单位：字节
+     */
+    private final int maxBytes;
+
+    /**
+     * 累积和发送中的消息大小之和上限，单位：字节
+     */
+    private final long maxBufferedBytes;
+
+    /**
+     * 缓冲区已满时追加消息的最长等待时间，单位：毫秒
+     */
+    private final long maxBlockMs;
+
+    /**
+     * 批量发送线程，同一队列的批次由同一线程发送
+     */
+    private final ExecutorService[] senders;
+
+    /**
+     * 累积中的批次，键为topic和队列，未指定队列时队列ID为{@link #ANY_QUEUE}，只在持有锁时访问
+     */
+    private final Map<MessageQueue, Batch> batches = new LinkedHashMap<>();
+
+    /**
+     * 已达到大小上限等待发送的批次，只在持有锁时访问
+     */
+    private final List<Batch> ready = new ArrayList<>();
+
+    /**
+     * 批次锁，发送线程在此等待
+     */
+    private final Object lock = new Object();
+
+    /**
+     * 各topic的队列信息缓存
+     */
+    private final Map<String, TopicRoute> routes = new ConcurrentHashMap<>();
+
+    /**
+     * 发送线程结束信号
+     */
+    private final CountDownLatch terminated = new CountDownLatch(1);
+
+    /**
+     * 累积和发送中的消息大小之和，单位：字节，只在持有锁时访问
+     */
+    private long bufferedBytes;
+
+    /**
+     * 停止标记，只在持有锁时修改
+     */
+    private volatile boolean closed;
+
+    /**
+     * @param name             线程名称前缀
+     * @param producer         rocketmq源生生产者
+     * @param selector         按bizKey选择队列的选择器
+     * @param lingerMs         批次等待时间，单位：毫秒
+     * @param maxBytes         单个批次的大小上限，单位：字节
+     * @param maxBufferedBytes 累积和发送中的消息大小之和上限，单位：字节
+     * @param senderThreads    批量发送线程数
+     */
+    public SendAccumulator(String name, DefaultMQProducer producer, BizKeyQueueSelector selector, long lingerMs, int maxBytes, long maxBufferedBytes, int senderThreads) {
+        this.producer = producer;
+        this.selector = selector;
+        this.lingerMs = lingerMs;
+        this.maxBytes = Math.min(maxBytes, producer.getMaxMessageSize());
+        this.maxBufferedBytes = Math.max(maxBufferedBytes, this.maxBytes);
+        this.maxBlockMs = producer.getSendMsgTimeout();
+        this.senders = new ExecutorService[Math.max(1, senderThreads)];
+        for (int i = 0; i < senders.length; i++) {
+            senders[i] = Executors.newSingleThreadExecutor(ThreadUtil.newNamedThreadFactory(name + "-send-batch-" + i + Constants.HYPHEN, false));
+        }
+    }
+
+    /**
+     * 追加消息，追加的消息超过批次剩余空间时，先将当前批次交给发送线程；
+     * 缓冲区已满时等待发送完成释放空间，缓冲区为空时任意大小的消息都可以追加
+     *
+     * @param message        rocketmq原生消息
+     * @param adapterMessage 消息
+     * @param callback       消息发送结果回调，可以为空
+     */
+    public void append(Message message, AdapterMessage adapterMessage, MessageCallback callback) {
+        MessageQueue queue;
+        try {
+            queue = selectQueue(message, adapterMessage.getBizKey());
+        } catch (MQClientException e) {
+            logger.error("异步消息发送失败，失败原因：", e);
+            onError(callback, e);
+            return;
+        }
+        Entry entry = new Entry(message, adapterMessage, callback, CustomRocketmqProducer.estimateSize(message));
+        Exception failure;
+        synchronized (lock) {
+            try {
+                if (!awaitSpace(entry.size)) {
+                    failure = new MQClientException("累积消息缓冲区已满，等待" + maxBlockMs + "毫秒后仍无空间", null);
+                } else if (!closed) {
+                    bufferedBytes += entry.size;
+                    Batch batch = batches.get(queue);
+                    if (batch != null && batch.bytes + entry.size > maxBytes) {
+                        ready.add(batches.remove(queue));
+                        batch = null;
+                    }
+                    if (batch == null) {
+                        batch = new Batch(queue);
+                        batches.put(queue, batch);
+                    }
+                    batch.add(entry);
+                    if (batch.bytes >= maxBytes) ready.add(batches.remove(queue));
+                    lock.notifyAll();
+                    return;
+                } else {
+                    failure = new MQClientException("生产者已停止", null);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt(); // 恢复中断状态
+                failure = e;
+            }
+        }
+        // 在锁外回调，避免回调中再次发送时阻塞发送线程
+        logger.error("异步消息发送失败，topic：{}，失败原因：{}", message.getTopic(), failure.getMessage());
+        onError(callback, failure);
+    }
+
+    /**
+     * 发送到期和已满的批次，没有可发送的批次时等待到最近一个批次到期；
+     * 停止后发送全部剩余批次再退出
+     */
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                List<Batch> due;
+                synchronized (lock) {
+                    due = drainDue();
+                    if (due.isEmpty()) {
+                        if (closed) break;
+                        long remaining = remainingLinger();
+                        lock.wait(remaining == Long.MAX_VALUE ? 0 : Math.max(1, remaining));
+                        continue;
+                    }
+                }
+                for (Batch batch : due) senders[(batch.queue.hashCode() & Integer.MAX_VALUE) % senders.length].execute(() -> send(batch));
+            }
+            // 等待已交给发送线程的批次发送完成
+            for (ExecutorService sender : senders) sender.shutdown();
+            for (ExecutorService sender : senders) sender.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("发送线程被中断，未发送的消息将回调失败");
+            // 已交给发送线程的批次继续发送并回调结果
+            for (ExecutorService sender : senders) sender.shutdown();
+            List<Batch> remaining;
+            synchronized (lock) {
+                closed = true;
+                remaining = drainDue();
+            }
+            for (Batch batch : remaining) {
+                for (Entry entry : batch.entries) onError(entry.callback, e);
+            }
+        } finally {
+            terminated.countDown();
+        }
+    }
+
+    /**
+     * 停止追加消息，在限定时间内等待调度线程和发送线程发送全部剩余批次
+     *
+     * @param timeout 最长等待时间，单位：毫秒
+     * @return 剩余批次是否全部发送完成
+     * @throws InterruptedException 等待时被中断
+     */
+    public boolean close(long timeout) throws InterruptedException {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        return terminated.await(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 取出已满和已到期的批次，停止后取出全部批次
+     *
+     * @return 可以发送的批次
+     */
+    private List<Batch> drainDue() {
+        List<Batch> due = new ArrayList<>(ready);
+        ready.clear();
+        long now = System.currentTimeMillis();
+        Iterator<Batch> iterator = batches.values().iterator();
+        while (iterator.hasNext()) {
+            Batch batch = iterator.next();
+            if (!closed && now - batch.createTime < lingerMs) continue;
+            due.add(batch);
+            iterator.remove();
+        }
+        return due;
+    }
+
+    /**
+     * @return 距离最早一个批次到期的剩余毫秒数，没有批次时返回{@link Long#MAX_VALUE}
+     */
+    private long remainingLinger() {
+        long remaining = Long.MAX_VALUE;
+        long now = System.currentTimeMillis();
+        for (Batch batch : batches.values()) remaining = Math.min(remaining, batch.createTime + lingerMs - now);
+        return remaining;
+    }
+
+    /**
+     * 缓冲区已满时等待，只在持有锁时调用
+     *
+     * @param size 追加的消息大小
+     * @return 是否有足够空间或已停止，等待超时返回false
+     * @throws InterruptedException 等待时被中断
+     */
+    private boolean awaitSpace(int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + maxBlockMs;
+        while (!closed && bufferedBytes > 0 && bufferedBytes + size > maxBufferedBytes) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) return false;
+            lock.wait(remaining);
+        }
+        return true;
+    }
+
+    /**
+     * 发送批次并释放缓冲区空间
+     *
+     * @param batch 批次
+     */
+    private void send(Batch batch) {
+        try {
+            sendBatch(batch);
+        } finally {
+            synchronized (lock) {
+                bufferedBytes -= batch.bytes;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 一次请求发送一个批次，逐条回调发送结果，发送失败时批次中的所有消息回调失败
+     *
+     * @param batch 批次
+     */
+    private void sendBatch(Batch batch) {
+        List<Message> messages = new ArrayList<>(batch.entries.size());
+        for (Entry entry : batch.entries) messages.add(entry.message);
+        SendResult sendResult;
+        try {
+            sendResult = batch.queue.getQueueId() == ANY_QUEUE ? producer.send(messages) : producer.send(messages, batch.queue);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // 恢复中断状态
+            logger.error("累积批量消息发送失败，失败原因：", e);
+            for (Entry entry : batch.entries) onError(entry.callback, e);
+            return;
+        } catch (Exception e) {
+            logger.error("累积批量消息发送失败，失败原因：", e);
+            for (Entry entry : batch.entries) onError(entry.callback, e);
+            return;
+        }
+        for (int i = 0; i < batch.entries.size(); i++) {
+            Entry entry = batch.entries.get(i);
+            MessageSendResult messageSendResult = CustomRocketmqProducer.batchResult(sendResult, entry.message, i);
+            entry.adapterMessage.setMsgId(messageSendResult.getMsgId());
+            if (entry.callback == null) continue;
+            try {
+                if (messageSendResult.getStatus() == Constants.SUCCESS) entry.callback.onSuccess(messageSendResult);
+                else entry.callback.onError(messageSendResult.getThrowable());
+            } catch (Exception e) {
+                logger.error("消息发送结果回调异常：", e);
+            }
+        }
+    }
+
+    /**
+     * 选择消息的批次队列，队列选择器接受bizKey时按选择器选择，否则由rocketmq在发送批次时选择
+     *
+     * @param message rocketmq原生消息
+     * @param bizKey  业务键
+     * @return 批次队列
+     * @throws MQClientException 查询topic队列信息失败
+     */
+    private MessageQueue selectQueue(Message message, String bizKey) throws MQClientException {
+        if (!selector.accepts(bizKey)) return new MessageQueue(message.getTopic(), null, ANY_QUEUE);
+        TopicRoute route = routes.get(message.getTopic());
+        long now = System.currentTimeMillis();
+        if (route == null || now - route.fetchTime >= ROUTE_REFRESH_INTERVAL) {
+            route = new TopicRoute(producer.fetchPublishMessageQueues(message.getTopic()), now);
+            routes.put(message.getTopic(), route);
+        }
+        return selector.select(route.queues, message, bizKey);
+    }
+
+    private void onError(MessageCallback callback, Throwable throwable) {
+        if (callback == null) return;
+        try {
+            callback.onError(throwable);
+        } catch (Exception e) {
+            logger.error("消息发送结果回调异常：", e);
+        }
+    }
+
+    /**
+     * 累积的一条消息
+     */
+    private static class Entry {
+
+        private final Message message;
+
+        private final AdapterMessage adapterMessage;
+
+        private final MessageCallback callback;
+
+        /**
+         * 估算的消息大小，单位：字节
+         */
+        private final int size;
+
+        private Entry(Message message, AdapterMessage adapterMessage, MessageCallback callback, int size) {
+            this.message = message;
+            this.adapterMessage = adapterMessage;
+            this.callback = callback;
+            this.size = size;
+        }
+    }
+
+    /**
+     * 同一topic和队列的累积批次
+     */
+    private static class Batch {
+
+        private final MessageQueue queue;
+
+        private final List<Entry> entries = new ArrayList<>();
+
+        /**
+         * 批次创建时间
+         */
+        private final long createTime = System.currentTimeMillis();
+
+        /**
+         * 批次中消息的估算大小之和，单位：字节
+         */
+        private int bytes;
+
+        private Batch(MessageQueue queue) {
+            this.queue = queue;
+        }
+
+        private void add(Entry entry) {
+            entries.add(entry);
+            bytes += entry.size;
+        }
+    }
+
+    /**
+     * topic队列信息
+     */
+    private static class TopicRoute {
+
+        private final List<MessageQueue> queues;
+
+        /**
+         * 查询时间
+         */
+        private final long fetchTime;
+
+        private TopicRoute(List<MessageQueue> queues, long fetchTime) {
+            this.queues = queues;
+            this.fetchTime = fetchTime;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.yinqin.mqs.common.flow;
+
+import org.junit.Test;
+import org.yinqin.mqs.common.config.MqsProperties.AdapterProperties.FlowControlProperties;
+import org.yinqin.mqs.common.exception.MqsFlowControlException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * 生产者流控器测试
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see FlowController
+ * @since 1.0.8
+ */
+public class FlowControllerTest {
+
+    @Test
+    public void refundsInstanceTokensWhenTopicRateRejects() throws InterruptedException {
+        FlowControlProperties properties = new FlowControlProperties();
+        properties.setRate(2);
+        properties.setTopicRate(1);
+        properties.setOverflowPolicy(FlowController.FAIL);
+        FlowController flowController = new FlowController(properties);
+        flowController.release(flowController.acquire("A", 1, 0, null));
+        try {
+            flowController.acquire("A", 1, 0, null);
+            fail();
+        } catch (MqsFlowControlException e) {
+            // topic令牌不足，实例令牌已归还
+        }
+        flowController.release(flowController.acquire("B", 1, 0, null));
+        assertEquals(1, flowController.metrics().getRejected());
+    }
+
+    @Test
+    public void waitsForRateWithoutHoldingInFlightPermits() throws Exception {
+        FlowControlProperties properties = new FlowControlProperties();
+        properties.setRate(1);
+        properties.setTopicMaxInFlightMessages(2);
+        properties.setMaxBlockMs(5000);
+        FlowController flowController = new FlowController(properties);
+        FlowController.Permit first = flowController.acquire("A", 1, 0, null);
+        CompletableFuture<FlowController.Permit> second = CompletableFuture.supplyAsync(() -> {
+            try {
+                return flowController.acquire("A", 1, 0, null);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(300);
+        // 第二个请求等待速率令牌期间只有第一个请求占用topic在途许可
+        assertEquals(1L, (long) flowController.metrics().getTopicInFlightMessages().get("A"));
+        flowController.release(second.get(5, TimeUnit.SECONDS));
+        flowController.release(first);
+        assertEquals(0L, (long) flowController.metrics().getTopicInFlightMessages().get("A"));
+    }
+}
@@ -0,0 +1,68 @@
+package org.yinqin.mqs.common.flow;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 令牌桶测试
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see TokenBucket
+ * @since 1.0.8
+ */
+public class TokenBucketTest {
+
+    @Test
+    public void allowsOneSecondBurst() {
+        TokenBucket bucket = new TokenBucket(10);
+        for (int i = 0; i < 10; i++) assertEquals(0, bucket.reserve(1, 0));
+        // 令牌用完后不能等待时拒绝，且不预支令牌
+        assertEquals(-1, bucket.reserve(1, 0));
+    }
+
+    @Test
+    public void reservesAheadWhenWaitingAllowed() {
+        TokenBucket bucket = new TokenBucket(10);
+        assertEquals(0, bucket.reserve(10, 0));
+        long first = bucket.reserve(1, TimeUnit.SECONDS.toNanos(1));
+        long second = bucket.reserve(1, TimeUnit.SECONDS.toNanos(1));
+        // 每个令牌约100毫秒，后续请求排在已预支的令牌之后
+        assertTrue(first > TimeUnit.MILLISECONDS.toNanos(50) && first <= TimeUnit.MILLISECONDS.toNanos(100));
+        assertTrue(second > first);
+        assertEquals(-1, bucket.reserve(10, TimeUnit.MILLISECONDS.toNanos(500)));
+    }
+
+    @Test
+    public void clampsRequestsLargerThanCapacity() {
+        TokenBucket bucket = new TokenBucket(5);
+        assertEquals(0, bucket.reserve(100, 0));
+        assertEquals(-1, bucket.reserve(1, 0));
+    }
+
+    @Test
+    public void refillsOverTime() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(100);
+        assertEquals(0, bucket.reserve(100, 0));
+        Thread.sleep(50);
+        assertEquals(0, bucket.reserve(2, 0));
+    }
+
+    @Test
+    public void refundsUnusedTokens() {
+        TokenBucket bucket = new TokenBucket(5);
+        assertEquals(0, bucket.reserve(5, 0));
+        bucket.refund(2);
+        assertEquals(0, bucket.reserve(2, 0));
+        assertEquals(-1, bucket.reserve(1, 0));
+        // 归还后不超过桶容量
+        bucket.refund(100);
+        assertEquals(0, bucket.reserve(5, 0));
+        assertEquals(-1, bucket.reserve(1, 0));
+    }
+}
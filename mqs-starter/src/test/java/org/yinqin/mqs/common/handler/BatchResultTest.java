@@ -0,0 +1,38 @@
+package org.yinqin.mqs.common.handler;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 批量消息处理结果测试
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see BatchResult
+ * @since 1.0.8
+ */
+public class BatchResultTest {
+
+    @Test
+    public void failedRangeMarksEveryIndexInRange() {
+        BatchResult result = BatchResult.failedRange(2, 5);
+        assertFalse(result.isSuccess());
+        assertEquals(3, result.failedCount());
+        assertFalse(result.isFailed(1));
+        assertTrue(result.isFailed(4));
+        assertFalse(result.isFailed(5));
+        assertEquals(2, result.firstFailure(0, 10));
+    }
+
+    @Test
+    public void firstFailureReturnsEndWhenRangeSucceeded() {
+        BatchResult result = BatchResult.failed(7);
+        assertEquals(5, result.firstFailure(0, 5));
+        assertEquals(7, result.firstFailure(5, 10));
+        assertEquals(10, BatchResult.success().firstFailure(0, 10));
+    }
+}
@@ -0,0 +1,196 @@
+package org.yinqin.mqs.common.handler;
+
+import org.junit.Test;
+import org.yinqin.mqs.common.MessageAdapter;
+import org.yinqin.mqs.common.entity.AdapterMessage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 跨拉取批次的消息累积器测试
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see MicroBatchAccumulator
+ * @since 1.0.8
+ */
+public class MicroBatchAccumulatorTest {
+
+    @Test
+    public void waitsForMinBatchSize() {
+        RecordingHandler handler = new RecordingHandler();
+        MicroBatchAccumulator accumulator = new MicroBatchAccumulator(definition(LongLinger.class, handler));
+        accumulator.append(messages(2));
+        assertTrue(accumulator.drain(false).isEmpty());
+        accumulator.append(messages(2));
+        List<MicroBatchAccumulator.Batch> batches = accumulator.drain(false);
+        assertEquals(1, batches.size());
+        assertEquals(4, batches.get(0).size());
+        assertTrue(accumulator.drain(false).isEmpty());
+    }
+
+    @Test
+    public void splitsByMaxBatchSizeWhenForced() {
+        RecordingHandler handler = new RecordingHandler();
+        MicroBatchAccumulator accumulator = new MicroBatchAccumulator(definition(BoundedBatch.class, handler));
+        accumulator.append(messages(5));
+        assertTrue(accumulator.drain(false).isEmpty());
+        List<MicroBatchAccumulator.Batch> batches = accumulator.drain(true);
+        assertEquals(3, batches.size());
+        assertEquals(2, batches.get(0).size());
+        assertEquals(2, batches.get(1).size());
+        assertEquals(1, batches.get(2).size());
+        assertEquals(Long.MAX_VALUE, accumulator.remainingLinger());
+    }
+
+    @Test
+    public void completesAppendAfterAllBatchesProcessed() {
+        RecordingHandler handler = new RecordingHandler();
+        MicroBatchAccumulator accumulator = new MicroBatchAccumulator(definition(BoundedBatch.class, handler));
+        CompletableFuture<Void> first = accumulator.append(messages(3));
+        CompletableFuture<Void> second = accumulator.append(messages(1));
+        List<MicroBatchAccumulator.Batch> batches = accumulator.drain(true);
+        assertEquals(2, batches.size());
+
+        batches.get(0).process();
+        // 第一次追加的消息跨两个批次，第一个批次处理完成后尚未完成
+        assertFalse(first.isDone());
+        batches.get(1).process();
+        assertTrue(first.isDone());
+        assertTrue(second.isDone());
+        assertEquals(Arrays.asList(2, 2), handler.batchSizes);
+    }
+
+    @Test
+    public void failsEveryAppendTouchedByFailedBatch() {
+        RecordingHandler handler = new RecordingHandler();
+        handler.failing = true;
+        MicroBatchAccumulator accumulator = new MicroBatchAccumulator(definition(BoundedBatch.class, handler));
+        CompletableFuture<Void> first = accumulator.append(messages(1));
+        CompletableFuture<Void> second = accumulator.append(messages(1));
+        MicroBatchAccumulator.Batch batch = accumulator.drain(true).get(0);
+        try {
+            batch.process();
+            fail();
+        } catch (IllegalStateException e) {
+            assertSame(handler.failure, e);
+        }
+        assertTrue(first.isCompletedExceptionally());
+        assertTrue(second.isCompletedExceptionally());
+    }
+
+    @Test
+    public void failsSharedAppendWhenEarlierBatchFailsLast() {
+        RecordingHandler handler = new RecordingHandler();
+        MicroBatchAccumulator accumulator = new MicroBatchAccumulator(definition(BoundedBatch.class, handler));
+        CompletableFuture<Void> shared = accumulator.append(messages(4));
+        List<MicroBatchAccumulator.Batch> batches = accumulator.drain(true);
+        assertEquals(2, batches.size());
+
+        // 后取出的批次先在其他线程处理完成，先取出的批次仍在处理中，追加记录不能完成
+        batches.get(1).process();
+        assertFalse(shared.isDone());
+        handler.failing = true;
+        try {
+            batches.get(0).process();
+            fail();
+        } catch (IllegalStateException e) {
+            assertSame(handler.failure, e);
+        }
+        assertTrue(shared.isCompletedExceptionally());
+    }
+
+    @Test
+    public void recoveredAppendsCompleteNormally() {
+        RecordingHandler handler = new RecordingHandler();
+        handler.failing = true;
+        MicroBatchAccumulator accumulator = new MicroBatchAccumulator(definition(BoundedBatch.class, handler));
+        CompletableFuture<Void> first = accumulator.append(messages(2));
+        List<AdapterMessage> recovered = new ArrayList<>();
+        MicroBatchAccumulator.Batch batch = accumulator.drain(true).get(0);
+        try {
+            batch.process(recovered::addAll);
+            fail();
+        } catch (IllegalStateException e) {
+            assertSame(handler.failure, e);
+        }
+        assertEquals(2, recovered.size());
+        assertTrue(first.isDone());
+        assertFalse(first.isCompletedExceptionally());
+    }
+
+    @Test
+    public void failsAppendWhenRecovererFails() {
+        RecordingHandler handler = new RecordingHandler();
+        handler.failing = true;
+        MicroBatchAccumulator accumulator = new MicroBatchAccumulator(definition(BoundedBatch.class, handler));
+        CompletableFuture<Void> first = accumulator.append(messages(2));
+        MicroBatchAccumulator.Batch batch = accumulator.drain(true).get(0);
+        try {
+            batch.process(messages -> {
+                throw new IllegalArgumentException("转发失败");
+            });
+            fail();
+        } catch (IllegalArgumentException e) {
+            // 恢复处理器的异常向上抛出
+        }
+        assertTrue(first.isCompletedExceptionally());
+    }
+
+    @Test
+    public void emptyAppendCompletesImmediately() {
+        MicroBatchAccumulator accumulator = new MicroBatchAccumulator(definition(LongLinger.class, new RecordingHandler()));
+        assertTrue(accumulator.append(Collections.emptyList()).isDone());
+        assertTrue(accumulator.drain(true).isEmpty());
+    }
+
+    private static HandlerDefinition definition(Class<?> annotated, MessageHandler handler) {
+        MessageAdapter messageAdapter = annotated.getAnnotation(MessageAdapter.class);
+        return new HandlerDefinition(messageAdapter.topicName(), handler, messageAdapter);
+    }
+
+    private static List<AdapterMessage> messages(int count) {
+        List<AdapterMessage> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) messages.add(AdapterMessage.builder().topic("T").build());
+        return messages;
+    }
+
+    @MessageAdapter(topicName = "T", isBatch = true, minBatchSize = 3, lingerMs = 60000)
+    private static class LongLinger {
+    }
+
+    @MessageAdapter(topicName = "T", isBatch = true, minBatchSize = 10, maxBatchSize = 2, lingerMs = 60000)
+    private static class BoundedBatch {
+    }
+
+    private static class RecordingHandler implements MessageHandler {
+
+        private final List<Integer> batchSizes = new ArrayList<>();
+
+        private final IllegalStateException failure = new IllegalStateException("failed");
+
+        private boolean failing;
+
+        @Override
+        public void process(AdapterMessage message) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void process(List<AdapterMessage> messages) {
+            if (failing) throw failure;
+            batchSizes.add(messages.size());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package org.yinqin.mqs.common.partitioner;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 业务键分区策略测试
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see BizKeyPartitioner
+ * @since 1.0.8
+ */
+public class BizKeyPartitionerTest {
+
+    private static final int KEYS = 100000;
+
+    /**
+     * 每个分区的消息数与平均数的最大偏差比例
+     */
+    private static final double MAX_SKEW = 0.05;
+
+    private static final int[] QUEUE_COUNTS = {3, 8, 16};
+
+    @Test
+    public void murmur3SpreadsKeysEvenly() {
+        for (int queues : QUEUE_COUNTS) assertEvenSpread(new Murmur3Partitioner(), queues);
+    }
+
+    @Test
+    public void jumpSpreadsKeysEvenly() {
+        for (int queues : QUEUE_COUNTS) assertEvenSpread(new JumpHashPartitioner(), queues);
+    }
+
+    @Test
+    public void jumpMovesFewKeysWhenQueuesGrow() {
+        JumpHashPartitioner partitioner = new JumpHashPartitioner();
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String bizKey = "order-" + i;
+            int before = partitioner.partition(bizKey, 8);
+            int after = partitioner.partition(bizKey, 9);
+            // 改变分区的bizKey只会移到新增的分区
+            if (before != after) {
+                assertEquals(8, after);
+                moved++;
+            }
+        }
+        assertTrue(Math.abs(moved - KEYS / 9.0) < KEYS / 9.0 * MAX_SKEW);
+    }
+
+    @Test
+    public void createsPartitionerByName() {
+        assertNull(BizKeyPartitioner.of(null));
+        assertNull(BizKeyPartitioner.of(BizKeyPartitioner.LEGACY));
+        assertTrue(BizKeyPartitioner.of(BizKeyPartitioner.MURMUR3) instanceof Murmur3Partitioner);
+        assertTrue(BizKeyPartitioner.of(JumpHashPartitioner.class.getName()) instanceof JumpHashPartitioner);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsClassThatIsNotPartitioner() {
+        BizKeyPartitioner.of(String.class.getName());
+    }
+
+    private static void assertEvenSpread(BizKeyPartitioner partitioner, int queues) {
+        int[] counts = new int[queues];
+        for (int i = 0; i < KEYS; i++) counts[partitioner.partition("order-" + i, queues)]++;
+        double expected = (double) KEYS / queues;
+        for (int queue = 0; queue < queues; queue++) {
+            double skew = Math.abs(counts[queue] - expected) / expected;
+            assertTrue(partitioner.getClass().getSimpleName() + "，队列数：" + queues + "，队列：" + queue + "，消息数：" + counts[queue], skew < MAX_SKEW);
+        }
+    }
+}
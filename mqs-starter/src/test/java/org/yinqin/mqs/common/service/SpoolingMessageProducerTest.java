@@ -0,0 +1,167 @@
+package org.yinqin.mqs.common.service;
+
+import org.apache.rocketmq.client.exception.MQClientException;
+import org.apache.rocketmq.common.protocol.ResponseCode;
+import org.apache.rocketmq.remoting.exception.RemotingConnectException;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.yinqin.mqs.common.Constants;
+import org.yinqin.mqs.common.config.MqsProperties.AdapterProperties.SpoolProperties;
+import org.yinqin.mqs.common.entity.AdapterMessage;
+import org.yinqin.mqs.common.entity.MessageCallback;
+import org.yinqin.mqs.common.entity.MessageSendResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 本地暂存生产者测试，使用按topic返回指定失败的生产者
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see SpoolingMessageProducer
+ * @since 1.0.8
+ */
+public class SpoolingMessageProducerTest {
+
+    private static final Throwable CONNECT_FAILURE = new RemotingConnectException("127.0.0.1:10911");
+
+    private static final Throwable TOPIC_NOT_EXIST = new MQClientException(ResponseCode.TOPIC_NOT_EXIST, "topic不存在");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final StubProducer stub = new StubProducer();
+
+    private SpoolingMessageProducer producer;
+
+    @After
+    public void tearDown() throws Exception {
+        if (producer != null) producer.destroy();
+    }
+
+    @Test
+    public void returnsPermanentFailureWithoutSpooling() {
+        start(30);
+        stub.failures.put("T", TOPIC_NOT_EXIST);
+        MessageSendResult result = producer.sendMessage(message("T"));
+        assertEquals(Constants.ERROR, result.getStatus());
+        assertFalse(result.isSpooled());
+        assertEquals(0, producer.getSpooledCount());
+    }
+
+    @Test
+    public void spoolsRetriableFailureAndReplays() throws InterruptedException {
+        start(30);
+        stub.failures.put("T", CONNECT_FAILURE);
+        MessageSendResult result = producer.sendMessage(message("T"));
+        assertTrue(result.isSpooled());
+        stub.failures.clear();
+        await(() -> producer.getSpooledCount() == 0);
+        assertEquals(1, stub.sent.size());
+        assertEquals(0, producer.getDeadLetterCount());
+    }
+
+    @Test
+    public void movesHeadToDeadLetterAfterMaxAttempts() throws InterruptedException {
+        start(3);
+        stub.failures.put("POISON", CONNECT_FAILURE);
+        stub.failures.put("T", CONNECT_FAILURE);
+        assertTrue(producer.sendMessage(message("POISON")).isSpooled());
+        assertTrue(producer.sendMessage(message("T")).isSpooled());
+        stub.failures.remove("T");
+        await(() -> producer.getSpooledCount() == 0);
+        assertEquals(1, producer.getDeadLetterCount());
+        assertEquals("T", stub.sent.get(0).getTopic());
+    }
+
+    @Test
+    public void movesPermanentReplayFailureToDeadLetterAtOnce() throws InterruptedException {
+        start(1000);
+        stub.failures.put("T", CONNECT_FAILURE);
+        assertTrue(producer.sendMessage(message("T")).isSpooled());
+        stub.failures.put("T", TOPIC_NOT_EXIST);
+        await(() -> producer.getSpooledCount() == 0);
+        assertEquals(1, producer.getDeadLetterCount());
+    }
+
+    private void start(int replayMaxAttempts) {
+        SpoolProperties properties = new SpoolProperties();
+        properties.setDir(folder.getRoot().getPath());
+        properties.setSegmentBytes(4096);
+        properties.setMaxSegments(4);
+        properties.setProbeInterval(10);
+        properties.setReplayMaxAttempts(replayMaxAttempts);
+        producer = new SpoolingMessageProducer(stub, "test", properties);
+        producer.start();
+    }
+
+    private static AdapterMessage message(String topic) {
+        return AdapterMessage.builder().topic(topic).body("body".getBytes(StandardCharsets.UTF_8)).build();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue("等待超时", System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * 按topic返回指定失败的生产者，没有指定失败的topic发送成功
+     */
+    private static class StubProducer implements MessageProducer {
+
+        private final Map<String, Throwable> failures = new ConcurrentHashMap<>();
+
+        private final List<AdapterMessage> sent = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public MessageSendResult sendMessage(AdapterMessage message) {
+            MessageSendResult result = new MessageSendResult();
+            result.setTopic(message.getTopic());
+            Throwable failure = failures.get(message.getTopic());
+            if (failure == null) {
+                sent.add(message);
+                result.setStatus(Constants.SUCCESS);
+            } else {
+                result.setStatus(Constants.ERROR);
+                result.setThrowable(failure);
+            }
+            return result;
+        }
+
+        @Override
+        public MessageSendResult sendMessage(AdapterMessage message, long timeout, TimeUnit unit) {
+            return sendMessage(message);
+        }
+
+        @Override
+        public void sendMessage(AdapterMessage message, MessageCallback callback) {
+            MessageSendResult result = sendMessage(message);
+            if (result.getStatus() == Constants.SUCCESS) callback.onSuccess(result);
+            else callback.onError(result.getThrowable());
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+}
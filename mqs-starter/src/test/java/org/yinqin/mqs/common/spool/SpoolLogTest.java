@@ -0,0 +1,198 @@
+package org.yinqin.mqs.common.spool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.yinqin.mqs.common.entity.AdapterMessage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 本地暂存日志测试
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see SpoolLog
+ * @since 1.0.8
+ */
+public class SpoolLogTest {
+
+    private static final int SEGMENT_BYTES = 4096;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void appendPeekAdvance() throws Exception {
+        try (SpoolLog log = new SpoolLog(folder.getRoot(), SEGMENT_BYTES, 4)) {
+            assertTrue(log.isEmpty());
+            assertNull(log.peek());
+            AdapterMessage message = AdapterMessage.builder().topic("T").tag("A").bizKey("k").headers(Collections.singletonMap("h", "v")).body(bytes("body")).build();
+            assertTrue(log.append(message));
+            assertTrue(log.append(message("second")));
+            assertEquals(2, log.pending());
+
+            AdapterMessage head = log.peek();
+            assertEquals("T", head.getTopic());
+            assertEquals("A", head.getTag());
+            assertEquals("k", head.getBizKey());
+            assertEquals("v", head.getHeaders().get("h"));
+            assertArrayEquals(bytes("body"), head.getBody());
+            // 未推进时重复读取同一条消息
+            assertArrayEquals(bytes("body"), log.peek().getBody());
+
+            log.advance();
+            assertArrayEquals(bytes("second"), log.peek().getBody());
+            log.advance();
+            assertTrue(log.isEmpty());
+            assertNull(log.peek());
+        }
+    }
+
+    @Test
+    public void lockedDirectoryCannotBeOpenedTwice() throws Exception {
+        try (SpoolLog log = new SpoolLog(folder.getRoot(), SEGMENT_BYTES, 4)) {
+            log.append(message("m"));
+            try {
+                new SpoolLog(folder.getRoot(), SEGMENT_BYTES, 4).close();
+                fail();
+            } catch (IOException e) {
+                // 目录已被占用
+            }
+            assertEquals(1, log.pending());
+        }
+        // 关闭后释放锁，可以重新打开
+        try (SpoolLog log = new SpoolLog(folder.getRoot(), SEGMENT_BYTES, 4)) {
+            assertEquals(1, log.pending());
+        }
+    }
+
+    @Test
+    public void nullFieldsRoundTrip() throws Exception {
+        try (SpoolLog log = new SpoolLog(folder.getRoot(), SEGMENT_BYTES, 4)) {
+            assertTrue(log.append(AdapterMessage.builder().topic("T").build()));
+            AdapterMessage head = log.peek();
+            assertEquals("T", head.getTopic());
+            assertNull(head.getTag());
+            assertNull(head.getHeaders());
+            assertNull(head.getBody());
+        }
+    }
+
+    @Test
+    public void reopenRestoresCheckpoint() throws Exception {
+        try (SpoolLog log = new SpoolLog(folder.getRoot(), SEGMENT_BYTES, 4)) {
+            for (int i = 0; i < 5; i++) log.append(message("m" + i));
+            log.peek();
+            log.advance();
+            log.peek();
+            log.advance();
+        }
+        try (SpoolLog log = new SpoolLog(folder.getRoot(), SEGMENT_BYTES, 4)) {
+            assertEquals(3, log.pending());
+            assertArrayEquals(bytes("m2"), log.peek().getBody());
+            // 恢复后继续追加到原写入位置之后
+            assertTrue(log.append(message("m5")));
+            assertEquals(4, drain(log));
+        }
+        try (SpoolLog log = new SpoolLog(folder.getRoot(), SEGMENT_BYTES, 4)) {
+            assertTrue(log.isEmpty());
+        }
+    }
+
+    @Test
+    public void truncatedRecordIsDiscarded() throws Exception {
+        try (SpoolLog log = new SpoolLog(folder.getRoot(), SEGMENT_BYTES, 4)) {
+            log.append(message("m0"));
+            log.append(message("m1"));
+        }
+        File segment = segments()[0];
+        int secondRecord = recordSize("m0");
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            // 模拟写入第二条记录时崩溃：长度已写入，内容不完整导致校验失败
+            file.seek(secondRecord + 8);
+            file.write(new byte[]{1, 2, 3});
+        }
+        try (SpoolLog log = new SpoolLog(folder.getRoot(), SEGMENT_BYTES, 4)) {
+            assertEquals(1, log.pending());
+            assertTrue(log.append(message("m2")));
+            assertArrayEquals(bytes("m0"), log.peek().getBody());
+            log.advance();
+            assertArrayEquals(bytes("m2"), log.peek().getBody());
+            log.advance();
+            assertTrue(log.isEmpty());
+        }
+    }
+
+    @Test
+    public void rollsSegmentsAndRejectsAtMaxSegments() throws Exception {
+        int segmentBytes = 4 * recordSize("m00");
+        int appended = 0;
+        try (SpoolLog log = new SpoolLog(folder.getRoot(), segmentBytes, 2)) {
+            while (log.append(message(String.format("m%02d", appended)))) appended++;
+            assertEquals(8, appended);
+            assertEquals(2, segments().length);
+            // 大于分段大小的消息不能追加
+            assertFalse(log.append(message(new String(new byte[segmentBytes], StandardCharsets.UTF_8))));
+
+            for (int i = 0; i < 4; i++) {
+                assertArrayEquals(bytes(String.format("m%02d", i)), log.peek().getBody());
+                log.advance();
+            }
+            // 读完第一个分段后删除，腾出的分段数量可以继续追加
+            assertArrayEquals(bytes("m04"), log.peek().getBody());
+            assertEquals(1, segments().length);
+            assertTrue(log.append(message("m08")));
+            assertEquals(2, segments().length);
+        }
+        try (SpoolLog log = new SpoolLog(folder.getRoot(), segmentBytes, 2)) {
+            assertEquals(5, log.pending());
+            assertArrayEquals(bytes("m04"), log.peek().getBody());
+            assertEquals(5, drain(log));
+            assertEquals(1, segments().length);
+        }
+    }
+
+    private int drain(SpoolLog log) {
+        int count = 0;
+        while (log.peek() != null) {
+            log.advance();
+            count++;
+        }
+        return count;
+    }
+
+    private File[] segments() {
+        File[] files = folder.getRoot().listFiles((dir, name) -> name.endsWith(".log"));
+        Arrays.sort(files);
+        return files;
+    }
+
+    /**
+     * @return 只有topic和消息体的记录长度：记录头 + topic + tag + bizKey + headers + 消息体
+     */
+    private static int recordSize(String body) {
+        return 8 + (4 + 1) + 4 + 4 + 4 + (4 + bytes(body).length);
+    }
+
+    private static AdapterMessage message(String body) {
+        return AdapterMessage.builder().topic("T").body(bytes(body)).build();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
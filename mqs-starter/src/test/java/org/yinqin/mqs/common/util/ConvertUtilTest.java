@@ -0,0 +1,45 @@
+package org.yinqin.mqs.common.util;
+
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageConst;
+import org.junit.Test;
+import org.yinqin.mqs.common.entity.AdapterMessage;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 转换工具类测试
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see ConvertUtil
+ * @since 1.0.8
+ */
+public class ConvertUtilTest {
+
+    @Test
+    public void skipsHeadersRocketmqRejects() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("h", "v");
+        headers.put("nullValue", null);
+        headers.put("emptyValue", "");
+        headers.put("", "emptyKey");
+        headers.put(null, "nullKey");
+        headers.put(MessageConst.PROPERTY_KEYS, "reserved");
+        headers.put(MessageConst.PROPERTY_DELAY_TIME_LEVEL, "3");
+        AdapterMessage message = AdapterMessage.builder().topic("T").tag("TAG").bizKey("K").body(new byte[0]).headers(headers).build();
+
+        Message rocketmqMessage = ConvertUtil.adapterMessageToRocketmqMessage(message, null);
+        assertEquals("v", rocketmqMessage.getUserProperty("h"));
+        assertNull(rocketmqMessage.getUserProperty("nullValue"));
+        assertNull(rocketmqMessage.getUserProperty("emptyValue"));
+        assertEquals("K", rocketmqMessage.getKeys());
+        assertEquals("TAG", rocketmqMessage.getTags());
+        assertEquals(0, rocketmqMessage.getDelayTimeLevel());
+    }
+}
@@ -0,0 +1,50 @@
+package org.yinqin.mqs.common.util;
+
+import org.apache.kafka.common.errors.RecordTooLargeException;
+import org.apache.kafka.common.errors.TopicAuthorizationException;
+import org.apache.rocketmq.client.common.ClientErrorCode;
+import org.apache.rocketmq.client.exception.MQBrokerException;
+import org.apache.rocketmq.client.exception.MQClientException;
+import org.apache.rocketmq.common.protocol.ResponseCode;
+import org.apache.rocketmq.remoting.exception.RemotingConnectException;
+import org.apache.rocketmq.remoting.exception.RemotingTimeoutException;
+import org.junit.Test;
+import org.yinqin.mqs.common.exception.MqsFlowControlException;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 发送失败分类测试
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see SendFailureUtil
+ * @since 1.0.8
+ */
+public class SendFailureUtilTest {
+
+    @Test
+    public void connectivityFailuresAreRetriable() {
+        assertTrue(SendFailureUtil.isRetriable(null));
+        assertTrue(SendFailureUtil.isRetriable(new TimeoutException()));
+        assertTrue(SendFailureUtil.isRetriable(new RemotingConnectException("127.0.0.1:10911")));
+        assertTrue(SendFailureUtil.isRetriable(new MQClientException("Send [3] times, still failed", new RemotingTimeoutException("timeout"))));
+        assertTrue(SendFailureUtil.isRetriable(new MQBrokerException(ResponseCode.SYSTEM_BUSY, "busy")));
+        assertTrue(SendFailureUtil.isRetriable(new ExecutionException(new org.apache.kafka.common.errors.TimeoutException("timeout"))));
+    }
+
+    @Test
+    public void permanentFailuresAreNotRetriable() {
+        assertFalse(SendFailureUtil.isRetriable(new MqsFlowControlException("实例在途消息数达到上限", false)));
+        assertFalse(SendFailureUtil.isRetriable(new MQClientException(ClientErrorCode.NOT_FOUND_TOPIC_EXCEPTION, "No route info of this topic")));
+        assertFalse(SendFailureUtil.isRetriable(new MQClientException(ResponseCode.MESSAGE_ILLEGAL, "the message body size over max value")));
+        assertFalse(SendFailureUtil.isRetriable(new MQClientException("Send [1] times, still failed", new MQBrokerException(ResponseCode.NO_PERMISSION, "no permission"))));
+        assertFalse(SendFailureUtil.isRetriable(new ExecutionException(new RecordTooLargeException("too large"))));
+        assertFalse(SendFailureUtil.isRetriable(new ExecutionException(new TopicAuthorizationException("T"))));
+    }
+}
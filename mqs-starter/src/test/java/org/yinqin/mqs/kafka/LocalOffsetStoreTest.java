@@ -0,0 +1,75 @@
+package org.yinqin.mqs.kafka;
+
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 本地位移存储测试
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see LocalOffsetStore
+ * @since 1.0.8
+ */
+public class LocalOffsetStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void restoresOffsetsAfterReopen() {
+        Path path = folder.getRoot().toPath().resolve("offsets");
+        TopicPartition first = new TopicPartition("T", 0);
+        TopicPartition second = new TopicPartition("T", 1);
+        LocalOffsetStore store = new LocalOffsetStore(path);
+        assertNull(store.get(first));
+        store.put(first, 10);
+        store.put(second, 20);
+        store.put(first, 11);
+        store.close();
+
+        store = new LocalOffsetStore(path);
+        assertEquals(Long.valueOf(11), store.get(first));
+        assertEquals(Long.valueOf(20), store.get(second));
+        assertNull(store.get(new TopicPartition("T", 2)));
+        store.close();
+    }
+
+    @Test
+    public void growsBeyondInitialSlots() {
+        Path path = folder.getRoot().toPath().resolve("offsets");
+        int partitions = 1000;
+        LocalOffsetStore store = new LocalOffsetStore(path);
+        for (int i = 0; i < partitions; i++) store.put(new TopicPartition("T", i), i * 2L);
+        store.close();
+
+        store = new LocalOffsetStore(path);
+        for (int i = 0; i < partitions; i++) assertEquals(Long.valueOf(i * 2L), store.get(new TopicPartition("T", i)));
+        store.close();
+    }
+
+    @Test
+    public void skipsTopicTooLongForSlot() {
+        Path path = folder.getRoot().toPath().resolve("offsets");
+        StringBuilder topic = new StringBuilder();
+        for (int i = 0; i < 600; i++) topic.append('t');
+        TopicPartition partition = new TopicPartition(topic.toString(), 0);
+        LocalOffsetStore store = new LocalOffsetStore(path);
+        store.put(partition, 1);
+        assertNull(store.get(partition));
+        store.put(new TopicPartition("T", 0), 2);
+        store.close();
+
+        store = new LocalOffsetStore(path);
+        assertEquals(Long.valueOf(2), store.get(new TopicPartition("T", 0)));
+        store.close();
+    }
+}
@@ -0,0 +1,79 @@
+package org.yinqin.mqs.kafka;
+
+import org.apache.kafka.common.TopicPartition;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.time.Duration;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 位移提交器测试，位移提交到本地位移存储
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see OffsetCommitter
+ * @since 1.0.8
+ */
+public class OffsetCommitterTest {
+
+    private static final TopicPartition PARTITION = new TopicPartition("T", 0);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LocalOffsetStore store;
+
+    private OffsetCommitter committer;
+
+    @Before
+    public void setUp() {
+        store = new LocalOffsetStore(folder.getRoot().toPath().resolve("offsets"));
+        committer = new OffsetCommitter(null, store, 100, 1000);
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    @Test
+    public void commitsHighestProcessedOffset() {
+        committer.assign(Collections.singleton(PARTITION));
+        committer.commitSync(Duration.ZERO);
+        assertNull(store.get(PARTITION));
+        committer.markProcessed(PARTITION, 9, 10);
+        committer.markProcessed(PARTITION, 4, 5);
+        committer.commitSync(Duration.ZERO);
+        assertEquals(Long.valueOf(10), store.get(PARTITION));
+    }
+
+    @Test
+    public void ignoresPartitionsNotAssigned() {
+        committer.markProcessed(PARTITION, 9, 10);
+        committer.commitSync(Duration.ZERO);
+        assertNull(store.get(PARTITION));
+        assertEquals(Long.MAX_VALUE, committer.remainingUntilCommit());
+    }
+
+    @Test
+    public void ignoresProcessedAfterRemove() {
+        committer.assign(Collections.singleton(PARTITION));
+        committer.remove(Collections.singleton(PARTITION));
+        committer.markProcessed(PARTITION, 9, 10);
+        committer.commitSync(Duration.ZERO);
+        assertNull(store.get(PARTITION));
+
+        committer.assign(Collections.singleton(PARTITION));
+        committer.markProcessed(PARTITION, 19, 10);
+        committer.commitSync(Duration.ZERO);
+        assertEquals(Long.valueOf(20), store.get(PARTITION));
+    }
+}
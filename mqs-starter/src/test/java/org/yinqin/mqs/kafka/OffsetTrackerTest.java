@@ -0,0 +1,86 @@
+package org.yinqin.mqs.kafka;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 分区位移跟踪器测试
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see OffsetTracker
+ * @since 1.0.8
+ */
+public class OffsetTrackerTest {
+
+    @Test
+    public void advancesOnlyToFirstPendingOffset() {
+        OffsetTracker tracker = new OffsetTracker();
+        for (long offset = 10; offset < 15; offset++) tracker.track(offset);
+        assertEquals(5, tracker.span());
+
+        // 乱序完成时可提交位移停在第一条未完成的消息
+        assertEquals(-1, tracker.complete(12));
+        assertEquals(-1, tracker.complete(11));
+        assertEquals(13, tracker.complete(10));
+        assertEquals(2, tracker.span());
+        assertEquals(-1, tracker.complete(14));
+        assertEquals(15, tracker.complete(13));
+        assertEquals(0, tracker.span());
+    }
+
+    @Test
+    public void skippedOffsetsCountAsCompleted() {
+        OffsetTracker tracker = new OffsetTracker();
+        tracker.track(0);
+        // 位移1、2被过滤，视为处理完成
+        tracker.track(3);
+        assertEquals(-1, tracker.complete(3));
+        assertEquals(4, tracker.complete(0));
+    }
+
+    @Test
+    public void skipToAdvancesPastFilteredTail() {
+        OffsetTracker tracker = new OffsetTracker();
+        tracker.track(0);
+        assertEquals(1, tracker.complete(0));
+        // 本轮拉取的最后几条消息全部被过滤
+        assertEquals(5, tracker.skipTo(5));
+        assertEquals(-1, tracker.skipTo(5));
+        tracker.track(5);
+        assertEquals(-1, tracker.skipTo(6));
+        assertEquals(6, tracker.complete(5));
+    }
+
+    @Test
+    public void ignoresOffsetsOutsideTrackedRange() {
+        OffsetTracker tracker = new OffsetTracker();
+        tracker.track(100);
+        assertEquals(-1, tracker.complete(99));
+        assertEquals(-1, tracker.complete(101));
+        // 重复登记的位移被忽略
+        tracker.track(100);
+        assertEquals(1, tracker.span());
+        assertEquals(101, tracker.complete(100));
+        assertEquals(-1, tracker.complete(100));
+    }
+
+    @Test
+    public void compactsAfterThreshold() {
+        OffsetTracker tracker = new OffsetTracker();
+        int count = 5000;
+        for (long offset = 0; offset < count; offset++) tracker.track(offset);
+        // 保留位移0未完成，其余全部完成后可提交位移不推进
+        for (long offset = 1; offset < count; offset++) assertEquals(-1, tracker.complete(offset));
+        assertEquals(count, tracker.span());
+        assertEquals(count, tracker.complete(0));
+        // 压缩后继续登记和完成
+        for (long offset = count; offset < count * 2; offset++) {
+            tracker.track(offset);
+            assertEquals(offset + 1, tracker.complete(offset));
+        }
+        assertEquals(0, tracker.span());
+    }
+}
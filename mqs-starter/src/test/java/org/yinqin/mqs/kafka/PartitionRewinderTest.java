@@ -0,0 +1,64 @@
+package org.yinqin.mqs.kafka;
+
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 分区回退协调器测试
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see PartitionRewinder
+ * @since 1.0.8
+ */
+public class PartitionRewinderTest {
+
+    private static final TopicPartition PARTITION = new TopicPartition("T", 0);
+
+    @Test
+    public void tasksBecomeStaleOnceRewindRequested() {
+        PartitionRewinder rewinder = new PartitionRewinder();
+        long generation = rewinder.generation(PARTITION);
+        assertFalse(rewinder.isStale(PARTITION, generation));
+
+        rewinder.request(PARTITION, generation, 10);
+        assertTrue(rewinder.isStale(PARTITION, generation));
+
+        Map<TopicPartition, Long> requests = rewinder.take();
+        assertEquals(Collections.singletonMap(PARTITION, 10L), requests);
+        assertTrue(rewinder.isStale(PARTITION, generation));
+        assertFalse(rewinder.isStale(PARTITION, rewinder.generation(PARTITION)));
+        assertTrue(rewinder.take().isEmpty());
+    }
+
+    @Test
+    public void keepsSmallestOffsetAndIgnoresStaleRequests() {
+        PartitionRewinder rewinder = new PartitionRewinder();
+        long generation = rewinder.generation(PARTITION);
+        rewinder.request(PARTITION, generation, 10);
+        rewinder.request(PARTITION, generation, 5);
+        rewinder.request(PARTITION, generation, 8);
+        assertEquals(Long.valueOf(5), rewinder.take().get(PARTITION));
+
+        rewinder.request(PARTITION, generation, 3);
+        assertTrue(rewinder.take().isEmpty());
+    }
+
+    @Test
+    public void releaseDropsRequestsAndExpiresTasks() {
+        PartitionRewinder rewinder = new PartitionRewinder();
+        long generation = rewinder.generation(PARTITION);
+        rewinder.request(PARTITION, generation, 10);
+        rewinder.release(PARTITION);
+        assertTrue(rewinder.take().isEmpty());
+        assertTrue(rewinder.isStale(PARTITION, generation));
+    }
+}
@@ -0,0 +1,99 @@
+package org.yinqin.mqs.kafka;
+
+import org.junit.Test;
+import org.yinqin.mqs.common.Constants;
+import org.yinqin.mqs.common.config.MqsProperties.AdapterProperties.CustomKafkaProperties.RetryProperties;
+import org.yinqin.mqs.common.entity.AdapterMessage;
+import org.yinqin.mqs.common.entity.MessageCallback;
+import org.yinqin.mqs.common.entity.MessageSendResult;
+import org.yinqin.mqs.common.service.MessageProducer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * kafka消费失败重试路由测试
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see RetryTopicRouter
+ * @since 1.0.8
+ */
+public class RetryTopicRouterTest {
+
+    @Test
+    public void forwardsToFirstRetryTopic() {
+        StubProducer producer = new StubProducer(Integer.MAX_VALUE);
+        RetryTopicRouter router = new RetryTopicRouter("test", producer, new RetryProperties(), null);
+        assertEquals(1, router.republish(Collections.singletonList(message("1"))));
+        AdapterMessage forwarded = producer.sent.get(0);
+        assertEquals("T_RETRY_1", forwarded.getTopic());
+        assertEquals("TAG", forwarded.getTag());
+        assertEquals("1", forwarded.getHeaders().get(RetryTopicRouter.RETRY_COUNT_HEADER));
+        assertEquals("T", forwarded.getHeaders().get(RetryTopicRouter.ORIGIN_TOPIC_HEADER));
+    }
+
+    @Test
+    public void stopsAtFirstFailedForward() {
+        StubProducer producer = new StubProducer(1);
+        RetryTopicRouter router = new RetryTopicRouter("test", producer, new RetryProperties(), null);
+        // 第二条转发失败，第三条不再转发，由调用方回退到第二条消息
+        assertEquals(1, router.republish(Arrays.asList(message("1"), message("2"), message("3"))));
+        assertEquals(1, producer.sent.size());
+    }
+
+    private static AdapterMessage message(String bizKey) {
+        return AdapterMessage.builder().topic("T").tag("TAG").bizKey(bizKey).headers(Collections.emptyMap()).body(new byte[0]).build();
+    }
+
+    /**
+     * 前若干条发送成功、之后发送失败的生产者
+     */
+    private static class StubProducer implements MessageProducer {
+
+        private final List<AdapterMessage> sent = new ArrayList<>();
+
+        private final int succeeding;
+
+        private StubProducer(int succeeding) {
+            this.succeeding = succeeding;
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public MessageSendResult sendMessage(AdapterMessage message) {
+            MessageSendResult result = new MessageSendResult();
+            if (sent.size() < succeeding) {
+                sent.add(message);
+                result.setStatus(Constants.SUCCESS);
+            } else {
+                result.setStatus(Constants.ERROR);
+                result.setThrowable(new IllegalStateException("broker不可用"));
+            }
+            return result;
+        }
+
+        @Override
+        public MessageSendResult sendMessage(AdapterMessage message, long timeout, TimeUnit unit) {
+            return sendMessage(message);
+        }
+
+        @Override
+        public void sendMessage(AdapterMessage message, MessageCallback callback) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package org.yinqin.mqs.kafka.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.Assume;
+import org.junit.Test;
+import org.yinqin.mqs.common.Constants;
+import org.yinqin.mqs.common.entity.AdapterMessage;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * kafka消费消息视图测试，包括写时复制和与复制消息相比的内存分配
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see KafkaAdapterMessage
+ * @since 1.0.8
+ */
+public class KafkaAdapterMessageTest {
+
+    private static final int RECORDS = 10000;
+
+    @Test
+    public void readsFromRecord() {
+        ConsumerRecord<String, byte[]> consumerRecord = record(0);
+        KafkaAdapterMessage message = new KafkaAdapterMessage(consumerRecord);
+        assertEquals("T", message.getTopic());
+        assertEquals("TAG", message.getTag());
+        assertEquals("key-0", message.getBizKey());
+        assertSame(consumerRecord.value(), message.getBody());
+        assertEquals("v", message.getHeaders().get("h"));
+        // tag消息头只通过getTag读取
+        assertFalse(message.getHeaders().containsKey(Constants.KAFKA_TAG_HEADER));
+        assertSame(consumerRecord, message.getOriginMessage());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void headersAreReadOnlyBeforeCopy() {
+        new KafkaAdapterMessage(record(0)).getHeaders().put("h", "changed");
+    }
+
+    @Test
+    public void copiesOnFirstWrite() {
+        ConsumerRecord<String, byte[]> consumerRecord = record(0);
+        KafkaAdapterMessage message = new KafkaAdapterMessage(consumerRecord);
+        message.setTopic("OTHER");
+        message.getHeaders().put("added", "1");
+        assertEquals("OTHER", message.getTopic());
+        assertEquals("key-0", message.getBizKey());
+        assertEquals("TAG", message.getTag());
+        assertSame(consumerRecord.value(), message.getBody());
+        assertEquals("1", message.getHeaders().get("added"));
+        assertEquals("v", message.getHeaders().get("h"));
+        assertFalse(message.getHeaders().containsKey(Constants.KAFKA_TAG_HEADER));
+        assertEquals("T", consumerRecord.topic());
+        assertEquals(2, consumerRecord.headers().toArray().length);
+    }
+
+    @Test
+    public void toMutableReturnsIndependentMessage() {
+        KafkaAdapterMessage message = new KafkaAdapterMessage(record(0));
+        AdapterMessage mutable = message.toMutable();
+        assertNotSame(message, mutable);
+        assertEquals(AdapterMessage.class, mutable.getClass());
+        assertEquals(message, mutable);
+        mutable.getHeaders().put("h", "changed");
+        mutable.setBizKey("other");
+        assertEquals("v", message.getHeaders().get("h"));
+        assertEquals("key-0", message.getBizKey());
+    }
+
+    /**
+     * 只读取消息体和bizKey时，视图分配的内存应少于复制全部属性和消息头的消息
+     */
+    @Test
+    public void viewAllocatesLessThanCopy() {
+        java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+        Assume.assumeTrue(allocationBean.isThreadAllocatedMemorySupported() && allocationBean.isThreadAllocatedMemoryEnabled());
+        List<ConsumerRecord<String, byte[]>> records = new ArrayList<>(RECORDS);
+        for (int i = 0; i < RECORDS; i++) records.add(record(i));
+        long viewBytes = Long.MAX_VALUE;
+        long copyBytes = Long.MAX_VALUE;
+        // 多轮取最小值，排除JIT编译和首次类加载的影响
+        for (int round = 0; round < 5; round++) {
+            long threadId = Thread.currentThread().getId();
+            long start = allocationBean.getThreadAllocatedBytes(threadId);
+            long checksum = consume(views(records));
+            viewBytes = Math.min(viewBytes, allocationBean.getThreadAllocatedBytes(threadId) - start);
+            start = allocationBean.getThreadAllocatedBytes(threadId);
+            checksum -= consume(copies(records));
+            copyBytes = Math.min(copyBytes, allocationBean.getThreadAllocatedBytes(threadId) - start);
+            assertEquals(0, checksum);
+        }
+        assertTrue("视图分配" + viewBytes + "字节，复制分配" + copyBytes + "字节", viewBytes * 2 < copyBytes);
+    }
+
+    private static List<AdapterMessage> views(List<ConsumerRecord<String, byte[]>> records) {
+        List<AdapterMessage> messages = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, byte[]> item : records) messages.add(new KafkaAdapterMessage(item));
+        return messages;
+    }
+
+    /**
+     * 1.0.8之前的转换方式，复制全部属性并解码消息头
+     */
+    private static List<AdapterMessage> copies(List<ConsumerRecord<String, byte[]>> records) {
+        List<AdapterMessage> messages = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, byte[]> item : records) {
+            Map<String, String> headers = new HashMap<>();
+            item.headers().forEach(header -> headers.put(header.key(), new String(header.value(), StandardCharsets.UTF_8)));
+            messages.add(AdapterMessage.builder().topic(item.topic()).bizKey(item.key()).body(item.value()).headers(headers).originMessage(item).build());
+        }
+        return messages;
+    }
+
+    private static long consume(List<AdapterMessage> messages) {
+        long checksum = 0;
+        for (AdapterMessage message : messages) checksum += message.getBody().length + message.getBizKey().length();
+        return checksum;
+    }
+
+    private static ConsumerRecord<String, byte[]> record(int offset) {
+        ConsumerRecord<String, byte[]> consumerRecord = new ConsumerRecord<>("T", 0, offset, "key-" + offset, ("body-" + offset).getBytes(StandardCharsets.UTF_8));
+        consumerRecord.headers().add(Constants.KAFKA_TAG_HEADER, "TAG".getBytes(StandardCharsets.UTF_8));
+        consumerRecord.headers().add("h", "v".getBytes(StandardCharsets.UTF_8));
+        return consumerRecord;
+    }
+}
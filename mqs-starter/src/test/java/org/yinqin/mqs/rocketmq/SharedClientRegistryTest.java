@@ -0,0 +1,36 @@
+package org.yinqin.mqs.rocketmq;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 共享客户端实例登记表测试
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see SharedClientRegistry
+ * @since 1.0.8
+ */
+public class SharedClientRegistryTest {
+
+    @Test
+    public void countsProducersAndConsumersPerClient() {
+        SharedClientRegistry.registerProducer("127.0.0.1@a-1");
+        SharedClientRegistry.registerConsumer("127.0.0.1@a-1");
+        SharedClientRegistry.registerConsumer("127.0.0.1@a-1");
+        SharedClientRegistry.registerConsumer("127.0.0.1@b-1");
+        assertEquals(1, SharedClientRegistry.producers("127.0.0.1@a-1"));
+        assertEquals(2, SharedClientRegistry.consumers("127.0.0.1@a-1"));
+        assertEquals(0, SharedClientRegistry.producers("127.0.0.1@b-1"));
+        assertEquals(1, SharedClientRegistry.consumers("127.0.0.1@b-1"));
+        SharedClientRegistry.unregisterConsumer("127.0.0.1@a-1");
+        SharedClientRegistry.unregisterConsumer("127.0.0.1@b-1");
+        assertEquals(1, SharedClientRegistry.consumers("127.0.0.1@a-1"));
+        assertEquals(0, SharedClientRegistry.consumers("127.0.0.1@b-1"));
+        SharedClientRegistry.unregisterProducer("127.0.0.1@a-1");
+        SharedClientRegistry.unregisterConsumer("127.0.0.1@a-1");
+        assertEquals(0, SharedClientRegistry.producers("127.0.0.1@a-1"));
+    }
+}
@@ -0,0 +1,68 @@
+package org.yinqin.mqs.rocketmq.consumer;
+
+import org.apache.rocketmq.common.message.MessageExt;
+import org.junit.Test;
+import org.yinqin.mqs.common.entity.AdapterMessage;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * rocketmq消费消息视图测试
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see RocketmqAdapterMessage
+ * @since 1.0.8
+ */
+public class RocketmqAdapterMessageTest {
+
+    @Test
+    public void excludesSystemProperties() {
+        RocketmqAdapterMessage message = new RocketmqAdapterMessage(messageExt());
+        assertEquals("TAG", message.getTag());
+        assertEquals("K", message.getBizKey());
+        assertEquals("v", message.getHeaders().get("h"));
+        assertFalse(message.getHeaders().containsKey("TAGS"));
+        assertEquals(3, message.getConsumeTimes());
+    }
+
+    @Test
+    public void copiesOnFirstWrite() {
+        MessageExt messageExt = messageExt();
+        RocketmqAdapterMessage message = new RocketmqAdapterMessage(messageExt);
+        message.setConsumeTimes(5);
+        message.getHeaders().remove("h");
+        message.setProcessTime(1L);
+        assertEquals(5, message.getConsumeTimes());
+        assertNull(message.getHeaders().get("h"));
+        assertEquals("K", message.getBizKey());
+        assertEquals(Long.valueOf(1), message.getProcessTime());
+        assertEquals(3, messageExt.getReconsumeTimes());
+        assertEquals("v", messageExt.getUserProperty("h"));
+    }
+
+    @Test
+    public void toMutableKeepsVendorFields() {
+        AdapterMessage mutable = new RocketmqAdapterMessage(messageExt()).toMutable();
+        assertEquals(AdapterMessage.class, mutable.getClass());
+        assertEquals("MSG", mutable.getMsgId());
+        assertEquals(3, mutable.getConsumeTimes());
+    }
+
+    private static MessageExt messageExt() {
+        MessageExt messageExt = new MessageExt();
+        messageExt.setTopic("T");
+        messageExt.setTags("TAG");
+        messageExt.setKeys("K");
+        messageExt.setBody("body".getBytes(StandardCharsets.UTF_8));
+        messageExt.setMsgId("MSG");
+        messageExt.setReconsumeTimes(3);
+        messageExt.putUserProperty("h", "v");
+        return messageExt;
+    }
+}
@@ -0,0 +1,34 @@
+package org.yinqin.mqs.rocketmq.producer;
+
+import org.apache.rocketmq.common.message.Message;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * rocketmq生产者测试
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see CustomRocketmqProducer
+ * @since 1.0.8
+ */
+public class CustomRocketmqProducerTest {
+
+    @Test
+    public void estimateSizeCountsUtf8Bytes() {
+        Message ascii = new Message("T", "ab".getBytes(StandardCharsets.UTF_8));
+        ascii.putUserProperty("k", "ab");
+        Message multiByte = new Message("T", "ab".getBytes(StandardCharsets.UTF_8));
+        multiByte.putUserProperty("k", "中文");
+        // 两个中文字符按UTF-8编码为6个字节，比两个ASCII字符多4个字节
+        assertEquals(CustomRocketmqProducer.estimateSize(ascii) + 4, CustomRocketmqProducer.estimateSize(multiByte));
+
+        Message topic = new Message("主题", "ab".getBytes(StandardCharsets.UTF_8));
+        topic.putUserProperty("k", "ab");
+        assertEquals(CustomRocketmqProducer.estimateSize(ascii) + 5, CustomRocketmqProducer.estimateSize(topic));
+    }
+}
@@ -0,0 +1,136 @@
+package org.yinqin.mqs.rocketmq.producer;
+
+import org.apache.rocketmq.client.producer.DefaultMQProducer;
+import org.apache.rocketmq.client.producer.SendResult;
+import org.apache.rocketmq.client.producer.SendStatus;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.junit.After;
+import org.junit.Test;
+import org.yinqin.mqs.common.entity.AdapterMessage;
+import org.yinqin.mqs.common.entity.MessageCallback;
+import org.yinqin.mqs.common.entity.MessageSendResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * rocketmq异步发送累积器测试，使用不连接broker的生产者
+ *
+ * @author YinQin
+ * @version 1.0.8
+ * @createDate 2026年10月17日
+ * @see SendAccumulator
+ * @since 1.0.8
+ */
+public class SendAccumulatorTest {
+
+    private static final List<MessageQueue> QUEUES = Arrays.asList(new MessageQueue("T", "broker", 0), new MessageQueue("T", "broker", 1));
+
+    /**
+     * 发往队列0的批次在释放前阻塞
+     */
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final BlockingProducer producer = new BlockingProducer();
+
+    private SendAccumulator accumulator;
+
+    @After
+    public void tearDown() throws InterruptedException {
+        release.countDown();
+        if (accumulator != null) accumulator.close(5000);
+    }
+
+    @Test
+    public void sendsOtherQueuesWhileOneIsBlocked() throws Exception {
+        start(1024 * 1024, 1024 * 1024);
+        CompletableFuture<MessageSendResult> blocked = append(bizKeyFor(0));
+        CompletableFuture<MessageSendResult> other = append(bizKeyFor(1));
+        other.get(5, TimeUnit.SECONDS);
+        assertFalse(blocked.isDone());
+        release.countDown();
+        blocked.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void failsWhenBufferStaysFull() throws Exception {
+        int size = CustomRocketmqProducer.estimateSize(message(bizKeyFor(0)));
+        producer.setSendMsgTimeout(200);
+        start(size, size);
+        CompletableFuture<MessageSendResult> blocked = append(bizKeyFor(0));
+        CompletableFuture<MessageSendResult> rejected = append(bizKeyFor(0));
+        assertTrue(rejected.isCompletedExceptionally());
+        assertFalse(blocked.isDone());
+        release.countDown();
+        blocked.get(5, TimeUnit.SECONDS);
+        append(bizKeyFor(0)).get(5, TimeUnit.SECONDS);
+    }
+
+    private void start(int maxBytes, long maxBufferedBytes) {
+        accumulator = new SendAccumulator("test", producer, new BizKeyQueueSelector(null), 1, maxBytes, maxBufferedBytes, QUEUES.size());
+        new Thread(accumulator).start();
+    }
+
+    private CompletableFuture<MessageSendResult> append(String bizKey) {
+        CompletableFuture<MessageSendResult> future = new CompletableFuture<>();
+        Message message = message(bizKey);
+        accumulator.append(message, AdapterMessage.builder().topic("T").bizKey(bizKey).build(), new MessageCallback() {
+            @Override
+            public void onSuccess() {
+                future.complete(null);
+            }
+
+            @Override
+            public void onSuccess(MessageSendResult result) {
+                future.complete(result);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                future.completeExceptionally(throwable);
+            }
+        });
+        return future;
+    }
+
+    private static Message message(String bizKey) {
+        return new Message("T", null, bizKey, "body".getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 找到旧版本选择方式下落在指定队列的数字bizKey
+     */
+    private static String bizKeyFor(int queueId) {
+        BizKeyQueueSelector selector = new BizKeyQueueSelector(null);
+        for (int i = 0; ; i++) {
+            String bizKey = String.valueOf(i);
+            if (selector.select(QUEUES, null, bizKey).getQueueId() == queueId) return bizKey;
+        }
+    }
+
+    private class BlockingProducer extends DefaultMQProducer {
+
+        @Override
+        public List<MessageQueue> fetchPublishMessageQueues(String topic) {
+            return QUEUES;
+        }
+
+        @Override
+        public SendResult send(Collection<Message> msgs, MessageQueue queue) throws InterruptedException {
+            if (queue.getQueueId() == 0) release.await();
+            SendResult sendResult = new SendResult();
+            sendResult.setSendStatus(SendStatus.SEND_OK);
+            sendResult.setMessageQueue(queue);
+            return sendResult;
+        }
+    }
+}
@@ -12,4 +12,5 @@ public interface MessagePubMode {
     String SYNC = "sync";
     String ASYNC = "async";
     String ONE_WAY = "oneWay";
+    String BATCH = "batch";
 }
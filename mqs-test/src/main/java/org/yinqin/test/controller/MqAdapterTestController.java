@@ -14,6 +14,8 @@ import org.yinqin.mqs.common.manager.ProducerManager;
 import org.yinqin.mqs.common.service.MessageProducer;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * 发送消息测试接口
@@ -50,12 +52,35 @@ public class MqAdapterTestController {
             case MessagePubMode.ONE_WAY:
                 oneWayPubMessage(topic, pubCount,producerManager.get(instanceId));
                 break;
+            case MessagePubMode.BATCH:
+                batchPubMessage(topic, pubCount,producerManager.get(instanceId));
+                break;
             default:
                 logger.info("未支持的消息模式：{}", pubMode);
                 break;
         }
     }
 
+    /**
+     * 批量发送消息
+     *
+     * @param topic    主题
+     * @param pubCount 发送消息数量
+     * @param producer 生产者
+     */
+    private void batchPubMessage(String topic, Integer pubCount,MessageProducer producer) {
+        List<AdapterMessage> messages = new ArrayList<>(pubCount);
+        for (int i = 0; i < pubCount; i++) {
+            messages.add(AdapterMessage.builder().topic(topic).body("This is a batch message".getBytes(StandardCharsets.UTF_8)).build());
+        }
+        int success = 0;
+        for (MessageSendResult send : producer.sendBatch(messages)) {
+            if (send.getStatus() == Constants.SUCCESS) success++;
+            else logger.info("消息批量发送失败,原因:" + send.getThrowable().getMessage());
+        }
+        logger.info("消息批量发送完成，成功数量：{}", success);
+    }
+
     /**
      * 发送单向消息
      *